@@ -19,20 +19,27 @@ package reactor.ipc.netty;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.util.Objects;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.ByteBufHolder;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.util.internal.PlatformDependent;
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.FluxSource;
 import reactor.core.publisher.Mono;
+import reactor.util.concurrent.QueueSupplier;
 
 /**
  * A decorating {@link Flux} {@link NettyInbound} with various {@link ByteBuf} related
@@ -147,6 +154,111 @@ public final class ByteBufFlux extends FluxSource<ByteBuf, ByteBuf> {
 		}), allocator);
 	}
 
+	/**
+	 * Open a {@link java.nio.channels.AsynchronousFileChannel} from a path and stream
+	 * {@link ByteBuf} chunks of 512k bytes into the returned
+	 * {@link ByteBufFlux}, reading up to 4 chunks ahead of demand.
+	 *
+	 * @param path the path to the resource to stream
+	 *
+	 * @return a {@link ByteBufFlux}
+	 * @see #fromPathAsync(Path, int, int, ByteBufAllocator)
+	 */
+	public static ByteBufFlux fromPathAsync(Path path) {
+		return fromPathAsync(path, MAX_CHUNK_SIZE, READ_AHEAD, ByteBufAllocator.DEFAULT);
+	}
+
+	/**
+	 * Open a {@link java.nio.channels.AsynchronousFileChannel} from a path and stream
+	 * {@link ByteBuf} chunks with a given maximum size into the returned
+	 * {@link ByteBufFlux}.
+	 * <p>
+	 * Unlike {@link #fromPath(Path, int, ByteBufAllocator)}, file reads never block
+	 * the subscribing or requesting thread, which makes it suitable for subscribing
+	 * from an event loop. Once requested, up to {@code readAhead} chunks are kept read
+	 * or being read ahead of the last emitted one, and released if the
+	 * {@link ByteBufFlux} is cancelled or fails.
+	 *
+	 * @param path the path to the resource to stream
+	 * @param maxChunkSize the maximum per-item ByteBuf size
+	 * @param readAhead the maximum number of chunks read ahead
+	 * @param allocator the channel {@link ByteBufAllocator}
+	 *
+	 * @return a {@link ByteBufFlux}
+	 */
+	public static ByteBufFlux fromPathAsync(Path path,
+			int maxChunkSize,
+			int readAhead,
+			ByteBufAllocator allocator) {
+		Objects.requireNonNull(path, "path");
+		Objects.requireNonNull(allocator, "allocator");
+		if (maxChunkSize < 1) {
+			throw new IllegalArgumentException("chunk size must be strictly positive, " + "was: " + maxChunkSize);
+		}
+		if (readAhead < 1) {
+			throw new IllegalArgumentException("read ahead must be strictly positive, " + "was: " + readAhead);
+		}
+		return new ByteBufFlux(new FluxAsyncFileRead(path,
+				maxChunkSize,
+				readAhead,
+				allocator), allocator);
+	}
+
+	/**
+	 * Open a {@link java.nio.channels.FileChannel} from a path and stream read-only
+	 * memory-mapped {@link ByteBuf} regions of 512k bytes into the
+	 * returned {@link ByteBufFlux} without copying them.
+	 *
+	 * @param path the path to the resource to stream
+	 *
+	 * @return a {@link ByteBufFlux}
+	 * @see #fromMappedPath(Path, int)
+	 */
+	public static ByteBufFlux fromMappedPath(Path path) {
+		return fromMappedPath(path, MAX_CHUNK_SIZE);
+	}
+
+	/**
+	 * Open a {@link java.nio.channels.FileChannel} from a path and stream read-only
+	 * memory-mapped {@link ByteBuf} regions with a given maximum size into the returned
+	 * {@link ByteBufFlux} without copying them.
+	 * <p>
+	 * Each region is unmapped as soon as its emitted {@link ByteBuf} and every derived
+	 * buffer have been released, the file is closed when the {@link ByteBufFlux}
+	 * terminates or is cancelled.
+	 *
+	 * @param path the path to the resource to stream
+	 * @param maxChunkSize the maximum per-item ByteBuf size
+	 *
+	 * @return a {@link ByteBufFlux}
+	 */
+	public static ByteBufFlux fromMappedPath(Path path, int maxChunkSize) {
+		Objects.requireNonNull(path, "path");
+		if (maxChunkSize < 1) {
+			throw new IllegalArgumentException("chunk size must be strictly positive, " + "was: " + maxChunkSize);
+		}
+		return new ByteBufFlux(Flux.generate(() -> FileChannel.open(path), (fc, sink) -> {
+			try {
+				long pos = fc.position();
+				long remaining = fc.size() - pos;
+				if (remaining <= 0) {
+					sink.complete();
+				}
+				else {
+					int size = (int) Math.min(maxChunkSize, remaining);
+					MappedByteBuffer region =
+							fc.map(FileChannel.MapMode.READ_ONLY, pos, size);
+					fc.position(pos + size);
+					sink.next(new MappedByteBuf(region));
+				}
+			}
+			catch (IOException e) {
+				sink.error(e);
+			}
+			return fc;
+		}, ByteBufFlux::closeQuietly), ByteBufAllocator.DEFAULT);
+	}
+
 	/**
 	 * a {@link ByteBuffer} inbound {@link Flux}
 	 *
@@ -197,6 +309,117 @@ public final class ByteBufFlux extends FluxSource<ByteBuf, ByteBuf> {
 		return map(s -> s.toString(charset));
 	}
 
+	/**
+	 * Split into frames separated by a delimiter byte, excluded from the emitted
+	 * frames.
+	 * <p>
+	 * Frames are emitted as retained slices of the received buffers, only accumulated
+	 * when spanning several of them, and must be released once consumed. A frame
+	 * longer than {@code maxFrameLength} fails the sequence with a
+	 * {@link io.netty.handler.codec.TooLongFrameException}.
+	 *
+	 * @param delimiter the frame delimiter
+	 * @param maxFrameLength the maximum frame length
+	 *
+	 * @return a {@link ByteBufFlux} of retained frames
+	 */
+	public ByteBufFlux delimited(byte delimiter, int maxFrameLength) {
+		checkMaxFrameLength(maxFrameLength);
+		return frame(new FluxByteBufFrame.DelimiterDecoder(delimiter,
+				false,
+				maxFrameLength));
+	}
+
+	/**
+	 * Split into lines ending with {@code \n} or {@code \r\n}, excluded from the
+	 * emitted frames.
+	 * <p>
+	 * Frames are emitted as retained slices of the received buffers, only accumulated
+	 * when spanning several of them, and must be released once consumed. A line
+	 * longer than {@code maxFrameLength} fails the sequence with a
+	 * {@link io.netty.handler.codec.TooLongFrameException}.
+	 *
+	 * @param maxFrameLength the maximum line length
+	 *
+	 * @return a {@link ByteBufFlux} of retained lines
+	 */
+	public ByteBufFlux lines(int maxFrameLength) {
+		checkMaxFrameLength(maxFrameLength);
+		return frame(new FluxByteBufFrame.DelimiterDecoder((byte) '\n',
+				true,
+				maxFrameLength));
+	}
+
+	/**
+	 * Split into frames prefixed by an unsigned big-endian length field, excluded from
+	 * the emitted frames and not counted in the frame length.
+	 *
+	 * @param lengthFieldLength the length field size in bytes: 1, 2, 3, 4 or 8
+	 * @param maxFrameLength the maximum frame length including the length field
+	 *
+	 * @return a {@link ByteBufFlux} of retained frames
+	 * @see #lengthFieldFramed(int, int, int, int, int)
+	 */
+	public ByteBufFlux lengthFieldFramed(int lengthFieldLength, int maxFrameLength) {
+		return lengthFieldFramed(0,
+				lengthFieldLength,
+				0,
+				lengthFieldLength,
+				maxFrameLength);
+	}
+
+	/**
+	 * Split into frames holding an unsigned big-endian length field, following the
+	 * semantics of {@link io.netty.handler.codec.LengthFieldBasedFrameDecoder}.
+	 * <p>
+	 * Frames are emitted as retained slices of the received buffers, only accumulated
+	 * when spanning several of them, and must be released once consumed. A frame
+	 * longer than {@code maxFrameLength} fails the sequence with a
+	 * {@link io.netty.handler.codec.TooLongFrameException}.
+	 *
+	 * @param lengthFieldOffset the offset of the length field
+	 * @param lengthFieldLength the length field size in bytes: 1, 2, 3, 4 or 8
+	 * @param lengthAdjustment the value to add to the length field value
+	 * @param initialBytesToStrip the number of leading bytes excluded from the frames
+	 * @param maxFrameLength the maximum frame length before stripping
+	 *
+	 * @return a {@link ByteBufFlux} of retained frames
+	 */
+	public ByteBufFlux lengthFieldFramed(int lengthFieldOffset,
+			int lengthFieldLength,
+			int lengthAdjustment,
+			int initialBytesToStrip,
+			int maxFrameLength) {
+		checkMaxFrameLength(maxFrameLength);
+		return frame(new FluxByteBufFrame.LengthFieldDecoder(lengthFieldOffset,
+				lengthFieldLength,
+				lengthAdjustment,
+				initialBytesToStrip,
+				maxFrameLength));
+	}
+
+	/**
+	 * Split a JSON stream into the elements of a top-level array, or into its top-level
+	 * objects and arrays if not starting with an array, without parsing them. Each
+	 * frame can then be parsed on its own so that a large array is processed with a
+	 * memory bounded by its largest element.
+	 * <p>
+	 * Frames are emitted as retained slices of the received buffers, only accumulated
+	 * when spanning several of them, and must be released once consumed. A frame
+	 * longer than {@code maxFrameLength} fails the sequence with a
+	 * {@link io.netty.handler.codec.TooLongFrameException}, a top-level value that is
+	 * neither an object nor an array with a
+	 * {@link io.netty.handler.codec.CorruptedFrameException}.
+	 *
+	 * @param maxFrameLength the maximum length of a JSON element
+	 *
+	 * @return a {@link ByteBufFlux} of retained JSON elements
+	 */
+	public ByteBufFlux jsonElements(int maxFrameLength) {
+		checkMaxFrameLength(maxFrameLength);
+		return frame(() -> new FluxByteBufFrame.JsonDecoder(maxFrameLength));
+	}
+
 	/**
 	 * Disable auto memory release on each signal published in order to prevent premature
 	 * recycling when buffers are accumulated downsteams (async).
@@ -212,13 +435,99 @@ public final class ByteBufFlux extends FluxSource<ByteBuf, ByteBuf> {
 	}
 
 	/**
-	 * Disable auto memory release on each signal published in order to prevent premature
-	 * recycling when buffers are accumulated downsteams (async).
+	 * Aggregate up to a maximum number of bytes, failing with a
+	 * {@link ByteBufOverflowException} and cancelling this {@link ByteBufFlux} as soon as
+	 * the maximum is crossed.
+	 *
+	 * @param maxBytes the maximum number of aggregated bytes
 	 *
 	 * @return {@link ByteBufMono} of retained {@link ByteBuf}
+	 * @see #aggregate()
+	 */
+	public ByteBufMono aggregate(int maxBytes) {
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("max bytes must be positive, " + "was: " + maxBytes);
+		}
+		return Mono.using(alloc::compositeBuffer,
+				b -> this.reduce(b, (prev, next) -> {
+					if (prev.capacity() + next.readableBytes() > maxBytes) {
+						throw new ByteBufOverflowException(maxBytes);
+					}
+					return prev.addComponent(next.retain());
+				})
+				         .doOnNext(cbb -> cbb.writerIndex(cbb.capacity()))
+				         .filter(ByteBuf::isReadable),
+				ByteBuf::release).as(ByteBufMono::new);
+	}
+
+	/**
+	 * Aggregate up to a maximum number of bytes, in memory up to a threshold and past it
+	 * into a temporary file memory-mapped as the aggregated {@link ByteBuf}. Fail with a
+	 * {@link ByteBufOverflowException} and cancel this {@link ByteBufFlux} as soon as the
+	 * maximum is crossed.
+	 * <p>
+	 * The temporary file is deleted once the aggregated {@link ByteBuf} is released.
+	 * Buffers past the threshold are retained and written to the file from a worker of
+	 * {@link reactor.core.scheduler.Schedulers#elastic()}, never blocking the thread
+	 * emitting them, and the aggregated {@link ByteBuf} is then emitted from that
+	 * worker.
+	 *
+	 * @param memoryThreshold the maximum number of bytes aggregated in memory
+	 * @param maxBytes the maximum number of aggregated bytes
+	 *
+	 * @return {@link ByteBufMono} of retained {@link ByteBuf}
+	 */
+	public ByteBufMono aggregate(int memoryThreshold, int maxBytes) {
+		if (memoryThreshold < 0) {
+			throw new IllegalArgumentException("memory threshold must be positive, " + "was: " + memoryThreshold);
+		}
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("max bytes must be positive, " + "was: " + maxBytes);
+		}
+		return Mono.using(() -> new SpillingAggregator(alloc, memoryThreshold, maxBytes),
+				a -> this.reduce(a, SpillingAggregator::add)
+				         .then(SpillingAggregator::result)
+				         .filter(ByteBuf::isReadable),
+				SpillingAggregator::dispose).as(ByteBufMono::new);
+	}
+
+	/**
+	 * Share this {@link ByteBufFlux} between a given number of subscribers, each
+	 * receiving its own {@link ByteBuf#retainedDuplicate()} of the same buffers to
+	 * release once consumed. This {@link ByteBufFlux} is subscribed once the given number
+	 * of subscribers are present.
+	 *
+	 * @param subscribers the number of subscribers to wait for before subscribing
+	 *
+	 * @return a multicasting {@link ByteBufFlux}
+	 */
+	public ByteBufFlux multicast(int subscribers) {
+		return multicast(subscribers, QueueSupplier.SMALL_BUFFER_SIZE);
+	}
+
+	/**
+	 * Share this {@link ByteBufFlux} between a given number of subscribers, each
+	 * receiving its own {@link ByteBuf#retainedDuplicate()} of the same buffers to
+	 * release once consumed. This {@link ByteBufFlux} is subscribed once the given number
+	 * of subscribers are present.
+	 * <p>
+	 * Up to {@code bufferSize} buffers are retained while the slowest subscriber has no
+	 * demand, they are released if every subscriber cancels or on error.
+	 *
+	 * @param subscribers the number of subscribers to wait for before subscribing
+	 * @param bufferSize the maximum number of buffers retained for the slowest subscriber
+	 *
+	 * @return a multicasting {@link ByteBufFlux}
 	 */
-	public ByteBufMono multicast() {
-		throw new UnsupportedOperationException("Not yet implemented");
+	public ByteBufFlux multicast(int subscribers, int bufferSize) {
+		if (subscribers < 1) {
+			throw new IllegalArgumentException("subscribers must be strictly positive, " + "was: " + subscribers);
+		}
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("buffer size must be strictly positive, " + "was: " + bufferSize);
+		}
+		return new ByteBufFlux(new FluxByteBufMulticast(this, subscribers, bufferSize),
+				alloc);
 	}
 
 	/**
@@ -243,6 +552,50 @@ public final class ByteBufFlux extends FluxSource<ByteBuf, ByteBuf> {
 		source.subscribe(s);
 	}
 
+	final ByteBufFlux frame(FluxByteBufFrame.Decoder decoder) {
+		return frame(() -> decoder);
+	}
+
+	final ByteBufFlux frame(Supplier<? extends FluxByteBufFrame.Decoder> decoders) {
+		return new ByteBufFlux(new FluxByteBufFrame(this, decoders, alloc), alloc);
+	}
+
+	static void checkMaxFrameLength(int maxFrameLength) {
+		if (maxFrameLength < 1) {
+			throw new IllegalArgumentException("max frame length must be strictly positive, " + "was: " + maxFrameLength);
+		}
+	}
+
+	static void closeQuietly(FileChannel fc) {
+		try {
+			fc.close();
+		}
+		catch (IOException ignored) {
+		}
+	}
+
+	/**
+	 * A read-only memory-mapped file region unmapped once fully released
+	 */
+	static final class MappedByteBuf extends CompositeByteBuf {
+
+		final MappedByteBuffer region;
+
+		MappedByteBuf(MappedByteBuffer region) {
+			super(UnpooledByteBufAllocator.DEFAULT,
+					true,
+					2,
+					Unpooled.wrappedBuffer(region));
+			this.region = region;
+		}
+
+		@Override
+		protected void deallocate() {
+			super.deallocate();
+			PlatformDependent.freeDirectBuffer(region);
+		}
+	}
+
 	/**
 	 * A channel object to bytebuf transformer
 	 */
@@ -257,4 +610,5 @@ public final class ByteBufFlux extends FluxSource<ByteBuf, ByteBuf> {
 	};
 
 	final static int MAX_CHUNK_SIZE = 1024 * 512; //500k
+	final static int READ_AHEAD     = 4;
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty;
+
+/**
+ * An error for signalling that more bytes than allowed have been received while
+ * aggregating a {@link ByteBufFlux}
+ *
+ * @author Stephane Maldini
+ */
+public class ByteBufOverflowException extends RuntimeException {
+
+	private final long maxBytes;
+
+	public ByteBufOverflowException(long maxBytes) {
+		super("Aggregated content exceeds the maximum of " + maxBytes + " bytes");
+		this.maxBytes = maxBytes;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return null;
+	}
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+
+/**
+ * Read a file with an {@link AsynchronousFileChannel} into {@link ByteBuf} chunks,
+ * keeping up to a given number of chunks read or being read ahead of the emitted one.
+ * Reads are only started once requested and complete on the
+ * {@link AsynchronousFileChannel} thread pool, never on the subscribing thread.
+ * <p>
+ * Chunks are emitted in file order, chunks read ahead are released on cancel or
+ * error.
+ *
+ * @author Stephane Maldini
+ */
+final class FluxAsyncFileRead extends Flux<ByteBuf> {
+
+	final Path             path;
+	final int              chunkSize;
+	final int              readAhead;
+	final ByteBufAllocator allocator;
+
+	FluxAsyncFileRead(Path path,
+			int chunkSize,
+			int readAhead,
+			ByteBufAllocator allocator) {
+		this.path = path;
+		this.chunkSize = chunkSize;
+		this.readAhead = readAhead;
+		this.allocator = allocator;
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super ByteBuf> s) {
+		AsynchronousFileChannel channel;
+		long size;
+		try {
+			channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+		}
+		catch (IOException e) {
+			Operators.error(s, e);
+			return;
+		}
+		try {
+			size = channel.size();
+		}
+		catch (IOException e) {
+			closeQuietly(channel);
+			Operators.error(s, e);
+			return;
+		}
+		s.onSubscribe(new ReadAheadSubscription(s, channel, size, this));
+	}
+
+	static void closeQuietly(AsynchronousFileChannel channel) {
+		try {
+			channel.close();
+		}
+		catch (IOException ignored) {
+		}
+	}
+
+	static final class ReadAheadSubscription
+			implements Subscription, CompletionHandler<Integer, ReadAheadSubscription.Chunk> {
+
+		final Subscriber<? super ByteBuf> actual;
+		final AsynchronousFileChannel     channel;
+		final long                        size;
+		final long                        chunks;
+		final int                         chunkSize;
+		final int                         readAhead;
+		final ByteBufAllocator            allocator;
+
+		/**
+		 * Ring of read-ahead slots indexed by chunk sequence, holding either a read
+		 * {@link ByteBuf} or the {@link Throwable} that failed it
+		 */
+		final AtomicReferenceArray<Object> slots;
+
+		volatile long requested;
+		volatile int  wip;
+
+		volatile boolean cancelled;
+
+		long    emitted;
+		long    issued;
+		boolean done;
+
+		ReadAheadSubscription(Subscriber<? super ByteBuf> actual,
+				AsynchronousFileChannel channel,
+				long size,
+				FluxAsyncFileRead parent) {
+			this.actual = actual;
+			this.channel = channel;
+			this.size = size;
+			this.chunkSize = parent.chunkSize;
+			this.chunks = (size + chunkSize - 1) / chunkSize;
+			this.readAhead = parent.readAhead;
+			this.allocator = parent.allocator;
+			this.slots = new AtomicReferenceArray<>(readAhead);
+		}
+
+		@Override
+		public void request(long n) {
+			if (Operators.validate(n)) {
+				Operators.getAndAddCap(REQUESTED, this, n);
+				drain();
+			}
+		}
+
+		@Override
+		public void cancel() {
+			if (!cancelled) {
+				cancelled = true;
+				drain();
+			}
+		}
+
+		@Override
+		public void completed(Integer read, Chunk chunk) {
+			if (read >= 0) {
+				ByteBuf buf = chunk.buffer;
+				buf.writerIndex(buf.writerIndex() + read);
+				if (buf.isWritable() && read > 0 && !cancelled) {
+					read(chunk);
+					return;
+				}
+				slots.set(slot(chunk.sequence), buf);
+			}
+			else {
+				chunk.buffer.release();
+				slots.set(slot(chunk.sequence),
+						new IOException("Unexpected end of file at chunk " + chunk.sequence));
+			}
+			drain();
+		}
+
+		@Override
+		public void failed(Throwable exc, Chunk chunk) {
+			chunk.buffer.release();
+			slots.set(slot(chunk.sequence), exc);
+			drain();
+		}
+
+		final void drain() {
+			if (WIP.getAndIncrement(this) != 0) {
+				return;
+			}
+			int missed = 1;
+			for (; ; ) {
+				if (done || cancelled) {
+					terminate();
+				}
+				else {
+					emitAndRead();
+				}
+
+				missed = WIP.addAndGet(this, -missed);
+				if (missed == 0) {
+					break;
+				}
+			}
+		}
+
+		final void emitAndRead() {
+			long r = requested;
+			long e = 0L;
+
+			while (e != r && emitted != chunks) {
+				int slot = slot(emitted);
+				Object o = slots.get(slot);
+				if (o == null) {
+					break;
+				}
+				slots.set(slot, null);
+				emitted++;
+				if (o instanceof Throwable) {
+					terminate();
+					actual.onError((Throwable) o);
+					return;
+				}
+				actual.onNext((ByteBuf) o);
+				if (cancelled) {
+					terminate();
+					return;
+				}
+				e++;
+			}
+
+			if (emitted == chunks) {
+				terminate();
+				actual.onComplete();
+				return;
+			}
+
+			if (e != 0L && r != Long.MAX_VALUE) {
+				REQUESTED.addAndGet(this, -e);
+			}
+
+			if (r != 0L || issued != 0L) {
+				while (issued != chunks && issued - emitted < readAhead) {
+					long position = issued * chunkSize;
+					int length = (int) Math.min(chunkSize, size - position);
+					read(new Chunk(issued++, position, allocator.directBuffer(length, length)));
+				}
+			}
+		}
+
+		final void read(Chunk chunk) {
+			ByteBuf buf = chunk.buffer;
+			ByteBuffer nio = buf.nioBuffer(buf.writerIndex(), buf.writableBytes());
+			try {
+				channel.read(nio, chunk.position + buf.writerIndex(), chunk, this);
+			}
+			catch (Throwable t) {
+				failed(t, chunk);
+			}
+		}
+
+		final int slot(long sequence) {
+			return (int) (sequence % readAhead);
+		}
+
+		/**
+		 * Close the file and release every chunk read ahead, reads still in flight
+		 * fail on close and their chunk is released by the drain they trigger
+		 */
+		final void terminate() {
+			if (!done) {
+				done = true;
+				closeQuietly(channel);
+			}
+			for (int i = 0; i < readAhead; i++) {
+				Object o = slots.getAndSet(i, null);
+				if (o instanceof ByteBuf) {
+					((ByteBuf) o).release();
+				}
+			}
+		}
+
+		static final class Chunk {
+
+			final long    sequence;
+			final long    position;
+			final ByteBuf buffer;
+
+			Chunk(long sequence, long position, ByteBuf buffer) {
+				this.sequence = sequence;
+				this.position = position;
+				this.buffer = buffer;
+			}
+		}
+
+		static final AtomicLongFieldUpdater<ReadAheadSubscription> REQUESTED =
+				AtomicLongFieldUpdater.newUpdater(ReadAheadSubscription.class,
+						"requested");
+
+		static final AtomicIntegerFieldUpdater<ReadAheadSubscription> WIP =
+				AtomicIntegerFieldUpdater.newUpdater(ReadAheadSubscription.class, "wip");
+	}
+}
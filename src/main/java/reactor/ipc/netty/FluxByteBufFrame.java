@@ -0,0 +1,594 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.Supplier;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.ByteProcessor;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import reactor.core.Exceptions;
+import reactor.core.publisher.FluxSource;
+import reactor.core.publisher.Operators;
+
+/**
+ * Split a {@link ByteBuf} sequence into frames emitted as retained slices of the
+ * source buffers. Bytes are only accumulated, into a {@link CompositeByteBuf} of the
+ * retained source buffers, when a frame spans several of them.
+ * <p>
+ * A frame longer than the decoder maximum fails the sequence with a
+ * {@link TooLongFrameException}, a trailing incomplete frame is discarded on
+ * completion.
+ *
+ * @author Stephane Maldini
+ */
+final class FluxByteBufFrame extends FluxSource<ByteBuf, ByteBuf> {
+
+	final Supplier<? extends Decoder> decoders;
+	final ByteBufAllocator            alloc;
+
+	FluxByteBufFrame(Publisher<? extends ByteBuf> source,
+			Supplier<? extends Decoder> decoders,
+			ByteBufAllocator alloc) {
+		super(source);
+		this.decoders = decoders;
+		this.alloc = alloc;
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super ByteBuf> s) {
+		source.subscribe(new FrameSubscriber(s, decoders.get(), alloc));
+	}
+
+	/**
+	 * Extract the next frame from an accumulated {@link ByteBuf}, a stateful decoder
+	 * is only used by a single subscriber
+	 */
+	interface Decoder {
+
+		/**
+		 * Return the next frame as a retained slice and move the reader index past it,
+		 * or return null if the frame is incomplete. Bytes that are not part of any frame
+		 * may be skipped before returning null.
+		 *
+		 * @param in the accumulated bytes
+		 *
+		 * @return the next retained frame or null
+		 */
+		ByteBuf decode(ByteBuf in);
+	}
+
+	/**
+	 * Split on a delimiter byte excluded from the frames, optionally excluding a
+	 * carriage return preceding it
+	 */
+	static final class DelimiterDecoder implements Decoder {
+
+		final ByteProcessor finder;
+		final boolean       stripCr;
+		final int           maxFrameLength;
+
+		int scanned;
+
+		DelimiterDecoder(byte delimiter, boolean stripCr, int maxFrameLength) {
+			this.finder = new ByteProcessor.IndexOfProcessor(delimiter);
+			this.stripCr = stripCr;
+			this.maxFrameLength = maxFrameLength;
+		}
+
+		@Override
+		public ByteBuf decode(ByteBuf in) {
+			int start = in.readerIndex();
+			int index = in.forEachByte(start + scanned, in.readableBytes() - scanned, finder);
+			if (index < 0) {
+				if (in.readableBytes() > maxFrameLength + (stripCr ? 1 : 0)) {
+					throw new TooLongFrameException("frame length exceeds " + maxFrameLength);
+				}
+				scanned = in.readableBytes();
+				return null;
+			}
+			scanned = 0;
+			int length = index - start;
+			if (stripCr && length > 0 && in.getByte(index - 1) == '\r') {
+				length--;
+			}
+			if (length > maxFrameLength) {
+				throw new TooLongFrameException("frame length (" + length + ") exceeds " + maxFrameLength);
+			}
+			ByteBuf frame = in.retainedSlice(start, length);
+			in.readerIndex(index + 1);
+			return frame;
+		}
+	}
+
+	/**
+	 * Split on an unsigned big-endian length field, with the same semantics as
+	 * {@link io.netty.handler.codec.LengthFieldBasedFrameDecoder}
+	 */
+	static final class LengthFieldDecoder implements Decoder {
+
+		final int lengthFieldOffset;
+		final int lengthFieldLength;
+		final int lengthAdjustment;
+		final int initialBytesToStrip;
+		final int maxFrameLength;
+		final int lengthFieldEnd;
+
+		LengthFieldDecoder(int lengthFieldOffset,
+				int lengthFieldLength,
+				int lengthAdjustment,
+				int initialBytesToStrip,
+				int maxFrameLength) {
+			if (lengthFieldLength != 1 && lengthFieldLength != 2 && lengthFieldLength != 3 && lengthFieldLength != 4 && lengthFieldLength != 8) {
+				throw new IllegalArgumentException("length field length must be 1, 2, 3, 4 or 8, was: " + lengthFieldLength);
+			}
+			if (lengthFieldOffset < 0) {
+				throw new IllegalArgumentException("length field offset must be positive, was: " + lengthFieldOffset);
+			}
+			if (initialBytesToStrip < 0) {
+				throw new IllegalArgumentException("initial bytes to strip must be positive, was: " + initialBytesToStrip);
+			}
+			this.lengthFieldOffset = lengthFieldOffset;
+			this.lengthFieldLength = lengthFieldLength;
+			this.lengthAdjustment = lengthAdjustment;
+			this.initialBytesToStrip = initialBytesToStrip;
+			this.maxFrameLength = maxFrameLength;
+			this.lengthFieldEnd = lengthFieldOffset + lengthFieldLength;
+		}
+
+		@Override
+		public ByteBuf decode(ByteBuf in) {
+			if (in.readableBytes() < lengthFieldEnd) {
+				return null;
+			}
+			int start = in.readerIndex();
+			long frameLength =
+					fieldValue(in, start + lengthFieldOffset) + lengthAdjustment + lengthFieldEnd;
+			if (frameLength < lengthFieldEnd || frameLength < initialBytesToStrip) {
+				throw new CorruptedFrameException("invalid frame length: " + frameLength);
+			}
+			if (frameLength > maxFrameLength) {
+				throw new TooLongFrameException("frame length (" + frameLength + ") exceeds " + maxFrameLength);
+			}
+			int length = (int) frameLength;
+			if (in.readableBytes() < length) {
+				return null;
+			}
+			ByteBuf frame = in.retainedSlice(start + initialBytesToStrip,
+					length - initialBytesToStrip);
+			in.readerIndex(start + length);
+			return frame;
+		}
+
+		final long fieldValue(ByteBuf in, int index) {
+			switch (lengthFieldLength) {
+				case 1:
+					return in.getUnsignedByte(index);
+				case 2:
+					return in.getUnsignedShort(index);
+				case 3:
+					return in.getUnsignedMedium(index);
+				case 4:
+					return in.getUnsignedInt(index);
+				default:
+					long value = in.getLong(index);
+					if (value < 0) {
+						throw new CorruptedFrameException("negative frame length: " + value);
+					}
+					return value;
+			}
+		}
+	}
+
+	/**
+	 * Split a JSON stream into its top-level objects and arrays, or into the elements
+	 * of a top-level array, without parsing them. Only structure, string and escape
+	 * characters are tracked, bytes already scanned are never scanned again.
+	 */
+	static final class JsonDecoder implements Decoder {
+
+		final int maxFrameLength;
+
+		int     scanned;
+		int     depth;
+		boolean inString;
+		boolean escaped;
+		boolean streamArray;
+
+		JsonDecoder(int maxFrameLength) {
+			this.maxFrameLength = maxFrameLength;
+		}
+
+		@Override
+		public ByteBuf decode(ByteBuf in) {
+			if (scanned == 0) {
+				if (!skipSeparators(in)) {
+					return null;
+				}
+				// separators and the end of a streamed array are skipped above, anything
+				// else than an object at the top level, or a closing '}' in a streamed
+				// array, cannot start a frame
+				byte c = in.getByte(in.readerIndex());
+				if (streamArray ? c == '}' : c != '{') {
+					throw new CorruptedFrameException("expected a JSON object or array, found: " + (char) c);
+				}
+			}
+			int start = in.readerIndex();
+			int end = in.writerIndex();
+			for (int i = start + scanned; i < end; i++) {
+				byte c = in.getByte(i);
+				if (inString) {
+					if (escaped) {
+						escaped = false;
+					}
+					else if (c == '\\') {
+						escaped = true;
+					}
+					else if (c == '"') {
+						inString = false;
+					}
+					continue;
+				}
+				switch (c) {
+					case '"':
+						inString = true;
+						break;
+					case '{':
+					case '[':
+						depth++;
+						break;
+					case '}':
+					case ']':
+						if (depth == 0) {
+							// end of the streamed array after a scalar element
+							return frame(in, start, i);
+						}
+						if (--depth == 0) {
+							return frame(in, start, i + 1);
+						}
+						break;
+					case ',':
+						if (depth == 0) {
+							return frame(in, start, i);
+						}
+						break;
+				}
+			}
+			scanned = end - start;
+			if (scanned > maxFrameLength) {
+				throw new TooLongFrameException("frame length exceeds " + maxFrameLength);
+			}
+			return null;
+		}
+
+		/**
+		 * Skip whitespace and separators before the next frame, entering or leaving a
+		 * streamed top-level array
+		 *
+		 * @param in the accumulated bytes
+		 *
+		 * @return true if the next frame starts at the reader index
+		 */
+		final boolean skipSeparators(ByteBuf in) {
+			while (in.isReadable()) {
+				byte c = in.getByte(in.readerIndex());
+				if (isWhitespace(c) || (streamArray && c == ',')) {
+					in.skipBytes(1);
+				}
+				else if (streamArray && c == ']') {
+					streamArray = false;
+					in.skipBytes(1);
+				}
+				else if (!streamArray && c == '[') {
+					streamArray = true;
+					in.skipBytes(1);
+				}
+				else {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		final ByteBuf frame(ByteBuf in, int start, int end) {
+			int last = end;
+			while (last > start && isWhitespace(in.getByte(last - 1))) {
+				last--;
+			}
+			int length = last - start;
+			if (length > maxFrameLength) {
+				throw new TooLongFrameException("frame length (" + length + ") exceeds " + maxFrameLength);
+			}
+			ByteBuf frame = in.retainedSlice(start, length);
+			in.readerIndex(end);
+			scanned = 0;
+			depth = 0;
+			return frame;
+		}
+
+		static boolean isWhitespace(byte c) {
+			return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+		}
+	}
+
+	/**
+	 * Decode each source buffer as it is received, since its owner may release it as
+	 * soon as onNext returns, and emit the decoded frames on demand. The source is
+	 * requested one buffer at a time when no decoded frame is left.
+	 */
+	static final class FrameSubscriber implements Subscriber<ByteBuf>, Subscription {
+
+		final Subscriber<? super ByteBuf> actual;
+		final Decoder                     decoder;
+		final ByteBufAllocator            alloc;
+		final Queue<ByteBuf>              frames;
+
+		Subscription s;
+		ByteBuf      cumulation;
+		Throwable    error;
+		boolean      terminated;
+
+		volatile long    requested;
+		volatile int     wip;
+		volatile int     decoding;
+		volatile boolean sourceRequested;
+		volatile boolean done;
+		volatile boolean cancelled;
+
+		FrameSubscriber(Subscriber<? super ByteBuf> actual,
+				Decoder decoder,
+				ByteBufAllocator alloc) {
+			this.actual = actual;
+			this.decoder = decoder;
+			this.alloc = alloc;
+			this.frames = new ConcurrentLinkedQueue<>();
+		}
+
+		@Override
+		public void onSubscribe(Subscription s) {
+			if (Operators.validate(this.s, s)) {
+				this.s = s;
+				actual.onSubscribe(this);
+			}
+		}
+
+		@Override
+		public void onNext(ByteBuf buf) {
+			if (DECODING.getAndIncrement(this) != 0) {
+				return;
+			}
+			sourceRequested = false;
+			try {
+				decode(buf);
+			}
+			catch (Throwable e) {
+				Exceptions.throwIfFatal(e);
+				s.cancel();
+				releaseCumulation();
+				error = e;
+				done = true;
+				drain();
+				return;
+			}
+			if (DECODING.decrementAndGet(this) != 0) {
+				releaseCumulation();
+			}
+			drain();
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			if (done) {
+				Operators.onErrorDropped(t);
+				return;
+			}
+			if (DECODING.getAndIncrement(this) == 0) {
+				releaseCumulation();
+			}
+			error = t;
+			done = true;
+			drain();
+		}
+
+		@Override
+		public void onComplete() {
+			if (done) {
+				return;
+			}
+			if (DECODING.getAndIncrement(this) == 0) {
+				releaseCumulation();
+			}
+			done = true;
+			drain();
+		}
+
+		@Override
+		public void request(long n) {
+			if (Operators.validate(n)) {
+				Operators.getAndAddCap(REQUESTED, this, n);
+				drain();
+			}
+		}
+
+		@Override
+		public void cancel() {
+			if (!cancelled) {
+				cancelled = true;
+				s.cancel();
+				if (DECODING.getAndIncrement(this) == 0) {
+					releaseCumulation();
+				}
+				drain();
+			}
+		}
+
+		final void decode(ByteBuf buf) {
+			ByteBuf in;
+			ByteBuf cumulation = this.cumulation;
+			if (cumulation == null) {
+				in = buf;
+			}
+			else {
+				CompositeByteBuf composite;
+				if (cumulation instanceof CompositeByteBuf) {
+					composite = (CompositeByteBuf) cumulation;
+				}
+				else {
+					composite = alloc.compositeBuffer(Integer.MAX_VALUE)
+					                 .addComponent(true, cumulation);
+				}
+				in = this.cumulation = composite.addComponent(true, buf.retain());
+			}
+
+			ByteBuf frame;
+			boolean sliced = false;
+			while (in.isReadable() && (frame = decoder.decode(in)) != null) {
+				frames.offer(frame);
+				sliced = true;
+			}
+
+			if (in == buf) {
+				if (buf.isReadable()) {
+					this.cumulation = buf.retainedSlice();
+				}
+			}
+			else if (!in.isReadable()) {
+				releaseCumulation();
+			}
+			else if (!sliced) {
+				// no frame references the composite, keep accumulating into it
+				((CompositeByteBuf) in).discardReadComponents();
+			}
+			else {
+				// emitted frames are slices indexed on the current composite which must
+				// not be compacted, carry the unread components over to a new one
+				CompositeByteBuf next = alloc.compositeBuffer(Integer.MAX_VALUE);
+				for (ByteBuf component : ((CompositeByteBuf) in).decompose(in.readerIndex(),
+						in.readableBytes())) {
+					next.addComponent(true, component.retain());
+				}
+				in.release();
+				this.cumulation = next;
+			}
+		}
+
+		final void releaseCumulation() {
+			ByteBuf cumulation = this.cumulation;
+			if (cumulation != null) {
+				this.cumulation = null;
+				cumulation.release();
+			}
+		}
+
+		final void drain() {
+			if (WIP.getAndIncrement(this) != 0) {
+				return;
+			}
+			int missed = 1;
+			for (; ; ) {
+				if (terminated || cancelled) {
+					clear();
+				}
+				else {
+					emit();
+				}
+				missed = WIP.addAndGet(this, -missed);
+				if (missed == 0) {
+					break;
+				}
+			}
+		}
+
+		final void emit() {
+			long r = requested;
+			long e = 0L;
+
+			while (e != r) {
+				if (checkTerminated(done, frames.isEmpty())) {
+					return;
+				}
+				ByteBuf frame = frames.poll();
+				if (frame == null) {
+					break;
+				}
+				actual.onNext(frame);
+				e++;
+			}
+
+			if (checkTerminated(done, frames.isEmpty())) {
+				return;
+			}
+
+			if (e != 0L && r != Long.MAX_VALUE) {
+				r = REQUESTED.addAndGet(this, -e);
+			}
+
+			if (r != 0L && !done && !sourceRequested && frames.isEmpty()) {
+				sourceRequested = true;
+				s.request(1);
+			}
+		}
+
+		final boolean checkTerminated(boolean d, boolean empty) {
+			if (cancelled) {
+				clear();
+				return true;
+			}
+			if (d) {
+				Throwable e = error;
+				if (e != null) {
+					terminated = true;
+					clear();
+					actual.onError(e);
+					return true;
+				}
+				if (empty) {
+					terminated = true;
+					actual.onComplete();
+					return true;
+				}
+			}
+			return false;
+		}
+
+		final void clear() {
+			ByteBuf frame;
+			while ((frame = frames.poll()) != null) {
+				frame.release();
+			}
+		}
+
+		static final AtomicLongFieldUpdater<FrameSubscriber> REQUESTED =
+				AtomicLongFieldUpdater.newUpdater(FrameSubscriber.class, "requested");
+
+		static final AtomicIntegerFieldUpdater<FrameSubscriber> WIP =
+				AtomicIntegerFieldUpdater.newUpdater(FrameSubscriber.class, "wip");
+
+		static final AtomicIntegerFieldUpdater<FrameSubscriber> DECODING =
+				AtomicIntegerFieldUpdater.newUpdater(FrameSubscriber.class, "decoding");
+	}
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty;
+
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import io.netty.buffer.ByteBuf;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+import reactor.util.concurrent.QueueSupplier;
+
+/**
+ * Share a single subscription to a {@link ByteBuf} source between several
+ * subscribers, each receiving its own {@link ByteBuf#retainedDuplicate()} of every
+ * buffer to release independently.
+ * <p>
+ * The source is subscribed once a given number of subscribers are present. Up to a
+ * given number of buffers are retained while the slowest subscriber has no demand,
+ * and released when every subscriber cancels or the source fails.
+ *
+ * @author Stephane Maldini
+ */
+final class FluxByteBufMulticast extends Flux<ByteBuf> implements Subscriber<ByteBuf> {
+
+	final Publisher<? extends ByteBuf> source;
+	final int                          minSubscribers;
+	final int                          bufferSize;
+	final int                          limit;
+	final Queue<ByteBuf>               queue;
+
+	volatile Inner[]      subscribers = EMPTY;
+	volatile Subscription s;
+	volatile int          connected;
+	volatile int          wip;
+	volatile boolean      done;
+	volatile boolean      cancelled;
+
+	Throwable error;
+	int       consumed;
+
+	FluxByteBufMulticast(Publisher<? extends ByteBuf> source,
+			int minSubscribers,
+			int bufferSize) {
+		this.source = source;
+		this.minSubscribers = minSubscribers;
+		this.bufferSize = bufferSize;
+		this.limit = Math.max(1, bufferSize - (bufferSize >> 2));
+		this.queue = QueueSupplier.<ByteBuf>get(bufferSize).get();
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super ByteBuf> actual) {
+		Inner inner = new Inner(actual, this);
+		actual.onSubscribe(inner);
+		int n = add(inner);
+		if (n < 0) {
+			if (error != null) {
+				actual.onError(error);
+			}
+			else if (done) {
+				actual.onComplete();
+			}
+			else {
+				actual.onError(new IllegalStateException(
+						"The multicast source has been cancelled"));
+			}
+			return;
+		}
+		if (inner.cancelled) {
+			remove(inner);
+			return;
+		}
+		if (n >= minSubscribers && connected == 0 && CONNECTED.compareAndSet(this,
+				0,
+				1)) {
+			source.subscribe(this);
+		}
+		drain();
+	}
+
+	@Override
+	public void onSubscribe(Subscription s) {
+		if (Operators.setOnce(S, this, s)) {
+			s.request(bufferSize);
+		}
+	}
+
+	@Override
+	public void onNext(ByteBuf buf) {
+		if (cancelled) {
+			return;
+		}
+		if (done) {
+			Operators.onNextDropped(buf);
+			return;
+		}
+		if (!queue.offer(buf.retain())) {
+			buf.release();
+			onError(Operators.onOperatorError(s,
+					Exceptions.failWithOverflow(),
+					buf));
+			return;
+		}
+		drain();
+	}
+
+	@Override
+	public void onError(Throwable t) {
+		if (done) {
+			Operators.onErrorDropped(t);
+			return;
+		}
+		error = t;
+		done = true;
+		drain();
+	}
+
+	@Override
+	public void onComplete() {
+		done = true;
+		drain();
+	}
+
+	final void drain() {
+		if (WIP.getAndIncrement(this) != 0) {
+			return;
+		}
+		int missed = 1;
+		for (; ; ) {
+			if (cancelled) {
+				clear();
+			}
+			else {
+				emit();
+			}
+			missed = WIP.addAndGet(this, -missed);
+			if (missed == 0) {
+				break;
+			}
+		}
+	}
+
+	final void emit() {
+		Inner[] a = subscribers;
+		if (a == TERMINATED) {
+			clear();
+			return;
+		}
+		if (a.length == 0) {
+			return;
+		}
+		long r = Long.MAX_VALUE;
+		for (Inner inner : a) {
+			r = Math.min(r, inner.requested);
+		}
+
+		long e = 0L;
+		while (e != r) {
+			if (done && checkTerminated()) {
+				return;
+			}
+			ByteBuf buf = queue.poll();
+			if (buf == null) {
+				break;
+			}
+			for (Inner inner : a) {
+				if (!inner.cancelled) {
+					inner.actual.onNext(buf.retainedDuplicate());
+				}
+			}
+			buf.release();
+			e++;
+			if (++consumed == limit) {
+				consumed = 0;
+				s.request(limit);
+			}
+		}
+
+		if (done && checkTerminated()) {
+			return;
+		}
+
+		if (e != 0L) {
+			for (Inner inner : a) {
+				inner.produced(e);
+			}
+		}
+	}
+
+	/**
+	 * Terminate every subscriber once the queue is drained or right away on error
+	 *
+	 * @return true if terminated
+	 */
+	final boolean checkTerminated() {
+		Throwable e = error;
+		if (e == null && !queue.isEmpty()) {
+			return false;
+		}
+		clear();
+		for (Inner inner : SUBSCRIBERS.getAndSet(this, TERMINATED)) {
+			if (e != null) {
+				inner.actual.onError(e);
+			}
+			else {
+				inner.actual.onComplete();
+			}
+		}
+		return true;
+	}
+
+	final void clear() {
+		ByteBuf buf;
+		while ((buf = queue.poll()) != null) {
+			buf.release();
+		}
+	}
+
+	final int add(Inner inner) {
+		for (; ; ) {
+			Inner[] a = subscribers;
+			if (a == TERMINATED) {
+				return -1;
+			}
+			int n = a.length;
+			Inner[] b = new Inner[n + 1];
+			System.arraycopy(a, 0, b, 0, n);
+			b[n] = inner;
+			if (SUBSCRIBERS.compareAndSet(this, a, b)) {
+				return n + 1;
+			}
+		}
+	}
+
+	final void remove(Inner inner) {
+		for (; ; ) {
+			Inner[] a = subscribers;
+			if (a == TERMINATED || a == EMPTY) {
+				return;
+			}
+			int n = a.length;
+			int j = -1;
+			for (int i = 0; i < n; i++) {
+				if (a[i] == inner) {
+					j = i;
+					break;
+				}
+			}
+			if (j < 0) {
+				return;
+			}
+			Inner[] b;
+			if (n == 1) {
+				if (connected == 1) {
+					b = TERMINATED;
+				}
+				else {
+					b = EMPTY;
+				}
+			}
+			else {
+				b = new Inner[n - 1];
+				System.arraycopy(a, 0, b, 0, j);
+				System.arraycopy(a, j + 1, b, j, n - j - 1);
+			}
+			if (SUBSCRIBERS.compareAndSet(this, a, b)) {
+				if (b == TERMINATED) {
+					cancelled = true;
+					Operators.terminate(S, this);
+				}
+				drain();
+				return;
+			}
+		}
+	}
+
+	static final class Inner implements Subscription {
+
+		final Subscriber<? super ByteBuf> actual;
+		final FluxByteBufMulticast        parent;
+
+		volatile long    requested;
+		volatile boolean cancelled;
+
+		Inner(Subscriber<? super ByteBuf> actual, FluxByteBufMulticast parent) {
+			this.actual = actual;
+			this.parent = parent;
+		}
+
+		@Override
+		public void request(long n) {
+			if (Operators.validate(n)) {
+				Operators.getAndAddCap(REQUESTED, this, n);
+				parent.drain();
+			}
+		}
+
+		@Override
+		public void cancel() {
+			if (!cancelled) {
+				cancelled = true;
+				parent.remove(this);
+			}
+		}
+
+		void produced(long n) {
+			if (requested != Long.MAX_VALUE) {
+				REQUESTED.addAndGet(this, -n);
+			}
+		}
+
+		static final AtomicLongFieldUpdater<Inner> REQUESTED =
+				AtomicLongFieldUpdater.newUpdater(Inner.class, "requested");
+	}
+
+	static final Inner[] EMPTY      = new Inner[0];
+	static final Inner[] TERMINATED = new Inner[0];
+
+	static final AtomicReferenceFieldUpdater<FluxByteBufMulticast, Inner[]> SUBSCRIBERS =
+			AtomicReferenceFieldUpdater.newUpdater(FluxByteBufMulticast.class,
+					Inner[].class,
+					"subscribers");
+
+	static final AtomicReferenceFieldUpdater<FluxByteBufMulticast, Subscription> S =
+			AtomicReferenceFieldUpdater.newUpdater(FluxByteBufMulticast.class,
+					Subscription.class,
+					"s");
+
+	static final AtomicIntegerFieldUpdater<FluxByteBufMulticast> CONNECTED =
+			AtomicIntegerFieldUpdater.newUpdater(FluxByteBufMulticast.class,
+					"connected");
+
+	static final AtomicIntegerFieldUpdater<FluxByteBufMulticast> WIP =
+			AtomicIntegerFieldUpdater.newUpdater(FluxByteBufMulticast.class, "wip");
+}
@@ -30,9 +30,20 @@ import java.util.Objects;
  * -> ssl ? [SslReader]
  * -> log ? [LoggingHandler]
  * -> http server & keep-alive ? [HttpKeepAlive]
+ * -> http server ? [HttpPipelining]
+ * -> pipelined pooled client connection ? [PipelinedBridge]
  * => [BridgeSetup]
+ * -> write coalescing ? [WriteCoalescer]
  * -> http ws ? [HttpAggregator]
+ * -> http2 cleartext prior knowledge ? [Http2Detector]
+ * -> http2 over ssl ? [Http2Negotiator]
  * -> http ? [HttpCodecHandler]
+ * -> http2 cleartext upgrade ? [HttpUpgrader]
+ * -> http2 pooled client connection ? [Http2PoolHandler]
+ * -> http2 ? [Http2Codec]
+ * -> http2 stream ? [Http2StreamCodec]
+ * -> http server & compression ? [HttpCompressor]
+ * -> http client & compression ? [HttpDecompressor]
  * -> onWriteIdle ? [OnChannelWriteIdle]
  * -> onReadIdle ? [OnChannelReadIdle]
  * -> http form/multipart ? [ChunkedWriter]
@@ -50,11 +61,22 @@ public interface NettyHandlerNames {
 	String ProxyHandler       = "proxyHandler";
 	String ReactiveBridge     = "reactiveBridge";
 	String BridgeSetup        = "bridgeSetup";
+	String PipelinedBridge    = "pipelinedBridge";
 	String HttpCodecHandler   = "httpCodecHandler";
 	String HttpAggregator     = "reactorHttpAggregator";
 	String HttpKeepAlive      = "httpKeepAlive";
+	String HttpPipelining     = "httpPipelining";
+	String HttpCompressor     = "httpCompressor";
+	String HttpDecompressor   = "httpDecompressor";
+	String Http2Detector      = "http2Detector";
+	String Http2Negotiator    = "http2Negotiator";
+	String HttpUpgrader       = "httpUpgrader";
+	String Http2PoolHandler   = "http2PoolHandler";
+	String Http2Codec         = "http2Codec";
+	String Http2StreamCodec   = "http2StreamCodec";
 	String OnChannelWriteIdle = "onChannelWriteIdle";
 	String OnChannelReadIdle  = "onChannelReadIdle";
 	String ChunkedWriter      = "chunkedWriter";
 	String LoggingHandler     = "loggingHandler";
+	String WriteCoalescer     = "writeCoalescer";
 }
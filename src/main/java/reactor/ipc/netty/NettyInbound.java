@@ -17,6 +17,7 @@
 package reactor.ipc.netty;
 
 import java.net.InetSocketAddress;
+import java.util.List;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
@@ -111,6 +112,19 @@ public interface NettyInbound extends Inbound<ByteBuf> {
 	}
 
 
+	/**
+	 * a {@literal Object} inbound {@link Flux} emitting a {@link List} of every message
+	 * received during a single read cycle, emitted when the read cycle completes.
+	 * Messages are only valid during the batch {@code onNext} and are released after,
+	 * retain them to keep them further.
+	 * <p>
+	 * Only one of {@link #receiveObject()} or {@link #receiveBatches()} can be
+	 * subscribed for a given connection.
+	 *
+	 * @return a {@link List} of {@literal Object} inbound {@link Flux}
+	 */
+	Flux<List<Object>> receiveBatches();
+
 	/**
 	 * a {@literal Object} inbound {@link Flux}
 	 *
@@ -26,6 +26,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.EmptyByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
@@ -41,6 +43,14 @@ import static reactor.core.publisher.Flux.just;
  */
 public interface NettyOutbound extends Outbound<ByteBuf> {
 
+	/**
+	 * A marker to emit in a {@link Publisher} given to {@link #send} or
+	 * {@link #sendObject} in order to declare a message boundary. With
+	 * {@link #flushBoundary()} the channel will be flushed each time the marker is
+	 * received, it is otherwise ignored. The marker itself is never written.
+	 */
+	ByteBuf FLUSH_BOUNDARY = new EmptyByteBuf(ByteBufAllocator.DEFAULT);
+
 	/**
 	 * Add a {@link ChannelHandler} to the pipeline, before {@link
 	 * NettyHandlerNames#ReactiveBridge}. The handler will be safely removed when the
@@ -71,6 +81,17 @@ public interface NettyOutbound extends Outbound<ByteBuf> {
 	 */
 	Channel channel();
 
+	/**
+	 * Enable flush only on {@link #FLUSH_BOUNDARY} markers and on completion of each
+	 * {@link Publisher} sent via {@link #send}, {@link #sendString},
+	 * {@link #sendObject},{@link #sendByteArray}, {@link #sendByteBuffer}. With this
+	 * mode {@link #sendGroups} will write all groups through a single writer and flush
+	 * at the end of each group.
+	 *
+	 * @return {@code this} instance
+	 */
+	NettyOutbound flushBoundary();
+
 	/**
 	 * Enable flush on each packet sent via {@link #send}, {@link #sendString},
 	 * {@link #sendObject},{@link #sendByteArray}, {@link #sendByteBuffer}.
@@ -79,6 +100,16 @@ public interface NettyOutbound extends Outbound<ByteBuf> {
 	 */
 	NettyOutbound flushEach();
 
+	/**
+	 * Enable flush once per event loop run on packets sent via {@link #send},
+	 * {@link #sendString}, {@link #sendObject},{@link #sendByteArray},
+	 * {@link #sendByteBuffer}. All packets written during the same event loop run
+	 * will be flushed together.
+	 *
+	 * @return {@code this} instance
+	 */
+	NettyOutbound flushLoop();
+
 	/**
 	 * Return true  if underlying channel is closed or inbound bridge is detached
 	 *
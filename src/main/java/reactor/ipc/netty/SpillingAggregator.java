@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Accumulate {@link ByteBuf} in memory up to a threshold, then into a temporary file
+ * deleted once closed and memory-mapped as the aggregated result, unmapped once
+ * released.
+ * <p>
+ * File operations never block the thread adding buffers: past the threshold, buffers
+ * are retained and handed off in order to a worker of {@link Schedulers#elastic()}
+ * which creates, writes, maps and closes the file.
+ *
+ * @author Stephane Maldini
+ */
+final class SpillingAggregator {
+
+	final int memoryThreshold;
+	final int maxBytes;
+
+	CompositeByteBuf memory;
+	Scheduler.Worker worker;
+	long             size;
+
+	// only accessed from the worker
+	FileChannel file;
+	ByteBuf     result;
+	Throwable   error;
+
+	SpillingAggregator(ByteBufAllocator alloc, int memoryThreshold, int maxBytes) {
+		this.memoryThreshold = memoryThreshold;
+		this.maxBytes = maxBytes;
+		this.memory = alloc.compositeBuffer(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Accumulate a buffer, failing with a {@link ByteBufOverflowException} past the
+	 * maximum size
+	 *
+	 * @param buf the buffer to accumulate
+	 *
+	 * @return this aggregator
+	 */
+	SpillingAggregator add(ByteBuf buf) {
+		int length = buf.readableBytes();
+		if (size + length > maxBytes) {
+			throw new ByteBufOverflowException(maxBytes);
+		}
+		size += length;
+		if (worker == null) {
+			if (size <= memoryThreshold) {
+				memory.addComponent(true, buf.retain());
+				return this;
+			}
+			worker = Schedulers.elastic()
+			                   .createWorker();
+			spill(memory);
+			memory = null;
+		}
+		spill(buf.retain());
+		return this;
+	}
+
+	/**
+	 * Return the aggregated bytes, owned by this aggregator, once all the spilled
+	 * buffers are written
+	 *
+	 * @return the aggregated bytes
+	 */
+	Mono<ByteBuf> result() {
+		if (worker == null) {
+			return Mono.just(memory);
+		}
+		long length = size;
+		return Mono.create(sink -> worker.schedule(() -> {
+			if (error != null) {
+				sink.error(error);
+				return;
+			}
+			try {
+				result = new ByteBufFlux.MappedByteBuf(file.map(FileChannel.MapMode.READ_ONLY,
+						0,
+						length));
+				file.close();
+				file = null;
+			}
+			catch (Throwable e) {
+				sink.error(e);
+				return;
+			}
+			sink.success(result);
+		}));
+	}
+
+	/**
+	 * Release the aggregated bytes and delete the temporary file if any, after the
+	 * pending writes
+	 */
+	void dispose() {
+		if (memory != null) {
+			memory.release();
+			memory = null;
+		}
+		Scheduler.Worker worker = this.worker;
+		if (worker != null) {
+			worker.schedule(() -> {
+				if (result != null) {
+					result.release();
+					result = null;
+				}
+				if (file != null) {
+					ByteBufFlux.closeQuietly(file);
+					file = null;
+				}
+				worker.shutdown();
+			});
+		}
+	}
+
+	/**
+	 * Write a retained buffer to the temporary file from the worker, then release it
+	 *
+	 * @param buf the buffer to write
+	 */
+	final void spill(ByteBuf buf) {
+		worker.schedule(() -> {
+			try {
+				if (error == null) {
+					if (file == null) {
+						file = FileChannel.open(Files.createTempFile("reactor-netty",
+								".aggregate"),
+								StandardOpenOption.READ,
+								StandardOpenOption.WRITE,
+								StandardOpenOption.DELETE_ON_CLOSE);
+					}
+					for (ByteBuffer nio : buf.nioBuffers()) {
+						while (nio.hasRemaining()) {
+							file.write(nio);
+						}
+					}
+				}
+			}
+			catch (Throwable e) {
+				error = e;
+			}
+			finally {
+				buf.release();
+			}
+		});
+	}
+}
@@ -22,12 +22,15 @@ import java.net.SocketAddress;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Queue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.BiFunction;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
@@ -35,6 +38,9 @@ import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.handler.stream.ChunkedWriteHandler;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.handler.timeout.IdleStateHandler;
@@ -45,15 +51,14 @@ import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
 import reactor.core.Cancellation;
+import reactor.core.Exceptions;
 import reactor.core.Loopback;
 import reactor.core.Producer;
 import reactor.core.Receiver;
 import reactor.core.Trackable;
-import reactor.core.publisher.DirectProcessor;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Operators;
-import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 import reactor.ipc.netty.FutureMono;
 import reactor.ipc.netty.NettyConnector;
@@ -114,55 +119,56 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 	final BiFunction<? super INBOUND, ? super OUTBOUND, ? extends Publisher<Void>>
 			handler;
 
-	final Channel               channel;
-	final Scheduler             ioScheduler;
-	final Flux<?>               inbound;
-	final DirectProcessor<Void> onInactive;
-	final ContextHandler<?>     context;
+	final Channel           channel;
+	final ContextHandler<?> context;
 
 	// guarded //
 	Subscriber<? super Object> receiver;
 	boolean                    receiverFastpath;
+	boolean                    receiverBatching;
+	InboundBatch               inboundBatch;
 	long                       receiverDemand;
 	Queue<Object>              inboundQueue;
+	boolean                    inboundThrottled;
+	boolean                    inboundAutoRead;
 	boolean                    inboundDone;
 	Throwable                  inboundError;
+	List<Runnable>             writabilityListeners;
 
-	volatile Cancellation receiverCancel;
-	volatile boolean      outboundFlushEach;
+	Flux<?> inbound;
+
+	volatile Cancellation      receiverCancel;
+	volatile FlushMode         outboundFlushMode;
+	volatile InactiveListeners onInactive;
+	volatile boolean           pipelined;
 
 	protected ChannelOperations(Channel channel,
 			ChannelOperations<INBOUND, OUTBOUND> replaced) {
-		this(channel, replaced.handler, replaced.context, replaced.onInactive);
+		this(channel, replaced.handler, replaced.context);
+		this.onInactive = replaced.inactiveListeners();
 		this.receiver = replaced.receiver;
 		this.receiverFastpath = replaced.receiverFastpath;
+		this.receiverBatching = replaced.receiverBatching;
+		this.inboundBatch = replaced.inboundBatch;
 		this.inboundQueue = replaced.inboundQueue;
+		this.inboundThrottled = replaced.inboundThrottled;
+		this.inboundAutoRead = replaced.inboundAutoRead;
 		this.inboundDone = replaced.inboundDone;
 		this.inboundError = replaced.inboundError;
 		this.receiverDemand = replaced.receiverDemand;
 		this.receiverCancel = replaced.receiverCancel;
-		this.outboundFlushEach = replaced.outboundFlushEach;
+		this.outboundFlushMode = replaced.outboundFlushMode;
+		this.writabilityListeners = replaced.writabilityListeners;
 	}
 
 	protected ChannelOperations(Channel channel,
 			BiFunction<? super INBOUND, ? super OUTBOUND, ? extends Publisher<Void>> handler,
 			ContextHandler<?> context) {
-		this(channel, handler, context, DirectProcessor.create());
-	}
-
-	protected ChannelOperations(Channel channel,
-			BiFunction<? super INBOUND, ? super OUTBOUND, ? extends Publisher<Void>> handler,
-			ContextHandler<?> context,
-			DirectProcessor<Void> processor) {
 		this.handler = Objects.requireNonNull(handler, "handler");
 		this.channel = Objects.requireNonNull(channel, "channel");
 		this.context = Objects.requireNonNull(context, "context");
-		this.ioScheduler = Schedulers.fromExecutor(channel.eventLoop());
-		this.inbound = Flux.from(this)
-		                   .subscribeOn(ioScheduler);
-		this.onInactive = processor;
-		channel.closeFuture()
-		       .addListener(this);
+		this.outboundFlushMode = context.options != null ? context.options.flushMode() :
+				FlushMode.MANUAL_COMPLETE;
 	}
 
 	@Override
@@ -201,7 +207,7 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 			if (q != null) {
 				Object o;
 				while ((o = q.poll()) != null) {
-					ReferenceCountUtil.release(o);
+					releaseInbound(o);
 				}
 			}
 		}
@@ -241,13 +247,25 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 
 	@Override
 	public NettyOutbound flushEach() {
-		outboundFlushEach = true;
+		outboundFlushMode = FlushMode.AUTO_EACH;
+		return this;
+	}
+
+	@Override
+	public NettyOutbound flushBoundary() {
+		outboundFlushMode = FlushMode.MANUAL_BOUNDARY;
+		return this;
+	}
+
+	@Override
+	public NettyOutbound flushLoop() {
+		outboundFlushMode = FlushMode.AUTO_LOOP;
 		return this;
 	}
 
 	@Override
 	public long getCapacity() {
-		return Long.MAX_VALUE;
+		return inboundCapacity();
 	}
 
 	@Override
@@ -267,6 +285,10 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 
 	@Override
 	public boolean isDisposed() {
+		// pipelined exchanges are only bound to the channel to receive their inbound
+		if (pipelined) {
+			return isInactive();
+		}
 		return channel.attr(OPERATIONS_ATTRIBUTE_KEY)
 		              .get() != this;
 	}
@@ -283,17 +305,15 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 
 	@Override
 	public NettyInbound onClose(final Runnable onClose) {
-		onInactive.subscribe(null, e -> onClose.run(), onClose);
+		addInactiveListener(onClose);
 		return this;
 	}
 
 	@Override
 	public void operationComplete(ChannelFuture future) throws Exception {
-		if (!future.isSuccess()) {
-			onInactive.onError(future.cause());
-		}
-		else {
-			onInactive.onComplete();
+		InactiveListeners listeners = onInactive;
+		if (listeners != null) {
+			listeners.terminate();
 		}
 	}
 
@@ -334,9 +354,22 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 
 	@Override
 	public Flux<?> receiveObject() {
+		Flux<?> inbound = this.inbound;
+		if (inbound == null) {
+			inbound = Flux.from(this)
+			              .subscribeOn(Schedulers.fromExecutor(channel.eventLoop()));
+			this.inbound = inbound;
+		}
 		return inbound;
 	}
 
+	@Override
+	@SuppressWarnings("unchecked")
+	public Flux<List<Object>> receiveBatches() {
+		return Flux.<List<Object>>from(s -> subscribeReceiver((Subscriber) s, true))
+		           .subscribeOn(Schedulers.fromExecutor(channel.eventLoop()));
+	}
+
 	@Override
 	public InetSocketAddress remoteAddress() {
 		return (InetSocketAddress) channel.remoteAddress();
@@ -360,8 +393,7 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 		Objects.requireNonNull(file);
 
 		return Mono.using(() -> FileChannel.open(file, StandardOpenOption.READ),
-				fc -> FutureMono.from(channel.writeAndFlush(new DefaultFileRegion(
-						fc,
+				fc -> FutureMono.from(sendAndFlush(newFileMessage(fc,
 						position,
 						count))),
 				fc -> {
@@ -384,8 +416,34 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 		return new MonoSend(dataStream);
 	}
 
+	@Override
+	public Mono<Void> sendGroups(Publisher<? extends Publisher<? extends ByteBuf>> dataStreams) {
+		if (outboundFlushMode != FlushMode.MANUAL_BOUNDARY) {
+			return NettyOutbound.super.sendGroups(dataStreams);
+		}
+		return send(Flux.from(dataStreams)
+		                .concatMap(p -> Flux.<ByteBuf>from(p)
+		                                    .concatWith(Mono.just(FLUSH_BOUNDARY)), 32));
+	}
+
 	@Override
 	public final void subscribe(Subscriber<? super Object> s) {
+		subscribeReceiver(s, false);
+	}
+
+	@Override
+	public String toString() {
+		return channel.toString();
+	}
+
+	/**
+	 * Subscribe the single inbound receiver, receiving either each message or a
+	 * {@link List} of the messages read in a single read cycle
+	 *
+	 * @param s the receiver
+	 * @param batching true if messages are batched by read cycle
+	 */
+	final void subscribeReceiver(Subscriber<? super Object> s, boolean batching) {
 		if (receiver == null) {
 			if (log.isDebugEnabled()) {
 				log.debug("[{}] Subscribing inbound receiver [pending: " + "" + getPending() + ", inboundDone: {}]",
@@ -402,6 +460,7 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 				return;
 			}
 
+			receiverBatching = batching;
 			initReceiver(s);
 			s.onSubscribe(this);
 		}
@@ -412,11 +471,6 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 		}
 	}
 
-	@Override
-	public String toString() {
-		return channel.toString();
-	}
-
 	protected NettyContext context(){
 		return context;
 	}
@@ -450,29 +504,78 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 			return;
 		}
 		ReferenceCountUtil.retain(msg);
+		if (receiverBatching) {
+			InboundBatch batch = inboundBatch;
+			if (batch == null) {
+				batch = new InboundBatch();
+				inboundBatch = batch;
+			}
+			batch.add(msg);
+		}
+		else {
+			offerInbound(msg);
+		}
+	}
+
+	/**
+	 * React on inbound read cycle completion, emitting the messages batched since the
+	 * previous read cycle if any
+	 */
+	protected void onInboundReadComplete() {
+		InboundBatch batch = inboundBatch;
+		if (batch != null) {
+			inboundBatch = null;
+			if (inboundDone || isCancelled()) {
+				releaseInbound(batch);
+			}
+			else {
+				offerInbound(batch);
+			}
+		}
+	}
+
+	final void offerInbound(Object msg) {
 		if (receiverFastpath && receiver != null) {
 			try {
 				receiver.onNext(msg);
 			}
 			finally {
-				ReferenceCountUtil.release(msg);
+				releaseInbound(msg);
 			}
 
 		}
 		else {
 			Queue<Object> q = inboundQueue;
+			int capacity = inboundCapacity();
 			if (q == null) {
-				q = QueueSupplier.unbounded()
+				q = QueueSupplier.unbounded(capacity)
 				                 .get();
 				inboundQueue = q;
 			}
 			q.offer(msg);
+			if (!inboundThrottled && q.size() >= capacity) {
+				throttleInbound();
+			}
 			if (drainReceiver()) {
 				receiverFastpath = true;
 			}
 		}
 	}
 
+	/**
+	 * React on {@link Channel#isWritable()} change, resuming writers paused above the
+	 * channel high water mark.
+	 */
+	protected void onWritabilityChanged() {
+		List<Runnable> listeners = writabilityListeners;
+		if (listeners != null) {
+			for (int i = 0; i < listeners.size(); i++) {
+				listeners.get(i)
+				         .run();
+			}
+		}
+	}
+
 	/**
 	 * React on inbound completion (last packet)
 	 */
@@ -480,6 +583,7 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 		if (isCancelled() || inboundDone) {
 			return;
 		}
+		onInboundReadComplete();
 		inboundDone = true;
 		Subscriber<?> receiver = this.receiver;
 		if (receiverFastpath && receiver != null) {
@@ -523,6 +627,57 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 		return channel.write(data);
 	}
 
+	/**
+	 * Write and flush a message of this operations, e.g. a file region, see
+	 * {@link #sendNext(Object)}.
+	 *
+	 * @param data the message to write
+	 *
+	 * @return the write future
+	 */
+	protected ChannelFuture sendAndFlush(Object data) {
+		return channel.writeAndFlush(data);
+	}
+
+	/**
+	 * Return true if a {@link io.netty.channel.FileRegion} can be written as-is to the
+	 * underlying {@link Channel} and transferred with zero-copy, false if a handler
+	 * transforming the outbound bytes such as an {@link SslHandler} is installed.
+	 *
+	 * @return true if a {@link io.netty.channel.FileRegion} can be written
+	 */
+	protected boolean supportsFileRegion() {
+		return channel.pipeline()
+		              .get(SslHandler.class) == null;
+	}
+
+	/**
+	 * Return a {@link DefaultFileRegion} if {@link #supportsFileRegion()}, otherwise a
+	 * {@link ChunkedNioFile} read into pooled buffers by a {@link ChunkedWriteHandler}
+	 * installed on demand.
+	 *
+	 * @param fc the {@link FileChannel} to send
+	 * @param position the file position to start from
+	 * @param count the number of bytes to send
+	 *
+	 * @return the file message to write
+	 */
+	protected final Object newFileMessage(FileChannel fc, long position, long count) {
+		if (supportsFileRegion()) {
+			return new DefaultFileRegion(fc, position, count);
+		}
+		if (channel.pipeline()
+		           .get(NettyHandlerNames.ChunkedWriter) == null) {
+			addChannelHandler(NettyHandlerNames.ChunkedWriter, new ChunkedWriteHandler());
+		}
+		try {
+			return new ChunkedNioFile(fc, position, count, FILE_CHUNK_SIZE);
+		}
+		catch (IOException ioe) {
+			throw Exceptions.propagate(ioe);
+		}
+	}
+
 	/**
 	 * Apply the user-provided {@link NettyConnector} handler
 	 */
@@ -536,18 +691,16 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 	}
 
 	/**
-	 * Try filtering out remote close unless traced, return true if filtered
+	 * Try filtering out remote close unless traced, return true if filtered. Remote
+	 * closes are counted by {@link RemoteCloseMetrics}.
 	 *
 	 * @param err the error to check
 	 *
 	 * @return true if filtered
 	 */
 	protected final boolean discreteRemoteClose(Throwable err) {
-		if (err instanceof IOException && (err.getMessage()
-		                                      .contains("Broken pipe") || err.getMessage()
-		                                                                     .contains(
-				                                                                     "Connection reset by peer"))) {
-			if (log.isDebugEnabled()) {
+		if (RemoteCloseMetrics.record(err)) {
+			if (log.isDebugEnabled() && RemoteCloseMetrics.sampled()) {
 				log.debug("[{}] Connection closed remotely", formatName(), err);
 			}
 			return true;
@@ -566,13 +719,36 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 		       .removeListener(this);
 		try {
 			onInboundComplete(); // signal receiver
-			onInactive.onComplete(); //signal senders and other interests
+			InactiveListeners listeners =
+					ON_INACTIVE.getAndSet(this, InactiveListeners.DISPOSED);
+			if (listeners != null) {
+				listeners.terminate(); //signal senders and other interests
+			}
 		}
 		finally {
 			context.terminateChannel(channel); // release / cleanup channel
 		}
 	}
 
+	/**
+	 * Bind a new operations to the server channel to receive the next exchange inbound
+	 * while this exchange outbound is still in progress, e.g. a pipelined HTTP/1.1
+	 * request. This operations stays active until {@link #onChannelInactive()}.
+	 */
+	protected final void pipelineNext() {
+		pipelined = true;
+		context.pipelineChannel(channel);
+	}
+
+	/**
+	 * Return true if {@link #onChannelInactive()} has been invoked
+	 *
+	 * @return true if this operations has been released or closed
+	 */
+	final boolean isInactive() {
+		return onInactive == InactiveListeners.DISPOSED;
+	}
+
 	/**
 	 * React on inbound error
 	 *
@@ -665,13 +841,7 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 		ChannelPromise p = channel.newPromise();
 		p.addListener(postWriteListener);
 
-		FlushMode mode;
-		if (outboundFlushEach) {
-			mode = FlushMode.AUTO_EACH;
-		}
-		else {
-			mode = FlushMode.MANUAL_COMPLETE;
-		}
+		FlushMode mode = outboundFlushMode;
 
 		if (channel.eventLoop()
 		           .inEventLoop()) {
@@ -720,6 +890,68 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 		                 .replace("Operations", "");
 	}
 
+	/**
+	 * Return the callbacks run when this operations terminates, registering them for
+	 * channel close on first use
+	 *
+	 * @return the {@link InactiveListeners} of this operations
+	 */
+	final InactiveListeners inactiveListeners() {
+		InactiveListeners listeners = onInactive;
+		if (listeners == null) {
+			listeners = new InactiveListeners();
+			if (ON_INACTIVE.compareAndSet(this, null, listeners)) {
+				channel.closeFuture()
+				       .addListener(this);
+			}
+			else {
+				listeners = onInactive;
+			}
+		}
+		return listeners;
+	}
+
+	final void addInactiveListener(Runnable listener) {
+		inactiveListeners().add(listener);
+	}
+
+	final void removeInactiveListener(Runnable listener) {
+		InactiveListeners listeners = onInactive;
+		if (listeners != null) {
+			listeners.remove(listener);
+		}
+	}
+
+	final void addWritabilityListener(Runnable listener) {
+		if (channel.eventLoop()
+		           .inEventLoop()) {
+			List<Runnable> listeners = writabilityListeners;
+			if (listeners == null) {
+				listeners = new ArrayList<>(1);
+				writabilityListeners = listeners;
+			}
+			listeners.add(listener);
+		}
+		else {
+			channel.eventLoop()
+			       .execute(() -> addWritabilityListener(listener));
+		}
+	}
+
+	final void removeWritabilityListener(Runnable listener) {
+		if (channel.eventLoop()
+		           .inEventLoop()) {
+			List<Runnable> listeners = writabilityListeners;
+			if (listeners != null) {
+				listeners.remove(listener);
+			}
+		}
+		else {
+			channel.eventLoop()
+			       .execute(() -> removeWritabilityListener(listener));
+		}
+	}
+
 	final boolean cancelReceiver() {
 		Cancellation c = receiverCancel;
 		if (c != CANCELLED) {
@@ -744,11 +976,28 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 	final void doOutboundSend(Publisher<?> writeStream,
 			FlushMode flushMode,
 			ChannelPromise promise) {
-		if (flushMode == FlushMode.MANUAL_COMPLETE) {
-			writeStream.subscribe(new OutboundFlushLastSubscriber(this, promise));
+		int prefetch = context.options != null ? context.options.outboundPrefetch() :
+				Integer.MAX_VALUE;
+		if (prefetch != Integer.MAX_VALUE &&
+				(flushMode == FlushMode.AUTO_EACH || flushMode == FlushMode.MANUAL_COMPLETE)) {
+			writeStream.subscribe(new OutboundWritabilitySubscriber(this,
+					promise,
+					prefetch,
+					flushMode == FlushMode.AUTO_EACH));
+			return;
 		}
-		else {
-			writeStream.subscribe(new OutboundFlushEachSubscriber(this, promise));
+		switch (flushMode) {
+			case AUTO_EACH:
+				writeStream.subscribe(new OutboundFlushEachSubscriber(this, promise));
+				break;
+			case AUTO_LOOP:
+				writeStream.subscribe(new OutboundFlushLoopSubscriber(this, promise));
+				break;
+			case MANUAL_BOUNDARY:
+				writeStream.subscribe(new OutboundFlushBoundarySubscriber(this, promise));
+				break;
+			default:
+				writeStream.subscribe(new OutboundFlushLastSubscriber(this, promise));
 		}
 	}
 
@@ -785,11 +1034,18 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 				break;
 			}
 
+			if (receiverBatching && !(v instanceof InboundBatch)) {
+				// queued before a batching receiver subscribed
+				InboundBatch batch = new InboundBatch();
+				batch.add(v);
+				v = batch;
+			}
+
 			try {
 				a.onNext(v);
 			}
 			finally {
-				ReferenceCountUtil.release(v);
+				releaseInbound(v);
 			}
 
 			e++;
@@ -804,6 +1060,16 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 			return false;
 		}
 
+		if (inboundThrottled) {
+			if (q != null && q.size() > inboundCapacity() >> 1) {
+				if (r != Long.MAX_VALUE) {
+					receiverDemand -= e;
+				}
+				return false;
+			}
+			resumeInbound();
+		}
+
 		if (r == Long.MAX_VALUE) {
 			channel.config()
 			       .setAutoRead(true);
@@ -818,6 +1084,53 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 		return false;
 	}
 
+	static void releaseInbound(Object msg) {
+		if (msg instanceof InboundBatch) {
+			InboundBatch batch = (InboundBatch) msg;
+			for (int i = 0; i < batch.size(); i++) {
+				ReferenceCountUtil.release(batch.get(i));
+			}
+		}
+		else {
+			ReferenceCountUtil.release(msg);
+		}
+	}
+
+	final int inboundCapacity() {
+		return context.options != null ? context.options.inboundQueueCapacity() :
+				QueueSupplier.SMALL_BUFFER_SIZE;
+	}
+
+	/**
+	 * Stop reading while the inbound queue is above its capacity
+	 */
+	final void throttleInbound() {
+		if (log.isDebugEnabled()) {
+			log.debug("[{}] Inbound queue full, pausing reads", formatName());
+		}
+		inboundThrottled = true;
+		inboundAutoRead = channel.config()
+		                         .isAutoRead();
+		if (inboundAutoRead) {
+			channel.config()
+			       .setAutoRead(false);
+		}
+	}
+
+	/**
+	 * Restore reading once the inbound queue has been drained below its low mark
+	 */
+	final void resumeInbound() {
+		if (log.isDebugEnabled()) {
+			log.debug("[{}] Inbound queue drained, resuming reads", formatName());
+		}
+		inboundThrottled = false;
+		if (inboundAutoRead) {
+			channel.config()
+			       .setAutoRead(true);
+		}
+	}
+
 	final void initReceiver(Subscriber<? super Object> s) {
 		receiver = s;
 		CANCEL.lazySet(this, () -> {
@@ -856,12 +1169,30 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 			AtomicReferenceFieldUpdater.newUpdater(ChannelOperations.class,
 					Cancellation.class,
 					"receiverCancel");
+	@SuppressWarnings("rawtypes")
+	static final AtomicReferenceFieldUpdater<ChannelOperations, InactiveListeners>
+			                  ON_INACTIVE =
+			AtomicReferenceFieldUpdater.newUpdater(ChannelOperations.class,
+					InactiveListeners.class,
+					"onInactive");
+	static final int          FILE_CHUNK_SIZE = 16384;
 	static final Cancellation CANCELLED = () -> {
 	};
 	static final Logger       log       = Loggers.getLogger(ChannelOperations.class);
 	static final BiFunction                                                   PING   =
 			(i, o) -> Flux.empty();
 
+	/**
+	 * The messages read during a single read cycle, distinct from any user decoded
+	 * {@link List} message
+	 */
+	static final class InboundBatch extends ArrayList<Object> {
+
+		InboundBatch() {
+			super(8);
+		}
+	}
+
 	final class MonoSend extends Mono<Void> implements Receiver, Loopback {
 
 		final Publisher<?> dataStream;
@@ -78,7 +78,36 @@ final class ChannelOperationsHandler extends ChannelDuplexHandler {
 
 	@Override
 	public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
-		ctx.fireChannelReadComplete();
+		try {
+			ChannelOperations<?, ?> ops = operations(ctx);
+			if (ops != null) {
+				ops.onInboundReadComplete();
+			}
+		}
+		catch (Throwable err) {
+			Exceptions.throwIfFatal(err);
+			exceptionCaught(ctx, err);
+		}
+		finally {
+			ctx.fireChannelReadComplete();
+		}
+	}
+
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		try {
+			ChannelOperations<?, ?> ops = operations(ctx);
+			if (ops != null) {
+				ops.onWritabilityChanged();
+			}
+		}
+		catch (Throwable err) {
+			Exceptions.throwIfFatal(err);
+			exceptionCaught(ctx, err);
+		}
+		finally {
+			ctx.fireChannelWritabilityChanged();
+		}
 	}
 
 	@Override
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty.channel;
+
+import java.net.InetSocketAddress;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelPipeline;
+import io.netty.util.concurrent.Future;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.NettyContext;
+
+/**
+ * A {@link ContextHandler} for child channels multiplexed over a channel of a parent
+ * context, such as HTTP/2 streams. Child channels are bound with the parent
+ * {@link ChannelOperations} selector, their lifecycle signals are forwarded to the
+ * parent context and they are never recycled: they close with their stream.
+ *
+ * @author Stephane Maldini
+ */
+final class ChildContextHandler extends ContextHandler<Channel> {
+
+	final ContextHandler<?>                 parent;
+	final Consumer<? super ChannelPipeline> pipelineConfigurer;
+
+	@SuppressWarnings("unchecked")
+	ChildContextHandler(ContextHandler<?> parent,
+			Consumer<? super ChannelPipeline> pipelineConfigurer) {
+		super((BiFunction<? super Channel, ? super ContextHandler<Channel>, ? extends ChannelOperations<?, ?>>) parent.channelOpSelector,
+				parent.options,
+				parent.sink,
+				parent.loggingHandler);
+		this.parent = parent;
+		this.pipelineConfigurer = pipelineConfigurer;
+	}
+
+	@Override
+	public void fireContextActive(NettyContext context) {
+		parent.fireContextActive(context);
+	}
+
+	@Override
+	public void fireContextError(Throwable t) {
+		parent.fireContextError(t);
+	}
+
+	@Override
+	public void setFuture(Future<?> future) {
+		throw new UnsupportedOperationException("Child channels are bound by their " +
+				"parent channel");
+	}
+
+	@Override
+	public InetSocketAddress address() {
+		return parent.address();
+	}
+
+	@Override
+	public Channel channel() {
+		return parent.channel();
+	}
+
+	@Override
+	public Mono<Void> onClose() {
+		return parent.onClose();
+	}
+
+	@Override
+	public void dispose() {
+		parent.dispose();
+	}
+
+	@Override
+	protected void doDropped(Channel channel) {
+		channel.close();
+	}
+
+	@Override
+	protected void doPipeline(ChannelPipeline pipeline) {
+		pipelineConfigurer.accept(pipeline);
+	}
+
+	@Override
+	protected void terminateChannel(Channel channel) {
+		//ignore, child channels close with their stream
+	}
+}
@@ -19,6 +19,7 @@ package reactor.ipc.netty.channel;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
@@ -113,6 +114,27 @@ public abstract class ContextHandler<CHANNEL extends Channel>
 				secure);
 	}
 
+	/**
+	 * Create a new client connection pipeline callback installing the proxy, ssl and
+	 * logging handlers on connections shared by several client contexts, e.g.
+	 * connections multiplexing HTTP/2 streams. Such connections are not bound to a
+	 * {@link ChannelOperations} or a user-facing {@link MonoSink}.
+	 *
+	 * @param options
+	 * @param loggingHandler
+	 * @param secure
+	 *
+	 * @return a new shared client connection pipeline callback
+	 */
+	public static Consumer<Channel> newClientConnectionConfigurer(ClientOptions options,
+			LoggingHandler loggingHandler,
+			boolean secure) {
+		return ch -> {
+			addSslAndLogHandlers(options, null, loggingHandler, secure, ch.pipeline());
+			ClientContextHandler.addProxyHandler(options, ch.pipeline());
+		};
+	}
+
 	/**
 	 * Create a new server context
 	 *
@@ -168,6 +190,22 @@ public abstract class ContextHandler<CHANNEL extends Channel>
 		}
 	}
 
+	/**
+	 * Create a {@link ContextHandler} initializing child channels multiplexed over a
+	 * channel of this context, e.g. HTTP/2 streams. Child channels are bound to the
+	 * {@link ChannelOperations} of this context and forward their lifecycle signals to
+	 * it.
+	 *
+	 * @param pipelineConfigurer the child channel pipeline configurer, invoked before
+	 * the reactive bridge is installed
+	 *
+	 * @return a new {@link ContextHandler} for child channels
+	 */
+	public final ContextHandler<Channel> newChildContext(Consumer<? super ChannelPipeline> pipelineConfigurer) {
+		Objects.requireNonNull(pipelineConfigurer, "pipelineConfigurer");
+		return new ChildContextHandler(this, pipelineConfigurer);
+	}
+
 	/**
 	 * Trigger {@link MonoSink#success(Object)} that will signal
 	 * {@link reactor.ipc.netty.NettyConnector#newHandler(BiFunction)} returned
@@ -194,6 +232,9 @@ public abstract class ContextHandler<CHANNEL extends Channel>
 	 * One-time only future setter
 	 *
 	 * @param future the connect/bind future to associate with and cancel on dispose
+	 *
+	 * @throws UnsupportedOperationException for the context of a child channel, such as
+	 * an HTTP/2 stream, bound by its parent channel
 	 */
 	public abstract void setFuture(Future<?> future);
 
@@ -216,6 +257,28 @@ public abstract class ContextHandler<CHANNEL extends Channel>
 	 */
 	protected abstract void doPipeline(ChannelPipeline pipeline);
 
+	/**
+	 * React on the user handler outbound termination of a channel, e.g. to start the
+	 * next exchange pipelined on a shared connection.
+	 *
+	 * @param channel the channel whose outbound has terminated
+	 * @param error the outbound error if any
+	 */
+	protected void terminateOutbound(Channel channel, Throwable error) {
+		//ignore
+	}
+
+	/**
+	 * Bind a new {@link ChannelOperations} to a server channel to receive the next
+	 * exchange while the bound exchange outbound is still in progress, e.g. a pipelined
+	 * HTTP/1.1 request.
+	 *
+	 * @param channel the channel to bind a new exchange to
+	 */
+	protected void pipelineChannel(Channel channel) {
+		//ignore
+	}
+
 	/**
 	 * Cleanly terminate a channel according to the current context handler type.
 	 * Server might keep alive and recycle connections, pooled client will release and
@@ -267,11 +330,13 @@ public abstract class ContextHandler<CHANNEL extends Channel>
 				pipeline.addAfter(NettyHandlerNames.SslHandler,
 						NettyHandlerNames.LoggingHandler,
 						loggingHandler);
-				pipeline.addAfter(NettyHandlerNames.LoggingHandler,
-						NettyHandlerNames.SslReader,
-						new SslReadHandler(sink));
+				if (sink != null) {
+					pipeline.addAfter(NettyHandlerNames.LoggingHandler,
+							NettyHandlerNames.SslReader,
+							new SslReadHandler(sink));
+				}
 			}
-			else {
+			else if (sink != null) {
 				pipeline.addAfter(NettyHandlerNames.SslHandler,
 						NettyHandlerNames.SslReader,
 						new SslReadHandler(sink));
@@ -324,6 +389,14 @@ public abstract class ContextHandler<CHANNEL extends Channel>
 							   NettyHandlerNames.ReactiveBridge,
 							   BRIDGE);
 
+					if (parent.options.writeCoalescingThreshold() > 0) {
+						ctx.pipeline()
+						   .addBefore(NettyHandlerNames.ReactiveBridge,
+								   NettyHandlerNames.WriteCoalescer,
+								   new WriteCoalescingHandler(parent.options.writeCoalescingThreshold(),
+										   parent.options.writeCoalescingBufferSize()));
+					}
+
 					op.onChannelActive(ctx);
 				}
 				catch (Exception t) {
@@ -16,9 +16,27 @@
 package reactor.ipc.netty.channel;
 
 /**
+ * Flush strategies applied by {@link ChannelOperations} to outbound writers.
  *
+ * @author Stephane Maldini
  */
 public enum FlushMode {
-	AUTO_EACH, AUTO_LOOP, MANUAL_COMPLETE, MANUAL_BOUNDARY
+	/**
+	 * Flush after each written element
+	 */
+	AUTO_EACH,
+	/**
+	 * Flush once per event loop run, coalescing every element written during that run
+	 */
+	AUTO_LOOP,
+	/**
+	 * Flush once when the outbound writer completes
+	 */
+	MANUAL_COMPLETE,
+	/**
+	 * Flush when a {@link reactor.ipc.netty.NettyOutbound#FLUSH_BOUNDARY} marker is
+	 * written and once when the outbound writer completes
+	 */
+	MANUAL_BOUNDARY
 
 }
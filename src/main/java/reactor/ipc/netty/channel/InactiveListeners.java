@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package reactor.ipc.netty.channel;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import reactor.core.Exceptions;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * A copy-on-write set of callbacks run once when a {@link ChannelOperations} becomes
+ * inactive. Callbacks added after termination are run immediately.
+ * <p>
+ * Shared between a {@link ChannelOperations} and the operations replacing it so that
+ * interests registered before an upgrade are still notified.
+ *
+ * @author Stephane Maldini
+ */
+final class InactiveListeners {
+
+	volatile Runnable[] listeners = EMPTY;
+
+	/**
+	 * Add a callback to run on termination, or run it now if already terminated
+	 *
+	 * @param listener the callback to run
+	 */
+	void add(Runnable listener) {
+		for (; ; ) {
+			Runnable[] a = listeners;
+			if (a == TERMINATED) {
+				run(listener);
+				return;
+			}
+			int n = a.length;
+			Runnable[] b = new Runnable[n + 1];
+			System.arraycopy(a, 0, b, 0, n);
+			b[n] = listener;
+			if (LISTENERS.compareAndSet(this, a, b)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Remove a callback previously added, no-op if absent or already terminated
+	 *
+	 * @param listener the callback to remove
+	 */
+	void remove(Runnable listener) {
+		for (; ; ) {
+			Runnable[] a = listeners;
+			int n = a.length;
+			if (n == 0) {
+				return;
+			}
+			int j = -1;
+			for (int i = 0; i < n; i++) {
+				if (a[i] == listener) {
+					j = i;
+					break;
+				}
+			}
+			if (j < 0) {
+				return;
+			}
+			Runnable[] b;
+			if (n == 1) {
+				b = EMPTY;
+			}
+			else {
+				b = new Runnable[n - 1];
+				System.arraycopy(a, 0, b, 0, j);
+				System.arraycopy(a, j + 1, b, j, n - j - 1);
+			}
+			if (LISTENERS.compareAndSet(this, a, b)) {
+				return;
+			}
+		}
+	}
+
+	boolean isTerminated() {
+		return listeners == TERMINATED;
+	}
+
+	/**
+	 * Run and clear every registered callback, only the first call has an effect
+	 */
+	void terminate() {
+		Runnable[] a = listeners;
+		if (a != TERMINATED) {
+			a = LISTENERS.getAndSet(this, TERMINATED);
+			if (a != TERMINATED) {
+				for (Runnable listener : a) {
+					run(listener);
+				}
+			}
+		}
+	}
+
+	static void run(Runnable listener) {
+		try {
+			listener.run();
+		}
+		catch (Throwable t) {
+			Exceptions.throwIfFatal(t);
+			log.error("Error while running an inactive callback", t);
+		}
+	}
+
+	static final Runnable[] EMPTY      = new Runnable[0];
+	static final Runnable[] TERMINATED = new Runnable[0];
+
+	/**
+	 * A shared, already terminated instance
+	 */
+	static final InactiveListeners DISPOSED = new InactiveListeners();
+
+	static {
+		DISPOSED.listeners = TERMINATED;
+	}
+
+	static final AtomicReferenceFieldUpdater<InactiveListeners, Runnable[]> LISTENERS =
+			AtomicReferenceFieldUpdater.newUpdater(InactiveListeners.class,
+					Runnable[].class,
+					"listeners");
+
+	static final Logger log = Loggers.getLogger(InactiveListeners.class);
+}
@@ -36,13 +36,19 @@ final class OutboundCloseSubscriber implements Subscriber<Void> {
 	@Override
 	public void onComplete() {
 		parent.channel.eventLoop()
-		              .execute(parent::onOutboundComplete);
+		              .execute(() -> {
+			              parent.onOutboundComplete();
+			              parent.context.terminateOutbound(parent.channel, null);
+		              });
 	}
 
 	@Override
 	public void onError(Throwable t) {
 		parent.channel.eventLoop()
-		              .execute(() -> parent.onOutboundError(t));
+		              .execute(() -> {
+			              parent.onOutboundError(t);
+			              parent.context.terminateOutbound(parent.channel, t);
+		              });
 	}
 
 	@Override
@@ -26,6 +26,7 @@ import reactor.core.Loopback;
 import reactor.core.Receiver;
 import reactor.core.Trackable;
 import reactor.core.publisher.Operators;
+import reactor.ipc.netty.NettyOutbound;
 import reactor.util.Logger;
 import reactor.util.Loggers;
 
@@ -78,6 +79,7 @@ final class OutboundFlushEachSubscriber
 			return;
 		}
 		subscription = null;
+		parent.removeInactiveListener(this);
 		Cancellation c = this.c;
 		if(c != null) {
 			c.dispose();
@@ -99,6 +101,7 @@ final class OutboundFlushEachSubscriber
 		}
 		log.error("Write error", t);
 		subscription = null;
+		parent.removeInactiveListener(this);
 		Cancellation c = this.c;
 		if(c != null) {
 			c.dispose();
@@ -115,9 +118,14 @@ final class OutboundFlushEachSubscriber
 		if (w == null) {
 			throw Exceptions.argumentIsNullException();
 		}
+		Subscription subscription = this.subscription;
 		if (subscription == null) {
 			throw Exceptions.failWithCancel();
 		}
+		if (w == NettyOutbound.FLUSH_BOUNDARY) {
+			subscription.request(1L);
+			return;
+		}
 		try {
 			ChannelFuture cf = parent.sendNext(w);
 			if (cf != null) {
@@ -138,7 +146,7 @@ final class OutboundFlushEachSubscriber
 			if(parent.channel.isOpen()){
 				this.subscription = s;
 
-				parent.onInactive.subscribe(null, null, this);
+				parent.addInactiveListener(this);
 
 				s.request(1L);
 			}
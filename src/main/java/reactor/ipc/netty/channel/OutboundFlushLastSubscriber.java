@@ -25,6 +25,7 @@ import reactor.core.Cancellation;
 import reactor.core.Exceptions;
 import reactor.core.Loopback;
 import reactor.core.publisher.Operators;
+import reactor.ipc.netty.NettyOutbound;
 import reactor.util.Logger;
 import reactor.util.Loggers;
 
@@ -58,6 +59,7 @@ final class OutboundFlushLastSubscriber
 			return;
 		}
 		subscription = null;
+		parent.removeInactiveListener(this);
 
 		Cancellation c = this.c;
 		if(c != null) {
@@ -83,6 +85,7 @@ final class OutboundFlushLastSubscriber
 
 		log.error("Write error", t);
 		subscription = null;
+		parent.removeInactiveListener(this);
 		Cancellation c = this.c;
 		if(c != null) {
 			c.dispose();
@@ -103,6 +106,9 @@ final class OutboundFlushLastSubscriber
 		if (subscription == null) {
 			throw Exceptions.failWithCancel();
 		}
+		if (w == NettyOutbound.FLUSH_BOUNDARY) {
+			return;
+		}
 		try {
 			ChannelFuture cf = parent.sendNext(w);
 			lastWrite = cf;
@@ -130,7 +136,7 @@ final class OutboundFlushLastSubscriber
 			if(parent.channel.isOpen()){
 				this.subscription = s;
 
-				parent.onInactive.subscribe(null, null, this);
+				parent.addInactiveListener(this);
 
 				s.request(Long.MAX_VALUE);
 			}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package reactor.ipc.netty.channel;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import reactor.core.Exceptions;
+import reactor.core.Loopback;
+import reactor.core.publisher.Operators;
+import reactor.ipc.netty.NettyOutbound;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * Request elements in batches of a given prefetch and only replenish once the current
+ * batch has been written and the {@link io.netty.channel.Channel} is still writable.
+ * When the channel goes above its high water mark, demand is paused until
+ * {@link ChannelOperations#onWritabilityChanged()} reports it writable again.
+ * <p>
+ * Each batch is flushed when fully written unless flushing on each element.
+ *
+ * @author Stephane Maldini
+ */
+final class OutboundWritabilitySubscriber
+		implements Subscriber<Object>, Runnable, Loopback {
+
+	final ChannelPromise          promise;
+	final ChannelOperations<?, ?> parent;
+	final EventLoop               eventLoop;
+	final int                     prefetch;
+	final int                     limit;
+	final boolean                 flushEach;
+	final Runnable                writableTask = this::onWritable;
+
+	volatile Subscription subscription;
+
+	ChannelFuture lastWrite;
+	int           produced;
+	boolean       paused;
+
+	public OutboundWritabilitySubscriber(ChannelOperations<?, ?> parent,
+			ChannelPromise promise,
+			int prefetch,
+			boolean flushEach) {
+		this.parent = parent;
+		this.promise = promise;
+		this.eventLoop = parent.channel.eventLoop();
+		this.prefetch = prefetch;
+		this.limit = Math.max(1, prefetch - (prefetch >> 2));
+		this.flushEach = flushEach;
+	}
+
+	@Override
+	public Object connectedInput() {
+		return parent;
+	}
+
+	@Override
+	public void onComplete() {
+		if (subscription == null) {
+			return;
+		}
+		subscription = null;
+		parent.removeInactiveListener(this);
+
+		eventLoop.execute(() -> {
+			terminate();
+			parent.onTerminatedSend(lastWrite, promise, null);
+		});
+	}
+
+	@Override
+	public void onError(Throwable t) {
+		if (t == null) {
+			throw Exceptions.argumentIsNullException();
+		}
+		if (subscription == null) {
+			throw new IllegalStateException("already flushed", t);
+		}
+
+		log.error("Write error", t);
+		subscription = null;
+		parent.removeInactiveListener(this);
+
+		eventLoop.execute(() -> {
+			terminate();
+			parent.onTerminatedSend(lastWrite, promise, t);
+		});
+	}
+
+	@Override
+	public void onNext(final Object w) {
+		if (w == null) {
+			throw Exceptions.argumentIsNullException();
+		}
+		if (subscription == null) {
+			throw Exceptions.failWithCancel();
+		}
+		if (eventLoop.inEventLoop()) {
+			write(w);
+		}
+		else {
+			eventLoop.execute(() -> write(w));
+		}
+	}
+
+	@Override
+	public void onSubscribe(final Subscription s) {
+		if (Operators.validate(subscription, s)) {
+
+			if (parent.channel.isOpen()) {
+				this.subscription = s;
+
+				parent.addInactiveListener(this);
+				parent.addWritabilityListener(writableTask);
+
+				s.request(prefetch);
+			}
+			else {
+				s.cancel();
+			}
+
+		}
+	}
+
+	@Override
+	public void run() {
+		Subscription subscription = this.subscription;
+		this.subscription = null;
+		if (subscription != null) {
+			if (log.isDebugEnabled()) {
+				log.debug("Cancel from remotely closed connection");
+			}
+			subscription.cancel();
+		}
+	}
+
+	final void onWritable() {
+		if (paused && parent.channel.isWritable()) {
+			paused = false;
+			replenish();
+		}
+	}
+
+	final void replenish() {
+		int p = produced;
+		produced = 0;
+		Subscription subscription = this.subscription;
+		if (subscription != null) {
+			subscription.request(p);
+		}
+	}
+
+	final void terminate() {
+		parent.removeWritabilityListener(writableTask);
+		parent.channel.flush();
+	}
+
+	final void write(Object w) {
+		if (w != NettyOutbound.FLUSH_BOUNDARY) {
+			try {
+				ChannelFuture cf = parent.sendNext(w);
+				lastWrite = cf;
+				if (cf != null && log.isDebugEnabled()) {
+					cf.addListener((ChannelFutureListener) future -> {
+						if (!future.isSuccess()) {
+							log.error("write error :" + w, future.cause());
+							if (ByteBuf.class.isAssignableFrom(w.getClass())) {
+								((ByteBuf) w).resetReaderIndex();
+							}
+						}
+					});
+				}
+				if (flushEach) {
+					parent.channel.flush();
+				}
+			}
+			catch (Throwable t) {
+				log.error("Write error for " + w, t);
+				Subscription subscription = this.subscription;
+				if (subscription != null) {
+					subscription.cancel();
+					onError(t);
+				}
+				return;
+			}
+		}
+
+		if (++produced == limit) {
+			if (!flushEach) {
+				parent.channel.flush();
+			}
+			if (parent.channel.isWritable()) {
+				replenish();
+			}
+			else {
+				paused = true;
+			}
+		}
+		else if (paused && !flushEach) {
+			// the rest of the batch arrives after the pause, flush it or the channel
+			// might never drain below its low water mark
+			parent.channel.flush();
+		}
+	}
+
+	static final Logger log = Loggers.getLogger(OutboundWritabilitySubscriber.class);
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty.channel;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import reactor.ipc.netty.NettyHandlerNames;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * Serve the {@link ChannelOperations} of the exchanges pipelined on a connection lent
+ * to several concurrent acquisitions, in acquisition order. An exchange starts writing
+ * once the previous exchange outbound has terminated, and is bound to the channel to
+ * receive its inbound once the previous exchange has been released. If the connection
+ * closes, the exchanges still pipelined on it fail.
+ * <p>
+ * All methods are invoked from the channel event loop.
+ *
+ * @author Stephane Maldini
+ */
+final class PipelinedOperationsHandler extends ChannelInboundHandlerAdapter {
+
+	static final Logger log = Loggers.getLogger(PipelinedOperationsHandler.class);
+
+	/**
+	 * The started exchanges in write order, the first one is bound to the channel
+	 */
+	final ArrayDeque<ChannelOperations<?, ?>> inflight = new ArrayDeque<>();
+	/**
+	 * The exchanges waiting for the previous exchange outbound to terminate
+	 */
+	final ArrayDeque<ChannelOperations<?, ?>> waiting  = new ArrayDeque<>();
+
+	ChannelHandlerContext   ctx;
+	ChannelOperations<?, ?> writer;
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		this.ctx = ctx;
+	}
+
+	@Override
+	public void channelActive(ChannelHandlerContext ctx) throws Exception {
+		ctx.fireChannelActive();
+		// the first exchange has been bound and started by the bridge setup
+		ChannelOperations<?, ?> ops = ctx.channel()
+		                                 .attr(ChannelOperations.OPERATIONS_ATTRIBUTE_KEY)
+		                                 .get();
+		if (ops != null && inflight.isEmpty()) {
+			ops.pipelined = true;
+			inflight.add(ops);
+			writer = ops;
+		}
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		// the bound exchange is terminated by the reactive bridge
+		ChannelOperations<?, ?> bound = inflight.poll();
+		if (bound != null) {
+			bound.pipelined = false;
+			bound.context.fireContextError(ContextHandler.ABORTED);
+		}
+		ChannelOperations<?, ?> ops;
+		while ((ops = inflight.poll()) != null) {
+			ops.pipelined = false;
+			ops.context.fireContextError(ContextHandler.ABORTED);
+			ops.onChannelInactive();
+		}
+		while ((ops = waiting.poll()) != null) {
+			ops.context.fireContextError(ContextHandler.ABORTED);
+		}
+		writer = null;
+		ctx.fireChannelInactive();
+	}
+
+	/**
+	 * Pipeline the exchange of a new acquisition of this connection
+	 *
+	 * @param ops the new exchange
+	 */
+	void offer(ChannelOperations<?, ?> ops) {
+		if (!ctx.channel()
+		        .isActive()) {
+			ops.context.fireContextError(ContextHandler.ABORTED);
+			return;
+		}
+		waiting.add(ops);
+		drain();
+	}
+
+	/**
+	 * Start the next waiting exchange once the given context exchange outbound has
+	 * terminated. A failed outbound leaves the connection in an undefined state, it is
+	 * closed and fails the exchanges pipelined on it.
+	 *
+	 * @param context the exchange context
+	 * @param error the outbound error if any
+	 */
+	void onOutboundTerminated(ContextHandler<?> context, Throwable error) {
+		if (writer == null || writer.context != context) {
+			return;
+		}
+		writer = null;
+		if (error != null) {
+			ctx.channel()
+			   .close();
+			return;
+		}
+		drain();
+	}
+
+	/**
+	 * Remove the released exchange of the given context and bind the next exchange to
+	 * the channel.
+	 *
+	 * @param context the exchange context
+	 *
+	 * @return false if the exchange has been released before completion and the
+	 * connection must be closed to preserve the response order
+	 */
+	boolean onReleased(ContextHandler<?> context) {
+		for (Iterator<ChannelOperations<?, ?>> it = waiting.iterator(); it.hasNext(); ) {
+			ChannelOperations<?, ?> ops = it.next();
+			if (ops.context == context) {
+				it.remove();
+				return true;
+			}
+		}
+		ChannelOperations<?, ?> bound = inflight.peek();
+		if (bound == null || bound.context != context || !bound.isInactive()) {
+			for (ChannelOperations<?, ?> ops : inflight) {
+				if (ops.context == context) {
+					if (log.isDebugEnabled()) {
+						log.debug("Pipelined exchange released before completion, " + "closing {}",
+								ctx.channel());
+					}
+					return false;
+				}
+			}
+			return true;
+		}
+		inflight.poll();
+		bound.pipelined = false;
+		ChannelOperations<?, ?> next = inflight.peek();
+		if (next != null) {
+			ctx.channel()
+			   .attr(ChannelOperations.OPERATIONS_ATTRIBUTE_KEY)
+			   .set(next);
+			// the previous exchange reads have stopped with its last message
+			ctx.read();
+		}
+		return true;
+	}
+
+	final void drain() {
+		ChannelOperations<?, ?> ops;
+		while (writer == null && (ops = waiting.poll()) != null) {
+			ops.pipelined = true;
+			inflight.add(ops);
+			writer = ops;
+			if (inflight.peek() == ops) {
+				ctx.channel()
+				   .attr(ChannelOperations.OPERATIONS_ATTRIBUTE_KEY)
+				   .set(ops);
+			}
+			ops.onChannelActive(ctx.pipeline()
+			                       .context(NettyHandlerNames.BridgeSetup));
+		}
+	}
+}
@@ -37,6 +37,7 @@ import reactor.ipc.netty.FutureMono;
 import reactor.ipc.netty.NettyContext;
 import reactor.ipc.netty.NettyHandlerNames;
 import reactor.ipc.netty.options.ClientOptions;
+import reactor.ipc.netty.resources.PoolResources;
 import reactor.util.Logger;
 import reactor.util.Loggers;
 
@@ -82,6 +83,9 @@ final class PooledClientContextHandler<CHANNEL extends Channel>
 	@Override
 	public InetSocketAddress address() {
 		Channel c = channel();
+		if (c.parent() != null) {
+			c = c.parent();
+		}
 		if (c instanceof SocketChannel) {
 			return ((SocketChannel) c).remoteAddress();
 		}
@@ -150,7 +154,16 @@ final class PooledClientContextHandler<CHANNEL extends Channel>
 			if (log.isDebugEnabled()) {
 				log.debug("Connected new channel: {}", c.toString());
 			}
-			doPipeline(c.pipeline());
+			//child channels, e.g. HTTP/2 streams, share the transport handlers of their
+			// parent connection
+			if (c.parent() == null) {
+				doPipeline(c.pipeline());
+			}
+			if (c.hasAttr(PoolResources.PIPELINED)) {
+				c.pipeline()
+				 .addLast(NettyHandlerNames.PipelinedBridge,
+						 new PipelinedOperationsHandler());
+			}
 			c.pipeline()
 			 .addLast(NettyHandlerNames.BridgeSetup, new BridgeSetupHandler(this));
 			if (c.isRegistered()) {
@@ -175,6 +188,14 @@ final class PooledClientContextHandler<CHANNEL extends Channel>
 			}
 			ChannelOperations<?, ?> op = channelOpSelector.apply(c, this);
 
+			PipelinedOperationsHandler pipelined =
+					c.pipeline()
+					 .get(PipelinedOperationsHandler.class);
+			if (pipelined != null) {
+				pipelined.offer(op);
+				return;
+			}
+
 			ChannelOperations<?, ?> previous =
 					c.attr(ChannelOperations.OPERATIONS_ATTRIBUTE_KEY)
 					 .getAndSet(op);
@@ -227,10 +248,26 @@ final class PooledClientContextHandler<CHANNEL extends Channel>
 			onReleaseEmitter.onComplete();
 			return;
 		}
+		PipelinedOperationsHandler pipelined = c.pipeline()
+		                                        .get(PipelinedOperationsHandler.class);
+		if (pipelined != null && !pipelined.onReleased(this)) {
+			c.close();
+			return;
+		}
 		pool.release(c);
 
 	}
 
+	@Override
+	protected void terminateOutbound(Channel channel, Throwable error) {
+		PipelinedOperationsHandler pipelined =
+				channel.pipeline()
+				       .get(PipelinedOperationsHandler.class);
+		if (pipelined != null) {
+			pipelined.onOutboundTerminated(this, error);
+		}
+	}
+
 	@Override
 	protected void doDropped(Channel channel) {
 		dispose();
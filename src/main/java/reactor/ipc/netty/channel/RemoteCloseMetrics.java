@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package reactor.ipc.netty.channel;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.netty.channel.unix.Errors;
+
+/**
+ * Classify connection errors caused by the remote peer closing the connection and
+ * count them, process-wide, instead of logging each occurrence.
+ * <p>
+ * Native transport errors are classified by their errno, other {@link IOException}
+ * fall back to the JDK message. One in {@code reactor.ipc.netty.remoteCloseLogSampling}
+ * (default 1, 0 disables) remote closes is logged at debug level.
+ *
+ * @author Stephane Maldini
+ * @since 0.6
+ */
+public final class RemoteCloseMetrics {
+
+	/**
+	 * Return the number of connections reset by peer since startup
+	 *
+	 * @return the number of connections reset by peer
+	 */
+	public static long connectionResets() {
+		return CONNECTION_RESETS.sum();
+	}
+
+	/**
+	 * Return the number of writes failing on a broken pipe since startup
+	 *
+	 * @return the number of broken pipes
+	 */
+	public static long brokenPipes() {
+		return BROKEN_PIPES.sum();
+	}
+
+	/**
+	 * Return true and count the error if it has been caused by the remote peer closing
+	 * the connection
+	 *
+	 * @param err the error to classify
+	 *
+	 * @return true if the error is a remote close
+	 */
+	static boolean record(Throwable err) {
+		if (!(err instanceof IOException)) {
+			return false;
+		}
+		if (err instanceof Errors.NativeIoException) {
+			int errno = ((Errors.NativeIoException) err).expectedErr();
+			if (errno == Errors.ERRNO_ECONNRESET_NEGATIVE) {
+				CONNECTION_RESETS.increment();
+				return true;
+			}
+			if (errno == Errors.ERRNO_EPIPE_NEGATIVE) {
+				BROKEN_PIPES.increment();
+				return true;
+			}
+			return false;
+		}
+		String message = err.getMessage();
+		if (message == null) {
+			return false;
+		}
+		if (message.contains("Connection reset by peer")) {
+			CONNECTION_RESETS.increment();
+			return true;
+		}
+		if (message.contains("Broken pipe")) {
+			BROKEN_PIPES.increment();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Return true if the current remote close should be logged
+	 *
+	 * @return true if the current remote close should be logged
+	 */
+	static boolean sampled() {
+		return LOG_SAMPLING == 1 || (LOG_SAMPLING > 1 && ThreadLocalRandom.current()
+		                                                                  .nextInt(LOG_SAMPLING) == 0);
+	}
+
+	static final LongAdder CONNECTION_RESETS = new LongAdder();
+	static final LongAdder BROKEN_PIPES      = new LongAdder();
+
+	static final int LOG_SAMPLING =
+			Integer.parseInt(System.getProperty("reactor.ipc.netty.remoteCloseLogSampling",
+					"1"));
+
+	RemoteCloseMetrics() {
+	}
+}
@@ -73,7 +73,27 @@ final class ServerContextHandler
 			return;
 		}
 
+		ChannelOperations<?, ?> bound =
+				channel.attr(ChannelOperations.OPERATIONS_ATTRIBUTE_KEY).get();
+		// an exchange pipelined before the bound one has terminated, the bound
+		// exchange keeps receiving
+		if (bound != null && bound.pipelined && !bound.isInactive()) {
+			return;
+		}
+
+		bindOperations(channel, false);
+	}
+
+	@Override
+	protected void pipelineChannel(Channel channel) {
+		if (channel.isOpen()) {
+			bindOperations(channel, true);
+		}
+	}
+
+	final void bindOperations(Channel channel, boolean pipelined) {
 		ChannelOperations<?, ?> op = channelOpSelector.apply(channel, this);
+		op.pipelined = pipelined;
 
 		channel.attr(ChannelOperations.OPERATIONS_ATTRIBUTE_KEY)
 		       .set(op);
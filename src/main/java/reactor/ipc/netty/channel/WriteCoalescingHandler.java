@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package reactor.ipc.netty.channel;
+
+import java.nio.channels.ClosedChannelException;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.ChannelPromiseNotifier;
+
+/**
+ * Copy outbound {@link ByteBuf} smaller than a threshold into a pooled buffer of a
+ * target size, written once full, on flush or before any other outbound message so
+ * that ordering is preserved. Each coalesced write promise is notified with the
+ * outcome of the buffer it has been copied into.
+ * <p>
+ * Sits right after {@link reactor.ipc.netty.NettyHandlerNames#BridgeSetup} so that
+ * it receives the encoded bytes of every handler added before the
+ * {@link reactor.ipc.netty.NettyHandlerNames#ReactiveBridge}.
+ *
+ * @author Stephane Maldini
+ */
+final class WriteCoalescingHandler extends ChannelOutboundHandlerAdapter {
+
+	final int threshold;
+	final int bufferSize;
+
+	ByteBuf        pending;
+	ChannelPromise pendingPromise;
+
+	WriteCoalescingHandler(int threshold, int bufferSize) {
+		this.threshold = threshold;
+		this.bufferSize = bufferSize;
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+			throws Exception {
+		if (msg instanceof ByteBuf) {
+			ByteBuf buf = (ByteBuf) msg;
+			int size = buf.readableBytes();
+			if (size > 0 && size < threshold) {
+				ByteBuf pending = this.pending;
+				if (pending != null && pending.writableBytes() < size) {
+					writePending(ctx);
+					pending = null;
+				}
+				if (pending == null) {
+					pending = ctx.alloc()
+					             .directBuffer(bufferSize);
+					this.pending = pending;
+					this.pendingPromise = ctx.newPromise();
+				}
+				pending.writeBytes(buf, buf.readerIndex(), size);
+				buf.release();
+				if (!promise.isVoid()) {
+					pendingPromise.addListener(new ChannelPromiseNotifier(promise));
+				}
+				return;
+			}
+		}
+		writePending(ctx);
+		ctx.write(msg, promise);
+	}
+
+	@Override
+	public void flush(ChannelHandlerContext ctx) throws Exception {
+		writePending(ctx);
+		ctx.flush();
+	}
+
+	@Override
+	public void close(ChannelHandlerContext ctx, ChannelPromise promise)
+			throws Exception {
+		writePending(ctx);
+		ctx.close(promise);
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		ByteBuf pending = this.pending;
+		if (pending != null) {
+			ChannelPromise pendingPromise = this.pendingPromise;
+			this.pending = null;
+			this.pendingPromise = null;
+			pending.release();
+			pendingPromise.tryFailure(new ClosedChannelException());
+		}
+	}
+
+	final void writePending(ChannelHandlerContext ctx) {
+		ByteBuf pending = this.pending;
+		if (pending != null) {
+			ChannelPromise pendingPromise = this.pendingPromise;
+			this.pending = null;
+			this.pendingPromise = null;
+			ctx.write(pending, pendingPromise);
+		}
+	}
+}
@@ -27,7 +27,7 @@ import java.util.function.BiFunction;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
-import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.codec.http.HttpContentEncoder;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpMessage;
 import io.netty.handler.codec.http.HttpUtil;
@@ -42,7 +42,6 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Operators;
 import reactor.ipc.netty.FutureMono;
-import reactor.ipc.netty.NettyHandlerNames;
 import reactor.ipc.netty.channel.ChannelOperations;
 import reactor.ipc.netty.channel.ContextHandler;
 import reactor.util.Logger;
@@ -125,19 +124,12 @@ public abstract class HttpOperations<INBOUND extends HttpInbound, OUTBOUND exten
 				                     .setInt(HttpHeaderNames.CONTENT_LENGTH, (int) count);
 				return sendHeaders().then(Mono.using(() -> FileChannel.open(file,
 						StandardOpenOption.READ),
-						fc -> FutureMono.from(channel().writeAndFlush(new DefaultFileRegion(
+						fc -> FutureMono.from(sendAndFlush(newFileMessage(
 								fc,
 								position,
 								count))),
 						fc -> {
 							try {
-								onClose(() -> {
-									if (channel().pipeline()
-									             .get(NettyHandlerNames.HttpCodecHandler) != null) {
-										channel().pipeline()
-										         .remove(NettyHandlerNames.HttpCodecHandler);
-									}
-								});
 								fc.close();
 							}
 							catch (IOException ioe) {
@@ -205,6 +197,28 @@ public abstract class HttpOperations<INBOUND extends HttpInbound, OUTBOUND exten
 		return HEADERS_SENT.compareAndSet(this, 0, 1);
 	}
 
+	/**
+	 * Content encoders such as {@link HttpContentEncoder} do not transform
+	 * {@link io.netty.channel.FileRegion} and would corrupt the response.
+	 *
+	 * @return true if a {@link io.netty.channel.FileRegion} can be written
+	 */
+	@Override
+	protected boolean supportsFileRegion() {
+		return super.supportsFileRegion() && !isContentEncoded();
+	}
+
+	/**
+	 * Return true if the outbound content of this exchange is transformed by an
+	 * {@link HttpContentEncoder}.
+	 *
+	 * @return true if the outbound content is encoded
+	 */
+	protected boolean isContentEncoded() {
+		return channel().pipeline()
+		                .get(HttpContentEncoder.class) != null;
+	}
+
 	/**
 	 * Outbound Netty HttpMessage
 	 *
@@ -220,7 +234,7 @@ public abstract class HttpOperations<INBOUND extends HttpInbound, OUTBOUND exten
 	 * failing with root cause.
 	 */
 	final void sendHeadersAndSubscribe(Subscriber<? super Void> s) {
-		FutureMono.from(channel().writeAndFlush(outboundHttpMessage()))
+		FutureMono.from(sendAndFlush(outboundHttpMessage()))
 		          .subscribe(s);
 	}
 
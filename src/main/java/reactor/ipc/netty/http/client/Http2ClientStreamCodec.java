@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package reactor.ipc.netty.http.client;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpMessage;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.DefaultHttp2DataFrame;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersFrame;
+import io.netty.handler.codec.http2.Http2DataFrame;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2HeadersFrame;
+import io.netty.handler.codec.http2.Http2ResetFrame;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.util.AsciiString;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Convert the http objects written by {@link HttpClientOperations} on an HTTP/2 stream
+ * channel to HTTP/2 frames and the read HTTP/2 frames back to http objects, the
+ * client counterpart of {@link io.netty.handler.codec.http2.Http2ServerDowngrader}.
+ * Raw {@link ByteBuf} body writes are sent as data frames and the stream data read is
+ * flushed to the connection as window updates.
+ *
+ * @author Stephane Maldini
+ */
+final class Http2ClientStreamCodec extends ChannelDuplexHandler {
+
+	final AsciiString scheme;
+
+	boolean responseReceived;
+
+	Http2ClientStreamCodec(boolean secure) {
+		this.scheme = secure ? HTTPS : HTTP;
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		if (msg instanceof Http2HeadersFrame) {
+			Http2HeadersFrame frame = (Http2HeadersFrame) msg;
+			if (responseReceived) {
+				LastHttpContent last = new DefaultLastHttpContent(Unpooled.EMPTY_BUFFER);
+				HttpConversionUtil.addHttp2ToHttpHeaders(frame.streamId(),
+						frame.headers(),
+						last.trailingHeaders(),
+						HttpVersion.HTTP_1_1,
+						true,
+						false);
+				ctx.fireChannelRead(last);
+				return;
+			}
+			HttpResponseStatus status =
+					HttpConversionUtil.parseStatus(frame.headers()
+					                                    .status());
+			if (status.codeClass() == HttpStatusClass.INFORMATIONAL) {
+				//interim response, the final one follows on the same stream
+				return;
+			}
+			responseReceived = true;
+			HttpResponse response = frame.isEndStream() ?
+					new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+							status,
+							Unpooled.EMPTY_BUFFER) :
+					new DefaultHttpResponse(HttpVersion.HTTP_1_1, status);
+			HttpConversionUtil.addHttp2ToHttpHeaders(frame.streamId(),
+					frame.headers(),
+					response.headers(),
+					HttpVersion.HTTP_1_1,
+					false,
+					false);
+			ctx.fireChannelRead(response);
+		}
+		else if (msg instanceof Http2DataFrame) {
+			Http2DataFrame frame = (Http2DataFrame) msg;
+			ctx.fireChannelRead(frame.isEndStream() ?
+					new DefaultLastHttpContent(frame.content()) :
+					new DefaultHttpContent(frame.content()));
+		}
+		else if (msg instanceof Http2ResetFrame) {
+			Http2ResetFrame frame = (Http2ResetFrame) msg;
+			ctx.fireExceptionCaught(Http2Exception.streamError(frame.streamId(),
+					Http2Error.valueOf(frame.errorCode()),
+					"Stream reset by the remote peer"));
+		}
+		else {
+			ReferenceCountUtil.release(msg);
+		}
+	}
+
+	@Override
+	public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+		ctx.channel()
+		   .parent()
+		   .flush();
+		super.channelReadComplete(ctx);
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+			throws Exception {
+		if (msg instanceof HttpRequest) {
+			HttpRequest request = (HttpRequest) msg;
+			Http2Headers headers = new DefaultHttp2Headers().method(request.method()
+			                                                               .asciiName())
+			                                                .path(request.uri())
+			                                                .scheme(scheme);
+			String host = request.headers()
+			                     .get(HttpHeaderNames.HOST);
+			if (host != null) {
+				headers.authority(host);
+			}
+			HttpConversionUtil.toHttp2Headers(request.headers(), headers);
+			if (!(msg instanceof FullHttpMessage)) {
+				ctx.write(new DefaultHttp2HeadersFrame(headers), promise);
+				return;
+			}
+			FullHttpMessage full = (FullHttpMessage) msg;
+			if (!full.content()
+			         .isReadable() && full.trailingHeaders()
+			                              .isEmpty()) {
+				full.release();
+				ctx.write(new DefaultHttp2HeadersFrame(headers, true), promise);
+				return;
+			}
+			ctx.write(new DefaultHttp2HeadersFrame(headers));
+			writeContent(ctx, full, promise);
+		}
+		else if (msg instanceof HttpContent) {
+			writeContent(ctx, (HttpContent) msg, promise);
+		}
+		else if (msg instanceof ByteBuf) {
+			ctx.write(new DefaultHttp2DataFrame((ByteBuf) msg), promise);
+		}
+		else {
+			ctx.write(msg, promise);
+		}
+	}
+
+	final void writeContent(ChannelHandlerContext ctx,
+			HttpContent content,
+			ChannelPromise promise) {
+		if (!(content instanceof LastHttpContent)) {
+			ctx.write(new DefaultHttp2DataFrame(content.content()), promise);
+			return;
+		}
+		HttpHeaders trailers = ((LastHttpContent) content).trailingHeaders();
+		if (trailers.isEmpty()) {
+			ctx.write(new DefaultHttp2DataFrame(content.content(), true), promise);
+			return;
+		}
+		if (content.content()
+		           .isReadable()) {
+			ctx.write(new DefaultHttp2DataFrame(content.content()));
+		}
+		else {
+			content.release();
+		}
+		ctx.write(new DefaultHttp2HeadersFrame(HttpConversionUtil.toHttp2Headers(
+				trailers,
+				true), true), promise);
+	}
+
+	static final AsciiString HTTP  = new AsciiString("http");
+	static final AsciiString HTTPS = new AsciiString("https");
+}
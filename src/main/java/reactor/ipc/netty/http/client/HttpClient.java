@@ -300,11 +300,15 @@ public class HttpClient implements NettyConnector<HttpClientResponse, HttpClient
 					loggingHandler,
 					secure,
 					pool,
-					(ch, c) -> {
+					// pooled HTTP/2 streams are not socket channels
+					(Channel ch, ContextHandler<SocketChannel> c) -> {
 						if(onSetup != null){
 							onSetup.accept(ch);
 						}
-						return HttpClientOperations.bindHttp(ch, handler, c);
+						return HttpClientOperations.bindHttp(ch,
+								handler,
+								c,
+								HttpClient.this.options.compression());
 					});
 		}
 	}
@@ -31,13 +31,13 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.DefaultFullHttpRequest;
 import io.netty.handler.codec.http.DefaultHttpRequest;
 import io.netty.handler.codec.http.EmptyHttpHeaders;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpClientCodec;
 import io.netty.handler.codec.http.HttpConstants;
+import io.netty.handler.codec.http.HttpContentDecompressor;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMessage;
@@ -84,14 +84,16 @@ class HttpClientOperations extends HttpOperations<HttpClientResponse, HttpClient
 
 	static HttpOperations bindHttp(Channel channel,
 			BiFunction<? super HttpClientResponse, ? super HttpClientRequest, ? extends Publisher<Void>> handler,
-			ContextHandler<?> context) {
-		return new HttpClientOperations(channel, handler, context);
+			ContextHandler<?> context,
+			boolean compression) {
+		return new HttpClientOperations(channel, handler, context, compression);
 	}
 
 	final String[]    redirectedFrom;
 	final boolean     isSecure;
 	final HttpRequest nettyRequest;
 	final HttpHeaders requestHeaders;
+	final boolean     compression;
 
 	volatile ResponseState responseState;
 	int inboundPrefetch;
@@ -107,14 +109,19 @@ class HttpClientOperations extends HttpOperations<HttpClientResponse, HttpClient
 		this.redirectable = replaced.redirectable;
 		this.inboundPrefetch = replaced.inboundPrefetch;
 		this.requestHeaders = replaced.requestHeaders;
+		this.compression = replaced.compression;
 	}
 
 	HttpClientOperations(Channel channel,
 			BiFunction<? super HttpClientResponse, ? super HttpClientRequest, ? extends Publisher<Void>> handler,
-			ContextHandler<?> context) {
+			ContextHandler<?> context,
+			boolean compression) {
 		super(channel, handler, context);
-		this.isSecure = channel.pipeline()
-		                       .get(NettyHandlerNames.SslHandler) != null;
+		this.compression = compression;
+		// HTTP/2 streams are secured by their parent connection
+		Channel transport = channel.parent() != null ? channel.parent() : channel;
+		this.isSecure = transport.pipeline()
+		                         .get(NettyHandlerNames.SslHandler) != null;
 		String[] redirects = channel.attr(REDIRECT_ATTR_KEY)
 		                            .get();
 		this.redirectedFrom = redirects == null ? EMPTY_REDIRECTIONS : redirects;
@@ -183,7 +190,7 @@ class HttpClientOperations extends HttpOperations<HttpClientResponse, HttpClient
 
 	@Override
 	public InetSocketAddress address() {
-		return ((SocketChannel) channel()).remoteAddress();
+		return (InetSocketAddress) channel().remoteAddress();
 	}
 
 	@Override
@@ -223,12 +230,24 @@ class HttpClientOperations extends HttpOperations<HttpClientResponse, HttpClient
 		cancel();
 	}
 
+	@Override
+	public HttpClientRequest flushBoundary() {
+		super.flushBoundary();
+		return this;
+	}
+
 	@Override
 	public HttpClientRequest flushEach() {
 		super.flushEach();
 		return this;
 	}
 
+	@Override
+	public HttpClientRequest flushLoop() {
+		super.flushLoop();
+		return this;
+	}
+
 	@Override
 	public HttpClientRequest followRedirect() {
 		redirectable = true;
@@ -371,6 +390,14 @@ class HttpClientOperations extends HttpOperations<HttpClientResponse, HttpClient
 			boolean textPlain,
 			BiFunction<? super HttpInbound, ? super HttpOutbound, ? extends Publisher<Void>> websocketHandler) {
 		Objects.requireNonNull(websocketHandler, "websocketHandler");
+		if (isHttp2Stream()) {
+			return Mono.error(new IllegalStateException("Websocket upgrade is not " +
+					"supported over HTTP/2 streams"));
+		}
+		if (isPipelined()) {
+			return Mono.error(new IllegalStateException("Websocket upgrade is not " +
+					"supported over pipelined connections"));
+		}
 		ChannelPipeline pipeline = channel().pipeline();
 
 		URI uri;
@@ -424,18 +451,58 @@ class HttpClientOperations extends HttpOperations<HttpClientResponse, HttpClient
 	@Override
 	protected void onChannelActive(final ChannelHandlerContext ctx) {
 
-		if(ctx.pipeline().context(NettyHandlerNames.HttpCodecHandler) == null) {
+		// HTTP/2 streams are a single exchange converted from and to frames by their
+		// own codec, pooled HTTP/1.1 connections reuse their codec
+		if (isHttp2Stream()) {
+			if (ctx.pipeline()
+			       .context(NettyHandlerNames.Http2StreamCodec) == null) {
+				ctx.pipeline()
+				   .addBefore(NettyHandlerNames.ReactiveBridge,
+						   NettyHandlerNames.Http2StreamCodec,
+						   new Http2ClientStreamCodec(isSecure));
+			}
+		}
+		else if (ctx.pipeline()
+		            .context(NettyHandlerNames.HttpCodecHandler) == null) {
 			ctx.pipeline()
 			   .addBefore(NettyHandlerNames.ReactiveBridge,
 					   NettyHandlerNames.HttpCodecHandler,
 					   new HttpClientCodec());
 		}
 
+		// pooled channels may be shared by clients with and without compression, the
+		// decompressor resets itself on each new response so it is only added or
+		// removed here
+		if (compression) {
+			if (ctx.pipeline()
+			       .context(NettyHandlerNames.HttpDecompressor) == null) {
+				ctx.pipeline()
+				   .addBefore(NettyHandlerNames.ReactiveBridge,
+						   NettyHandlerNames.HttpDecompressor,
+						   new HttpContentDecompressor());
+			}
+			if (!requestHeaders.contains(HttpHeaderNames.ACCEPT_ENCODING)) {
+				requestHeaders.set(HttpHeaderNames.ACCEPT_ENCODING, ACCEPT_ENCODING);
+			}
+		}
+		// a decompressor shared by pipelined exchanges may still be decoding a
+		// previous response
+		else if (!isPipelined() && ctx.pipeline()
+		                              .context(NettyHandlerNames.HttpDecompressor) != null) {
+			ctx.pipeline()
+			   .remove(NettyHandlerNames.HttpDecompressor);
+		}
+
 		HttpUtil.setTransferEncodingChunked(nettyRequest, true);
 
 		applyHandler();
 	}
 
+	@Override
+	protected boolean supportsFileRegion() {
+		return !isHttp2Stream() && super.supportsFileRegion();
+	}
+
 	@Override
 	protected void onChannelTerminate() {
 		if (!isKeepAlive()) {
@@ -550,6 +617,25 @@ class HttpClientOperations extends HttpOperations<HttpClientResponse, HttpClient
 		return true;
 	}
 
+	/**
+	 * Return true if this exchange is carried by an HTTP/2 stream channel
+	 *
+	 * @return true if this exchange is carried by an HTTP/2 stream channel
+	 */
+	final boolean isHttp2Stream() {
+		return channel().parent() != null;
+	}
+
+	/**
+	 * Return true if this exchange is pipelined with others on a shared connection
+	 *
+	 * @return true if this exchange is pipelined with others on a shared connection
+	 */
+	final boolean isPipelined() {
+		return channel().pipeline()
+		                .context(NettyHandlerNames.PipelinedBridge) != null;
+	}
+
 	final HttpRequest getNettyRequest() {
 		return nettyRequest;
 	}
@@ -711,6 +797,7 @@ class HttpClientOperations extends HttpOperations<HttpClientResponse, HttpClient
 
 	static final int                    MAX_REDIRECTS      = 50;
 	static final String[]               EMPTY_REDIRECTIONS = new String[0];
+	static final String                 ACCEPT_ENCODING    = "gzip, deflate";
 	static final Logger                 log                =
 			Loggers.getLogger(HttpClientOperations.class);
 	static final AttributeKey<String[]> REDIRECT_ATTR_KEY  =
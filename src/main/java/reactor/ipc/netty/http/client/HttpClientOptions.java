@@ -38,6 +38,7 @@ import io.netty.channel.socket.InternetProtocolFamily;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.util.AttributeKey;
+import reactor.ipc.netty.channel.FlushMode;
 import reactor.ipc.netty.resources.LoopResources;
 import reactor.ipc.netty.options.ClientOptions;
 import reactor.ipc.netty.resources.PoolResources;
@@ -60,11 +61,16 @@ public final class HttpClientOptions extends ClientOptions {
 		return new HttpClientOptions();
 	}
 
+	boolean compression;
+
 	HttpClientOptions() {
 	}
 
 	HttpClientOptions(ClientOptions options) {
 		super(options);
+		if (options instanceof HttpClientOptions) {
+			this.compression = ((HttpClientOptions) options).compression;
+		}
 	}
 
 	@Override
@@ -85,6 +91,29 @@ public final class HttpClientOptions extends ClientOptions {
 		return this;
 	}
 
+	/**
+	 * Enable transparent response decompression: requests are sent with an
+	 * {@code Accept-Encoding: gzip, deflate} header unless already set, and GZIP or
+	 * DEFLATE encoded response bodies are decoded as they are received.
+	 *
+	 * @param enabled true to enable response decompression
+	 *
+	 * @return {@literal this}
+	 */
+	public HttpClientOptions compression(boolean enabled) {
+		this.compression = enabled;
+		return this;
+	}
+
+	/**
+	 * Return true if responses are transparently decompressed.
+	 *
+	 * @return true if responses are transparently decompressed
+	 */
+	public boolean compression() {
+		return compression;
+	}
+
 	@Override
 	public HttpClientOptions loopResources(LoopResources eventLoopSelector) {
 		super.loopResources(eventLoopSelector);
@@ -114,6 +143,12 @@ public final class HttpClientOptions extends ClientOptions {
 		return this;
 	}
 
+	@Override
+	public HttpClientOptions flushMode(FlushMode flushMode) {
+		super.flushMode(flushMode);
+		return this;
+	}
+
 	@Override
 	public HttpClientOptions duplicate() {
 		return new HttpClientOptions(this);
@@ -140,6 +175,12 @@ public final class HttpClientOptions extends ClientOptions {
 				new InetSocketAddress(uri.getHost(), port);
 	}
 
+	@Override
+	public HttpClientOptions inboundQueueCapacity(int inboundQueueCapacity) {
+		super.inboundQueueCapacity(inboundQueueCapacity);
+		return this;
+	}
+
 	@Override
 	public HttpClientOptions onChannelInit(Predicate<? super Channel> onChannelInit) {
 		onChannelInit(onChannelInit);
@@ -152,6 +193,12 @@ public final class HttpClientOptions extends ClientOptions {
 		return this;
 	}
 
+	@Override
+	public HttpClientOptions outboundPrefetch(int outboundPrefetch) {
+		super.outboundPrefetch(outboundPrefetch);
+		return this;
+	}
+
 	@Override
 	public HttpClientOptions preferNative(boolean preferNative) {
 		super.preferNative(preferNative);
@@ -320,6 +367,12 @@ public final class HttpClientOptions extends ClientOptions {
 		return this;
 	}
 
+	@Override
+	public HttpClientOptions writeCoalescing(int threshold, int bufferSize) {
+		super.writeCoalescing(threshold, bufferSize);
+		return this;
+	}
+
 	final String formatSchemeAndHost(String url, boolean ws) {
 		if (!url.startsWith(HttpClient.HTTP_SCHEME) && !url.startsWith(HttpClient.WS_SCHEME)) {
 			final String parsedUrl =
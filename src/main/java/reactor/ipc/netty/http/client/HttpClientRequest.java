@@ -55,9 +55,15 @@ public interface HttpClientRequest extends HttpOutbound {
 	@Override
 	HttpClientRequest disableChunkedTransfer();
 
+	@Override
+	HttpClientRequest flushBoundary();
+
 	@Override
 	HttpClientRequest flushEach();
 
+	@Override
+	HttpClientRequest flushLoop();
+
 	/**
 	 * Enable http status 302 auto-redirect support
 	 *
@@ -16,6 +16,9 @@
 
 package reactor.ipc.netty.http.multipart;
 
+import java.util.Collections;
+import java.util.List;
+
 import io.netty.buffer.ByteBuf;
 import io.netty.util.ReferenceCounted;
 import reactor.core.publisher.Flux;
@@ -63,4 +66,15 @@ public interface MultipartInbound extends NettyInbound {
 	default Flux<?> receiveObject() {
 		return receive();
 	}
+
+	/**
+	 * Parts are not bound to a read cycle, each aggregated part is emitted as a
+	 * single element batch.
+	 *
+	 * @return a {@link List} of aggregated part inbound {@link Flux}
+	 */
+	@Override
+	default Flux<List<Object>> receiveBatches() {
+		return receiveObject().map(Collections::singletonList);
+	}
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package reactor.ipc.netty.http.server;
+
+import java.util.Arrays;
+
+/**
+ * Parse an HTTP {@code Range} request header against a representation length as
+ * specified by RFC 7233.
+ *
+ * @author Stephane Maldini
+ */
+final class ByteRanges {
+
+	/**
+	 * Parse a {@code Range} header value into inclusive {@code [first, last]} offset
+	 * pairs. Unsatisfiable ranges are skipped.
+	 *
+	 * @param range the {@code Range} header value
+	 * @param length the representation length
+	 *
+	 * @return the flattened satisfiable ranges, an empty array if none is satisfiable,
+	 * or null if the header is invalid, not in bytes or has too many ranges and should
+	 * be ignored
+	 */
+	static long[] parse(String range, long length) {
+		if (!range.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+			return null;
+		}
+		long[] ranges = new long[4];
+		int count = 0;
+		boolean specified = false;
+		int start = BYTES_UNIT.length();
+		int end = range.length();
+		while (start < end) {
+			int comma = range.indexOf(',', start);
+			if (comma < 0) {
+				comma = end;
+			}
+			String spec = range.substring(start, comma)
+			                   .trim();
+			start = comma + 1;
+			if (spec.isEmpty()) {
+				continue;
+			}
+			specified = true;
+			int dash = spec.indexOf('-');
+			if (dash < 0) {
+				return null;
+			}
+			long first;
+			long last;
+			try {
+				if (dash == 0) {
+					long suffix = Long.parseLong(spec.substring(1));
+					if (suffix < 0) {
+						return null;
+					}
+					if (suffix == 0 || length == 0) {
+						continue;
+					}
+					first = Math.max(0L, length - suffix);
+					last = length - 1;
+				}
+				else {
+					first = Long.parseLong(spec.substring(0, dash));
+					last = dash == spec.length() - 1 ? length - 1 :
+							Long.parseLong(spec.substring(dash + 1));
+					if (first < 0 || last < first) {
+						return null;
+					}
+					if (first >= length) {
+						continue;
+					}
+					last = Math.min(last, length - 1);
+				}
+			}
+			catch (NumberFormatException nfe) {
+				return null;
+			}
+			if (count == MAX_RANGES * 2) {
+				return null;
+			}
+			if (count == ranges.length) {
+				ranges = Arrays.copyOf(ranges, count * 2);
+			}
+			ranges[count++] = first;
+			ranges[count++] = last;
+		}
+		return specified ? Arrays.copyOf(ranges, count) : null;
+	}
+
+	static final String BYTES_UNIT = "bytes=";
+	static final int    MAX_RANGES = 16;
+
+	ByteRanges() {
+	}
+}
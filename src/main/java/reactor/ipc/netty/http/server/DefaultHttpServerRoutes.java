@@ -22,10 +22,10 @@ import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -41,8 +41,15 @@ import reactor.ipc.netty.ByteBufFlux;
 final class DefaultHttpServerRoutes implements HttpServerRoutes {
 
 
-	private final CopyOnWriteArrayList<HttpRouteHandler> handlers =
-			new CopyOnWriteArrayList<>();
+	/**
+	 * The routes in registration order, guarded by this instance
+	 */
+	private final List<HttpRouteHandler> handlers = new ArrayList<>();
+
+	/**
+	 * The index of the registered routes, rebuilt on registration
+	 */
+	private volatile HttpRouteTrie router = HttpRouteTrie.EMPTY;
 
 	@Override
 	public HttpServerRoutes directory(String uri, Path directory,
@@ -78,28 +85,32 @@ final class DefaultHttpServerRoutes implements HttpServerRoutes {
 		Objects.requireNonNull(condition, "condition");
 		Objects.requireNonNull(handler, "handler");
 
-		if (condition instanceof HttpPredicate) {
-			handlers.add(new HttpRouteHandler(condition,
-					handler,
-					(HttpPredicate) condition));
-		}
-		else {
-			handlers.add(new HttpRouteHandler(condition, handler, null));
+		synchronized (this) {
+			if (condition instanceof HttpPredicate) {
+				handlers.add(new HttpRouteHandler(condition,
+						handler,
+						(HttpPredicate) condition,
+						handlers.size()));
+			}
+			else {
+				handlers.add(new HttpRouteHandler(condition,
+						handler,
+						null,
+						handlers.size()));
+			}
+			router = new HttpRouteTrie(handlers);
 		}
 		return this;
 	}
 
 	@Override
 	public Publisher<Void> apply(HttpServerRequest request, HttpServerResponse response) {
-		final Iterator<HttpRouteHandler> iterator = handlers.iterator();
-		HttpRouteHandler cursor;
+		HttpRouteHandler selected;
 
 		try {
-			while (iterator.hasNext()) {
-				cursor = iterator.next();
-				if (cursor.test(request)) {
-					return cursor.apply(request, response);
-				}
+			selected = router.select(request);
+			if (selected != null) {
+				return selected.apply(request, response);
 			}
 		}
 		catch (Throwable t) {
@@ -120,13 +131,16 @@ final class DefaultHttpServerRoutes implements HttpServerRoutes {
 		final BiFunction<? super HttpServerRequest, ? super HttpServerResponse, ? extends Publisher<Void>>
 		                                                    handler;
 		final Function<? super String, Map<String, Object>> resolver;
+		final int                                           index;
 
 		HttpRouteHandler(Predicate<? super HttpServerRequest> condition,
 				BiFunction<? super HttpServerRequest, ? super HttpServerResponse, ? extends Publisher<Void>> handler,
-				Function<? super String, Map<String, Object>> resolver) {
+				Function<? super String, Map<String, Object>> resolver,
+				int index) {
 			this.condition = Objects.requireNonNull(condition, "condition");
 			this.handler = Objects.requireNonNull(handler, "handler");
 			this.resolver = resolver;
+			this.index = index;
 		}
 
 		@Override
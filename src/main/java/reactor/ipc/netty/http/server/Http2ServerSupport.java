@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package reactor.ipc.netty.http.server;
+
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http2.Http2Codec;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2FrameLogger;
+import io.netty.handler.codec.http2.Http2ServerDowngrader;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.logging.LogLevel;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.AsciiString;
+import reactor.ipc.netty.NettyHandlerNames;
+import reactor.ipc.netty.channel.ChannelOperations;
+import reactor.ipc.netty.channel.ContextHandler;
+
+/**
+ * Switch an HTTP/1.1 server connection to HTTP/2 with prior knowledge, an
+ * {@code Upgrade: h2c} request or ALPN. Once switched, the connection is handled by an
+ * {@link Http2Codec} and each stream by its own child channel and
+ * {@link HttpServerOperations}, with an {@link Http2ServerDowngrader} converting
+ * stream frames from and to http objects.
+ *
+ * @author Stephane Maldini
+ */
+final class Http2ServerSupport {
+
+	/**
+	 * Prepare a new connection pipeline to switch to HTTP/2, negotiated with ALPN if
+	 * secured, otherwise detected from the connection preface or an upgrade request.
+	 *
+	 * @param pipeline the connection pipeline, with its http codec installed
+	 * @param context the connection context
+	 */
+	static void configure(ChannelPipeline pipeline, ContextHandler<?> context) {
+		if (pipeline.get(SslHandler.class) != null) {
+			pipeline.addBefore(NettyHandlerNames.HttpCodecHandler,
+					NettyHandlerNames.Http2Negotiator,
+					new Http2Negotiator(context));
+			return;
+		}
+		pipeline.addBefore(NettyHandlerNames.HttpCodecHandler,
+				NettyHandlerNames.Http2Detector,
+				new Http2Detector(context));
+		pipeline.addAfter(NettyHandlerNames.HttpCodecHandler,
+				NettyHandlerNames.HttpUpgrader,
+				new HttpServerUpgradeHandler(ctx -> removeHttp1(ctx.pipeline()),
+						protocol -> AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME,
+								protocol) ?
+								new Http2ServerUpgradeCodec(NettyHandlerNames.Http2Codec,
+										newHttp2Codec(context)) : null,
+						MAX_UPGRADE_CONTENT_LENGTH));
+	}
+
+	/**
+	 * Replace the HTTP/1.1 handlers of a connection pipeline by an {@link Http2Codec}
+	 *
+	 * @param pipeline the connection pipeline
+	 * @param context the connection context
+	 */
+	static void upgrade(ChannelPipeline pipeline, ContextHandler<?> context) {
+		pipeline.addBefore(NettyHandlerNames.HttpCodecHandler,
+				NettyHandlerNames.Http2Codec,
+				newHttp2Codec(context));
+		if (pipeline.context(NettyHandlerNames.HttpUpgrader) != null) {
+			pipeline.remove(NettyHandlerNames.HttpUpgrader);
+		}
+		removeHttp1(pipeline);
+	}
+
+	/**
+	 * Remove the HTTP/1.1 handlers and the connection {@link HttpServerOperations}:
+	 * streams are bridged by their own child channel, the connection then reads as
+	 * fast as the per-stream flow control windows allow.
+	 *
+	 * @param pipeline the connection pipeline
+	 */
+	static void removeHttp1(ChannelPipeline pipeline) {
+		for (String name : HTTP1_HANDLERS) {
+			if (pipeline.context(name) != null) {
+				pipeline.remove(name);
+			}
+		}
+		pipeline.channel()
+		        .attr(ChannelOperations.OPERATIONS_ATTRIBUTE_KEY)
+		        .set(null);
+		pipeline.channel()
+		        .config()
+		        .setAutoRead(true);
+	}
+
+	static Http2Codec newHttp2Codec(ContextHandler<?> context) {
+		return new Http2Codec(true,
+				new Http2StreamChannelBootstrap().option(ChannelOption.AUTO_READ, false)
+				                                 .handler(context.newChildContext(
+						                                 Http2ServerSupport::configureStream)),
+				FRAME_LOGGER);
+	}
+
+	static void configureStream(ChannelPipeline pipeline) {
+		pipeline.addLast(NettyHandlerNames.Http2StreamCodec, new Http2StreamCodec());
+	}
+
+	static final int MAX_UPGRADE_CONTENT_LENGTH = 65536;
+
+	static final Http2FrameLogger FRAME_LOGGER =
+			new Http2FrameLogger(LogLevel.DEBUG, Http2ServerSupport.class);
+
+	static final String[] HTTP1_HANDLERS = {NettyHandlerNames.HttpCodecHandler,
+			NettyHandlerNames.HttpKeepAlive, NettyHandlerNames.HttpPipelining,
+			NettyHandlerNames.HttpCompressor, NettyHandlerNames.ChunkedWriter,
+			NettyHandlerNames.ReactiveBridge};
+
+	static final ByteBuf PREFACE =
+			Unpooled.unreleasableBuffer(Http2CodecUtil.connectionPrefaceBuf());
+
+	/**
+	 * Switch a cleartext connection to HTTP/2 if it starts with the connection
+	 * preface, otherwise leave it to the http codec
+	 */
+	static final class Http2Detector extends ByteToMessageDecoder {
+
+		final ContextHandler<?> context;
+
+		Http2Detector(ContextHandler<?> context) {
+			this.context = context;
+		}
+
+		@Override
+		protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out)
+				throws Exception {
+			int length = Math.min(in.readableBytes(), PREFACE.readableBytes());
+			if (!ByteBufUtil.equals(PREFACE,
+					PREFACE.readerIndex(),
+					in,
+					in.readerIndex(),
+					length)) {
+				ctx.pipeline()
+				   .remove(this);
+			}
+			else if (length == PREFACE.readableBytes()) {
+				upgrade(ctx.pipeline(), context);
+				ctx.pipeline()
+				   .remove(this);
+			}
+		}
+	}
+
+	/**
+	 * Switch a secured connection to HTTP/2 if {@code h2} has been negotiated with
+	 * ALPN
+	 */
+	static final class Http2Negotiator extends ApplicationProtocolNegotiationHandler {
+
+		final ContextHandler<?> context;
+
+		Http2Negotiator(ContextHandler<?> context) {
+			super(ApplicationProtocolNames.HTTP_1_1);
+			this.context = context;
+		}
+
+		@Override
+		protected void configurePipeline(ChannelHandlerContext ctx, String protocol)
+				throws Exception {
+			if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+				upgrade(ctx.pipeline(), context);
+			}
+		}
+	}
+
+	/**
+	 * An {@link Http2ServerDowngrader} also accepting raw {@link ByteBuf} body writes
+	 * and flushing the window updates of the stream data read to the connection
+	 */
+	static final class Http2StreamCodec extends Http2ServerDowngrader {
+
+		@Override
+		public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+			ctx.channel()
+			   .parent()
+			   .flush();
+			super.channelReadComplete(ctx);
+		}
+
+		@Override
+		public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+				throws Exception {
+			if (msg instanceof ByteBuf) {
+				msg = new DefaultHttpContent((ByteBuf) msg);
+			}
+			super.write(ctx, msg, promise);
+		}
+	}
+
+	Http2ServerSupport() {
+	}
+}
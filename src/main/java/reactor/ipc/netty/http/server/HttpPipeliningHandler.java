@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty.http.server;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.PendingWriteQueue;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.util.ReferenceCountUtil;
+import reactor.ipc.netty.channel.ChannelOperations;
+
+/**
+ * Serve the HTTP/1.1 requests pipelined on a connection. The requests decoded ahead of
+ * the {@link HttpServerOperations} bound to the connection are held until an exchange
+ * can receive them, up to the given depth of exchanges are handled concurrently and
+ * the responses of the exchanges behind the first one are buffered until every
+ * previous response has been written.
+ * <p>
+ * Buffered responses count toward the channel writability like any pending write, so
+ * that their writers pause above the channel high water mark, and no new request is
+ * read while the channel is not writable.
+ * <p>
+ * All methods but {@link #write(HttpServerOperations, Object, boolean)} are invoked
+ * from the channel event loop.
+ *
+ * @author Stephane Maldini
+ */
+final class HttpPipeliningHandler extends ChannelInboundHandlerAdapter {
+
+	final int depth;
+
+	/**
+	 * The exchanges whose response is not complete in request order, the first one
+	 * writes to the channel
+	 */
+	final ArrayDeque<Exchange> exchanges = new ArrayDeque<>();
+	/**
+	 * The inbound messages decoded ahead of an exchange to receive them
+	 */
+	final ArrayDeque<Object>   parked    = new ArrayDeque<>();
+
+	ChannelHandlerContext ctx;
+
+	HttpPipeliningHandler(int depth) {
+		this.depth = depth;
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		this.ctx = ctx;
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		releaseParked();
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		if (parked.isEmpty() && accepts(msg)) {
+			ctx.fireChannelRead(msg);
+		}
+		else {
+			parked.add(msg);
+		}
+	}
+
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		// the reactive bridge only notifies the exchange bound to the connection
+		ChannelOperations<?, ?> bound = ctx.channel()
+		                                   .attr(ChannelOperations.OPERATIONS_ATTRIBUTE_KEY)
+		                                   .get();
+		for (Exchange exchange : exchanges) {
+			if (exchange.ops != bound) {
+				exchange.ops.onWritabilityChanged();
+			}
+		}
+		ctx.fireChannelWritabilityChanged();
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		releaseParked();
+		Exchange exchange;
+		while ((exchange = exchanges.poll()) != null) {
+			exchange.fail(new ClosedChannelException());
+		}
+		ctx.fireChannelInactive();
+	}
+
+	/**
+	 * Replay the held inbound messages the bound exchange can receive
+	 *
+	 * @return true if no message is held anymore and the connection can be read
+	 */
+	boolean drain() {
+		boolean replayed = false;
+		Object msg;
+		while ((msg = parked.peek()) != null && accepts(msg)) {
+			parked.poll();
+			replayed = true;
+			ctx.fireChannelRead(msg);
+		}
+		if (replayed) {
+			ctx.fireChannelReadComplete();
+		}
+		return parked.isEmpty();
+	}
+
+	/**
+	 * Register the exchange of a new request
+	 *
+	 * @param ops the exchange bound to the connection which received the request
+	 */
+	void onRequest(HttpServerOperations ops) {
+		exchanges.add(new Exchange(ops, ctx));
+	}
+
+	/**
+	 * Mark the request of the given exchange as fully received
+	 *
+	 * @param ops the exchange bound to the connection
+	 *
+	 * @return true if the next request can be received by a new exchange while this
+	 * exchange response is in progress
+	 */
+	boolean onRequestReceived(HttpServerOperations ops) {
+		Exchange exchange = find(ops);
+		if (exchange == null) {
+			return false;
+		}
+		exchange.received = true;
+		return canPipeline(exchange);
+	}
+
+	/**
+	 * Return true if the request of the given exchange has been fully received
+	 *
+	 * @param ops the exchange
+	 *
+	 * @return true if the request of the given exchange has been fully received
+	 */
+	boolean isReceived(HttpServerOperations ops) {
+		Exchange exchange = find(ops);
+		return exchange != null && exchange.received;
+	}
+
+	/**
+	 * Return true if the given exchange is the first exchange of the connection, which
+	 * writes its response directly
+	 *
+	 * @param ops the exchange
+	 *
+	 * @return true if the given exchange response is the next to be written
+	 */
+	boolean isHead(HttpServerOperations ops) {
+		Exchange head = exchanges.peek();
+		return head == null || head.ops == ops;
+	}
+
+	/**
+	 * Remove the terminated exchange and write the buffered response of the next one.
+	 *
+	 * @param ops the terminated exchange
+	 *
+	 * @return the bound exchange if its request has been fully received and it can now
+	 * be pipelined behind, null otherwise
+	 */
+	HttpServerOperations onTerminated(HttpServerOperations ops) {
+		Exchange head = exchanges.peek();
+		if (head != null && head.ops == ops) {
+			exchanges.poll();
+			head = exchanges.peek();
+			if (head != null) {
+				head.flush(ctx.channel());
+			}
+		}
+		else {
+			Exchange exchange = find(ops);
+			if (exchange == null) {
+				return null;
+			}
+			exchanges.remove(exchange);
+		}
+		ChannelOperations<?, ?> bound = ctx.channel()
+		                                   .attr(ChannelOperations.OPERATIONS_ATTRIBUTE_KEY)
+		                                   .get();
+		if (bound == ops || !(bound instanceof HttpServerOperations)) {
+			return null;
+		}
+		Exchange exchange = find((HttpServerOperations) bound);
+		return exchange != null && canPipeline(exchange) ? exchange.ops : null;
+	}
+
+	/**
+	 * Write a message of the given exchange, buffered until the exchange is the first
+	 * one of the connection.
+	 *
+	 * @param ops the writing exchange
+	 * @param msg the message to write
+	 * @param flush true to flush the message once written
+	 *
+	 * @return the write future
+	 */
+	ChannelFuture write(HttpServerOperations ops, Object msg, boolean flush) {
+		Channel channel = ctx.channel();
+		ChannelPromise promise = channel.newPromise();
+		if (channel.eventLoop()
+		           .inEventLoop()) {
+			write(ops, msg, flush, promise);
+		}
+		else {
+			channel.eventLoop()
+			       .execute(() -> write(ops, msg, flush, promise));
+		}
+		return promise;
+	}
+
+	final void write(HttpServerOperations ops,
+			Object msg,
+			boolean flush,
+			ChannelPromise promise) {
+		Exchange exchange = isHead(ops) ? null : find(ops);
+		if (exchange != null && ctx.channel()
+		                           .isActive()) {
+			exchange.writes.add(msg, promise);
+			return;
+		}
+		Channel channel = ctx.channel();
+		channel.write(msg, promise);
+		if (flush) {
+			channel.flush();
+		}
+	}
+
+	final boolean canPipeline(Exchange exchange) {
+		Channel channel = ctx.channel();
+		return exchange.received && exchanges.size() < depth && !exchange.ops.isWebsocket() &&
+				channel.isActive() && channel.isWritable();
+	}
+
+	final boolean accepts(Object msg) {
+		if (!(msg instanceof HttpRequest)) {
+			return true;
+		}
+		ChannelOperations<?, ?> ops = ctx.channel()
+		                                 .attr(ChannelOperations.OPERATIONS_ATTRIBUTE_KEY)
+		                                 .get();
+		return !(ops instanceof HttpServerOperations) || ((HttpServerOperations) ops).nettyRequest == null;
+	}
+
+	final Exchange find(HttpServerOperations ops) {
+		for (Exchange exchange : exchanges) {
+			if (exchange.ops == ops) {
+				return exchange;
+			}
+		}
+		return null;
+	}
+
+	final void releaseParked() {
+		Object msg;
+		while ((msg = parked.poll()) != null) {
+			ReferenceCountUtil.release(msg);
+		}
+	}
+
+	/**
+	 * A pipelined exchange and its buffered response
+	 */
+	static final class Exchange {
+
+		final HttpServerOperations ops;
+		final PendingWriteQueue    writes;
+
+		boolean received;
+
+		Exchange(HttpServerOperations ops, ChannelHandlerContext ctx) {
+			this.ops = ops;
+			this.writes = new PendingWriteQueue(ctx);
+		}
+
+		void flush(Channel channel) {
+			if (writes.isEmpty()) {
+				return;
+			}
+			Object msg;
+			while ((msg = writes.current()) != null) {
+				// written from the channel to go through the whole pipeline, remove()
+				// releases the message
+				ReferenceCountUtil.retain(msg);
+				channel.write(msg, writes.remove());
+			}
+			channel.flush();
+		}
+
+		void fail(Throwable cause) {
+			writes.removeAndFailAll(cause);
+		}
+	}
+}
@@ -16,11 +16,16 @@
 
 package reactor.ipc.netty.http.server;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
@@ -200,6 +205,11 @@ final class HttpPredicate
 	 * Represents a URI template. A URI template is a URI-like String that contains
 	 * variables enclosed by braces (<code>{</code>, <code>}</code>), which can be
 	 * expanded to produce an actual URI.
+	 * <p>
+	 * The template is compiled into literal, <code>{name}</code> capture and
+	 * <code>**</code> splat parts matched directly against a uri. Templates using any
+	 * other regular expression syntax are matched with their compiled {@link Pattern}.
+	 * Instances are immutable and can be shared across threads.
 	 *
 	 * @author Arjen Poutsma
 	 * @author Juergen Hoeller
@@ -208,6 +218,16 @@ final class HttpPredicate
 	 */
 	static final class UriPathTemplate {
 
+		/**
+		 * The regular expression characters a template literal may not contain to be
+		 * compiled into parts
+		 */
+		static final String META = "\\^$|?*+()[]{}";
+
+		static final int LITERAL  = 0;
+		static final int VARIABLE = 1;
+		static final int SPLAT    = 2;
+
 		private static final Pattern FULL_SPLAT_PATTERN     =
 				Pattern.compile("[\\*][\\*]");
 		private static final String  FULL_SPLAT_REPLACEMENT = ".*";
@@ -223,14 +243,26 @@ final class HttpPredicate
 		private static final String  NAME_REPLACEMENT = "(?<%NAME%>[^\\/.]*)";
 		//private static final String  NAME_REPLACEMENT = "([^\\/.]*)";
 
-		private final List<String>                         pathVariables =
-				new ArrayList<>();
-		private final HashMap<String, Matcher>             matchers      =
-				new HashMap<>();
-		private final HashMap<String, Map<String, Object>> vars          =
-				new HashMap<>();
-
-		private final Pattern uriPattern;
+		/**
+		 * The part kinds, {@link #LITERAL}, {@link #VARIABLE} or {@link #SPLAT}
+		 */
+		private final int[]    kinds;
+		/**
+		 * The part literals or capture names, null for an anonymous splat
+		 */
+		private final String[] values;
+		/**
+		 * The part capture slots, -1 for a literal or an anonymous splat
+		 */
+		private final int[]    slots;
+		/**
+		 * The capture names in template order
+		 */
+		private final String[] names;
+		/**
+		 * The compiled pattern of a template which cannot be compiled into parts
+		 */
+		private final Pattern  uriPattern;
 
 		/**
 		 * Creates a new {@code UriPathTemplate} from the given {@code uriPattern}.
@@ -238,35 +270,83 @@ final class HttpPredicate
 		 * @param uriPattern The pattern to be used by the template
 		 */
 		public UriPathTemplate(String uriPattern) {
-			String s = "^" + uriPattern;
-
-			Matcher m = NAME_SPLAT_PATTERN.matcher(s);
-			while (m.find()) {
-				for (int i = 1; i <= m.groupCount(); i++) {
-					String name = m.group(i);
-					pathVariables.add(name);
-					s = m.replaceFirst(NAME_SPLAT_REPLACEMENT.replaceAll("%NAME%", name));
-					m.reset(s);
+			List<Integer> kinds = new ArrayList<>();
+			List<String> values = new ArrayList<>();
+			List<String> names = new ArrayList<>();
+
+			int length = uriPattern.length();
+			int literal = 0;
+			int i = 0;
+			boolean compiled = true;
+			while (i < length && compiled) {
+				char c = uriPattern.charAt(i);
+				if (c == '{') {
+					int close = uriPattern.indexOf('}', i);
+					int slash = uriPattern.indexOf('/', i);
+					if (close < i + 2 || (slash != -1 && slash < close)) {
+						compiled = false;
+						break;
+					}
+					if (literal < i) {
+						kinds.add(LITERAL);
+						values.add(uriPattern.substring(literal, i));
+					}
+					String name = uriPattern.substring(i + 1, close);
+					names.add(name);
+					values.add(name);
+					i = close + 1;
+					if (uriPattern.startsWith("**", i)) {
+						kinds.add(SPLAT);
+						i += 2;
+					}
+					else {
+						kinds.add(VARIABLE);
+					}
+					literal = i;
+				}
+				else if (c == '*' && uriPattern.startsWith("**", i)) {
+					if (literal < i) {
+						kinds.add(LITERAL);
+						values.add(uriPattern.substring(literal, i));
+					}
+					kinds.add(SPLAT);
+					values.add(null);
+					i += 2;
+					literal = i;
+				}
+				else if (META.indexOf(c) != -1) {
+					compiled = false;
+				}
+				else {
+					i++;
 				}
 			}
 
-			m = NAME_PATTERN.matcher(s);
-			while (m.find()) {
-				for (int i = 1; i <= m.groupCount(); i++) {
-					String name = m.group(i);
-					pathVariables.add(name);
-					s = m.replaceFirst(NAME_REPLACEMENT.replaceAll("%NAME%", name));
-					m.reset(s);
-				}
+			if (!compiled) {
+				this.kinds = null;
+				this.values = null;
+				this.slots = null;
+				this.names = regexNames(uriPattern);
+				this.uriPattern = compile(uriPattern);
+				return;
 			}
 
-			m = FULL_SPLAT_PATTERN.matcher(s);
-			while (m.find()) {
-				s = m.replaceAll(FULL_SPLAT_REPLACEMENT);
-				m.reset(s);
+			if (literal < length) {
+				kinds.add(LITERAL);
+				values.add(uriPattern.substring(literal));
 			}
 
-			this.uriPattern = Pattern.compile(s + "$");
+			this.kinds = new int[kinds.size()];
+			this.values = values.toArray(new String[values.size()]);
+			this.slots = new int[kinds.size()];
+			int slot = 0;
+			for (int part = 0; part < this.kinds.length; part++) {
+				this.kinds[part] = kinds.get(part);
+				this.slots[part] =
+						this.kinds[part] != LITERAL && this.values[part] != null ? slot++ : -1;
+			}
+			this.names = names.toArray(new String[names.size()]);
+			this.uriPattern = null;
 		}
 
 		/**
@@ -278,7 +358,11 @@ final class HttpPredicate
 		 * @return {@code true} if there's a match, {@code false} otherwise
 		 */
 		public boolean matches(String uri) {
-			return matcher(uri).matches();
+			if (uriPattern != null) {
+				return uriPattern.matcher(uri)
+				                 .matches();
+			}
+			return match(0, uri, 0, null);
 		}
 
 		/**
@@ -291,38 +375,186 @@ final class HttpPredicate
 		 * @return the path parameters from the uri. Never {@code null}.
 		 */
 		public Map<String, Object> match(String uri) {
-			Map<String, Object> pathParameters = vars.get(uri);
-			if (null != pathParameters) {
-				return pathParameters;
+			if (names.length == 0) {
+				return Collections.emptyMap();
+			}
+			Object[] parameters = new Object[names.length];
+			if (uriPattern != null) {
+				Matcher m = uriPattern.matcher(uri);
+				if (!m.matches()) {
+					return Collections.emptyMap();
+				}
+				for (int i = 0; i < names.length; i++) {
+					parameters[i] = m.group(names[i]);
+				}
+				return new PathParameters(names, parameters);
 			}
+			int[] bounds = new int[names.length * 2];
+			if (!match(0, uri, 0, bounds)) {
+				return Collections.emptyMap();
+			}
+			for (int i = 0; i < names.length; i++) {
+				parameters[i] = uri.substring(bounds[i * 2], bounds[i * 2 + 1]);
+			}
+			return new PathParameters(names, parameters);
+		}
 
-			pathParameters = new HashMap<String, Object>();
-			Matcher m = matcher(uri);
-			if (m.matches()) {
-				int i = 1;
-				for (String name : pathVariables) {
-					String val = m.group(i++);
-					pathParameters.put(name, val);
+		/**
+		 * Match the parts from the given index against the uri remaining from the given
+		 * position. Captures are as greedy as a regular expression group, the first one
+		 * takes the longest run allowing the following parts to match.
+		 *
+		 * @param part the part index
+		 * @param uri the uri
+		 * @param position the uri position
+		 * @param bounds the capture bounds to fill or null
+		 *
+		 * @return true if the remaining uri matches the remaining parts
+		 */
+		private boolean match(int part, String uri, int position, int[] bounds) {
+			if (part == kinds.length) {
+				return position == uri.length();
+			}
+			int end;
+			switch (kinds[part]) {
+				case LITERAL:
+					String literal = values[part];
+					return uri.startsWith(literal, position) && match(part + 1,
+							uri,
+							position + literal.length(),
+							bounds);
+				case VARIABLE:
+					end = position;
+					char c;
+					while (end < uri.length() && (c = uri.charAt(end)) != '/' && c != '.') {
+						end++;
+					}
+					break;
+				default:
+					end = uri.length();
+			}
+			for (; end >= position; end--) {
+				if (match(part + 1, uri, end, bounds)) {
+					if (bounds != null && slots[part] != -1) {
+						bounds[slots[part] * 2] = position;
+						bounds[slots[part] * 2 + 1] = end;
+					}
+					return true;
 				}
 			}
-			synchronized (vars) {
-				vars.put(uri, pathParameters);
+			return false;
+		}
+
+		static String[] regexNames(String uriPattern) {
+			List<String> names = new ArrayList<>();
+			Matcher m = NAME_SPLAT_PATTERN.matcher(uriPattern);
+			while (m.find()) {
+				names.add(m.group(1));
+			}
+			m = NAME_PATTERN.matcher(NAME_SPLAT_PATTERN.matcher(uriPattern)
+			                                           .replaceAll(""));
+			while (m.find()) {
+				names.add(m.group(1));
 			}
+			return names.toArray(new String[names.size()]);
+		}
+
+		static Pattern compile(String uriPattern) {
+			String s = "^" + uriPattern;
+
+			Matcher m = NAME_SPLAT_PATTERN.matcher(s);
+			while (m.find()) {
+				String name = m.group(1);
+				s = m.replaceFirst(NAME_SPLAT_REPLACEMENT.replaceAll("%NAME%", name));
+				m.reset(s);
+			}
+
+			m = NAME_PATTERN.matcher(s);
+			while (m.find()) {
+				String name = m.group(1);
+				s = m.replaceFirst(NAME_REPLACEMENT.replaceAll("%NAME%", name));
+				m.reset(s);
+			}
+
+			s = FULL_SPLAT_PATTERN.matcher(s)
+			                      .replaceAll(FULL_SPLAT_REPLACEMENT);
+
+			return Pattern.compile(s + "$");
+		}
+	}
 
-			return pathParameters;
+	/**
+	 * The immutable path parameters of a matched {@link UriPathTemplate}, backed by the
+	 * arrays of its names and values
+	 */
+	static final class PathParameters extends AbstractMap<String, Object> {
+
+		final String[] names;
+		final Object[] values;
+
+		PathParameters(String[] names, Object[] values) {
+			this.names = names;
+			this.values = values;
 		}
 
-		private Matcher matcher(String uri) {
-			Matcher m = matchers.get(uri);
-			if (null == m) {
-				m = uriPattern.matcher(uri);
-				synchronized (matchers) {
-					matchers.put(uri, m);
+		@Override
+		public Object get(Object key) {
+			int index = indexOf(key);
+			return index != -1 ? values[index] : null;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return indexOf(key) != -1;
+		}
+
+		@Override
+		public int size() {
+			return names.length;
+		}
+
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			return new AbstractSet<Entry<String, Object>>() {
+				@Override
+				public Iterator<Entry<String, Object>> iterator() {
+					return new Iterator<Entry<String, Object>>() {
+						int index;
+
+						@Override
+						public boolean hasNext() {
+							return index < names.length;
+						}
+
+						@Override
+						public Entry<String, Object> next() {
+							if (index == names.length) {
+								throw new NoSuchElementException();
+							}
+							int i = index++;
+							return new SimpleImmutableEntry<>(names[i], values[i]);
+						}
+					};
 				}
-			}
-			return m;
+
+				@Override
+				public int size() {
+					return names.length;
+				}
+			};
 		}
 
+		final int indexOf(Object key) {
+			if (!(key instanceof CharSequence)) {
+				return -1;
+			}
+			for (int i = 0; i < names.length; i++) {
+				if (names[i].contentEquals((CharSequence) key)) {
+					return i;
+				}
+			}
+			return -1;
+		}
 	}
 
 	static final class HttpPrefixPredicate implements Predicate<HttpServerRequest> {
@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package reactor.ipc.netty.http.server;
+
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.ZlibEncoder;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.HttpContentCompressor;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+
+/**
+ * An {@link HttpContentCompressor} skipping partial responses, responses smaller than a
+ * given {@code Content-Length} or with an already compressed content type, and compressing
+ * with a {@link Deflater} reused by every response of the connection into pooled
+ * buffers. Raw {@link ByteBuf} body writes are compressed as http contents.
+ *
+ * @author Stephane Maldini
+ */
+final class HttpResponseCompressor extends HttpContentCompressor {
+
+	final int minResponseSize;
+
+	ChannelHandlerContext ctx;
+	Deflater              gzip;
+	Deflater              deflate;
+	byte[]                input;
+	byte[]                output;
+	boolean               compressing;
+
+	HttpResponseCompressor(int minResponseSize) {
+		this.minResponseSize = minResponseSize;
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		this.ctx = ctx;
+		super.handlerAdded(ctx);
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		super.handlerRemoved(ctx);
+		if (gzip != null) {
+			gzip.end();
+			gzip = null;
+		}
+		if (deflate != null) {
+			deflate.end();
+			deflate = null;
+		}
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+			throws Exception {
+		if (msg instanceof ByteBuf) {
+			msg = new DefaultHttpContent((ByteBuf) msg);
+		}
+		else if (msg instanceof HttpResponse) {
+			// set by beginEncode if this response is compressed
+			compressing = false;
+		}
+		super.write(ctx, msg, promise);
+	}
+
+	@Override
+	protected Result beginEncode(HttpResponse headers, String acceptEncoding)
+			throws Exception {
+		if (!isCompressible(headers)) {
+			return null;
+		}
+		ZlibWrapper wrapper = determineWrapper(acceptEncoding);
+		if (wrapper == null) {
+			return null;
+		}
+		Deflater deflater;
+		String encoding;
+		if (wrapper == ZlibWrapper.GZIP) {
+			if (gzip == null) {
+				gzip = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+			}
+			deflater = gzip;
+			encoding = "gzip";
+		}
+		else {
+			if (deflate == null) {
+				deflate = new Deflater(Deflater.DEFAULT_COMPRESSION, false);
+			}
+			deflater = deflate;
+			encoding = "deflate";
+		}
+		compressing = true;
+		return new Result(encoding,
+				new EmbeddedChannel(ctx.channel()
+				                       .id(),
+						ctx.channel()
+						   .metadata()
+						   .hasDisconnect(),
+						ctx.channel()
+						   .config(),
+						new ReusableDeflaterEncoder(this, deflater, wrapper)));
+	}
+
+	/**
+	 * Return true if the content of the response being written is compressed, its
+	 * headers having been written.
+	 *
+	 * @return true if the response being written is compressed
+	 */
+	final boolean isCompressing() {
+		return compressing;
+	}
+
+	/**
+	 * Return false if the given response is already encoded, smaller than the
+	 * minimum response size, of an already compressed content type or partial, the
+	 * {@code Content-Range} of a partial response describing the uncompressed bytes.
+	 *
+	 * @param headers the response to send
+	 *
+	 * @return true if the given response can be compressed
+	 */
+	final boolean isCompressible(HttpResponse headers) {
+		if (headers.headers()
+		           .contains(HttpHeaderNames.CONTENT_ENCODING)) {
+			return false;
+		}
+		if (isPartial(headers)) {
+			return false;
+		}
+		long length = HttpUtil.getContentLength(headers, -1L);
+		if (length >= 0 && length < minResponseSize) {
+			return false;
+		}
+		return !isCompressed(headers.headers()
+		                            .get(HttpHeaderNames.CONTENT_TYPE));
+	}
+
+	final byte[] input(int size) {
+		byte[] input = this.input;
+		if (input == null || input.length < size) {
+			input = new byte[Math.max(size, SCRATCH_SIZE)];
+			this.input = input;
+		}
+		return input;
+	}
+
+	final byte[] output() {
+		byte[] output = this.output;
+		if (output == null) {
+			output = new byte[SCRATCH_SIZE];
+			this.output = output;
+		}
+		return output;
+	}
+
+	static boolean isPartial(HttpResponse headers) {
+		if (headers.status()
+		           .code() == HttpResponseStatus.PARTIAL_CONTENT.code() || headers.headers()
+		                                                                   .contains(
+				                                                                   HttpHeaderNames.CONTENT_RANGE)) {
+			return true;
+		}
+		String contentType = headers.headers()
+		                            .get(HttpHeaderNames.CONTENT_TYPE);
+		return contentType != null && contentType.toLowerCase()
+		                                         .startsWith("multipart/byteranges");
+	}
+
+	static boolean isCompressed(String contentType) {
+		if (contentType == null) {
+			return false;
+		}
+		String type = contentType.toLowerCase();
+		if (type.startsWith("image/")) {
+			return !type.startsWith("image/svg");
+		}
+		return type.startsWith("video/") || type.startsWith("audio/") || type.startsWith(
+				"font/woff") || type.startsWith("application/zip") || type.startsWith(
+				"application/gzip") || type.startsWith("application/x-gzip") || type.startsWith(
+				"application/x-bzip2") || type.startsWith("application/x-7z-compressed");
+	}
+
+	static final int SCRATCH_SIZE = 8192;
+
+	/**
+	 * A {@link ZlibEncoder} compressing a single response with the connection
+	 * {@link Deflater}, reset once the response is complete
+	 */
+	static final class ReusableDeflaterEncoder extends ZlibEncoder {
+
+		final HttpResponseCompressor parent;
+		final Deflater               deflater;
+		final CRC32                  crc;
+
+		ChannelHandlerContext ctx;
+		boolean               headerWritten;
+		boolean               finished;
+
+		ReusableDeflaterEncoder(HttpResponseCompressor parent,
+				Deflater deflater,
+				ZlibWrapper wrapper) {
+			this.parent = parent;
+			this.deflater = deflater;
+			this.crc = wrapper == ZlibWrapper.GZIP ? new CRC32() : null;
+		}
+
+		@Override
+		public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+			this.ctx = ctx;
+		}
+
+		@Override
+		public boolean isClosed() {
+			return finished;
+		}
+
+		@Override
+		public ChannelFuture close() {
+			return close(ctx.newPromise());
+		}
+
+		@Override
+		public ChannelFuture close(ChannelPromise promise) {
+			return finish(ctx, promise);
+		}
+
+		@Override
+		public void close(ChannelHandlerContext ctx, ChannelPromise promise)
+				throws Exception {
+			finish(ctx, ctx.newPromise()).addListener(f -> ctx.close(promise));
+		}
+
+		@Override
+		protected ByteBuf allocateBuffer(ChannelHandlerContext ctx,
+				ByteBuf msg,
+				boolean preferDirect) throws Exception {
+			return ctx.alloc()
+			          .directBuffer((int) Math.ceil(msg.readableBytes() * 1.001) + 12 + GZIP_HEADER.length);
+		}
+
+		@Override
+		protected void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out)
+				throws Exception {
+			if (finished) {
+				out.writeBytes(in);
+				return;
+			}
+			int length = in.readableBytes();
+			if (length == 0) {
+				return;
+			}
+			writeHeader(out);
+			byte[] input;
+			int offset;
+			if (in.hasArray()) {
+				input = in.array();
+				offset = in.arrayOffset() + in.readerIndex();
+			}
+			else {
+				input = parent.input(length);
+				offset = 0;
+				in.getBytes(in.readerIndex(), input, 0, length);
+			}
+			in.skipBytes(length);
+			if (crc != null) {
+				crc.update(input, offset, length);
+			}
+			deflater.setInput(input, offset, length);
+			deflate(out, Deflater.SYNC_FLUSH);
+		}
+
+		final ChannelFuture finish(ChannelHandlerContext ctx, ChannelPromise promise) {
+			if (finished) {
+				promise.setSuccess();
+				return promise;
+			}
+			finished = true;
+			ByteBuf footer = ctx.alloc()
+			                    .directBuffer();
+			try {
+				writeHeader(footer);
+				deflater.finish();
+				while (!deflater.finished()) {
+					deflate(footer, Deflater.NO_FLUSH);
+				}
+				if (crc != null) {
+					int crcValue = (int) crc.getValue();
+					// ISIZE is the uncompressed size modulo 2^32, getTotalIn() overflows past 2GB
+					int uncompressedBytes = (int) (deflater.getBytesRead() & 0xFFFFFFFFL);
+					footer.writeIntLE(crcValue);
+					footer.writeIntLE(uncompressedBytes);
+				}
+			}
+			finally {
+				deflater.reset();
+			}
+			return ctx.writeAndFlush(footer, promise);
+		}
+
+		final void writeHeader(ByteBuf out) {
+			if (crc != null && !headerWritten) {
+				headerWritten = true;
+				out.writeBytes(GZIP_HEADER);
+			}
+		}
+
+		final void deflate(ByteBuf out, int flush) {
+			byte[] output = parent.output();
+			int n;
+			do {
+				n = deflater.deflate(output, 0, output.length, flush);
+				out.writeBytes(output, 0, n);
+			}
+			while (n == output.length);
+		}
+	}
+
+	static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty.http.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.netty.handler.codec.http.HttpMethod;
+
+/**
+ * An immutable index of the routes of a {@link DefaultHttpServerRoutes}. The URI
+ * templates of the {@link HttpPredicate} and the prefixes of the
+ * {@link HttpPredicate.HttpPrefixPredicate} are indexed into a radix trie per
+ * {@link HttpMethod} of literal characters, <code>{name}</code> captures and trailing
+ * <code>**</code> splats. Any other route condition is tested in registration order, so
+ * that the first registered route matching a request is always selected.
+ * <p>
+ * Selecting a route walks the trie along the request uri without allocating.
+ *
+ * @author Stephane Maldini
+ */
+final class HttpRouteTrie {
+
+	static final HttpRouteTrie EMPTY = new HttpRouteTrie(Collections.emptyList());
+
+	final Map<HttpMethod, Node>                      roots;
+	final Node                                       any;
+	final DefaultHttpServerRoutes.HttpRouteHandler[] fallbacks;
+
+	/**
+	 * Index the given routes
+	 *
+	 * @param routes the routes in registration order
+	 */
+	HttpRouteTrie(List<DefaultHttpServerRoutes.HttpRouteHandler> routes) {
+		Map<HttpMethod, Node> roots = new HashMap<>();
+		Node any = null;
+		List<DefaultHttpServerRoutes.HttpRouteHandler> fallbacks = new ArrayList<>();
+
+		for (DefaultHttpServerRoutes.HttpRouteHandler route : routes) {
+			HttpMethod method;
+			if (route.condition instanceof HttpPredicate) {
+				HttpPredicate p = (HttpPredicate) route.condition;
+				if (p.protocol != null || p.uri == null || !isIndexable(p.uri)) {
+					fallbacks.add(route);
+					continue;
+				}
+				method = p.method;
+			}
+			else if (route.condition instanceof HttpPredicate.HttpPrefixPredicate) {
+				method = ((HttpPredicate.HttpPrefixPredicate) route.condition).method;
+			}
+			else {
+				fallbacks.add(route);
+				continue;
+			}
+
+			Node root;
+			if (method == null) {
+				root = any != null ? any : (any = new Node(""));
+			}
+			else {
+				root = roots.computeIfAbsent(method, m -> new Node(""));
+			}
+
+			if (route.condition instanceof HttpPredicate) {
+				insertTemplate(root, ((HttpPredicate) route.condition).uri, route);
+			}
+			else {
+				insertLiteral(root,
+						((HttpPredicate.HttpPrefixPredicate) route.condition).prefix).splat(
+						route);
+			}
+		}
+
+		for (Node root : roots.values()) {
+			root.seal();
+		}
+		if (any != null) {
+			any.seal();
+		}
+
+		this.roots = roots;
+		this.any = any;
+		this.fallbacks = fallbacks.toArray(new DefaultHttpServerRoutes.HttpRouteHandler[fallbacks.size()]);
+	}
+
+	/**
+	 * Select the first registered route matching the given request
+	 *
+	 * @param request the request to route
+	 *
+	 * @return the matching route or null
+	 */
+	DefaultHttpServerRoutes.HttpRouteHandler select(HttpServerRequest request) {
+		DefaultHttpServerRoutes.HttpRouteHandler selected = null;
+		if (any != null || !roots.isEmpty()) {
+			String uri = request.uri();
+			Node root = roots.get(request.method());
+			if (root != null) {
+				selected = find(root, uri, 0, null);
+			}
+			if (any != null) {
+				selected = find(any, uri, 0, selected);
+			}
+		}
+		for (DefaultHttpServerRoutes.HttpRouteHandler route : fallbacks) {
+			if (selected != null && route.index > selected.index) {
+				break;
+			}
+			if (route.test(request)) {
+				return route;
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Find the first registered route matching the uri remaining from the given
+	 * position below the given node, whose label has been consumed.
+	 *
+	 * @param node the current node
+	 * @param uri the request uri
+	 * @param position the uri position
+	 * @param selected the first registered route matching so far or null
+	 *
+	 * @return the first registered route matching so far or null
+	 */
+	static DefaultHttpServerRoutes.HttpRouteHandler find(Node node,
+			String uri,
+			int position,
+			DefaultHttpServerRoutes.HttpRouteHandler selected) {
+		if (selected != null && node.min > selected.index) {
+			return selected;
+		}
+		if (node.splat != null && (selected == null || node.splat.index < selected.index)) {
+			selected = node.splat;
+		}
+		int length = uri.length();
+		if (position == length) {
+			if (node.route != null && (selected == null || node.route.index < selected.index)) {
+				selected = node.route;
+			}
+		}
+		else {
+			Node child = node.child(uri.charAt(position));
+			if (child != null && uri.regionMatches(position,
+					child.label,
+					0,
+					child.label.length())) {
+				selected = find(child, uri, position + child.label.length(), selected);
+			}
+		}
+		if (node.variable != null) {
+			int end = position;
+			char c;
+			while (end < length && (c = uri.charAt(end)) != '/' && c != '.') {
+				end++;
+			}
+			selected = find(node.variable, uri, end, selected);
+		}
+		return selected;
+	}
+
+	/**
+	 * Return true if the given URI template only contains literals, <code>{name}</code>
+	 * captures followed by a <code>/</code>, a <code>.</code> or the template end,
+	 * and a trailing <code>**</code> or <code>{name}**</code> splat.
+	 *
+	 * @param template the URI template
+	 *
+	 * @return true if the given URI template can be indexed
+	 */
+	static boolean isIndexable(String template) {
+		int length = template.length();
+		int i = 0;
+		while (i < length) {
+			char c = template.charAt(i);
+			if (c == '{') {
+				int close = template.indexOf('}', i);
+				int slash = template.indexOf('/', i);
+				if (close < i + 2 || (slash != -1 && slash < close)) {
+					return false;
+				}
+				i = close + 1;
+				if (template.startsWith("**", i)) {
+					return i + 2 == length;
+				}
+				if (i < length && (c = template.charAt(i)) != '/' && c != '.') {
+					return false;
+				}
+			}
+			else if (c == '*') {
+				return template.startsWith("**", i) && i + 2 == length;
+			}
+			else if (HttpPredicate.UriPathTemplate.META.indexOf(c) != -1) {
+				return false;
+			}
+			else {
+				i++;
+			}
+		}
+		return true;
+	}
+
+	static void insertTemplate(Node root,
+			String template,
+			DefaultHttpServerRoutes.HttpRouteHandler route) {
+		Node node = root;
+		int length = template.length();
+		int literal = 0;
+		int i = 0;
+		while (i < length) {
+			char c = template.charAt(i);
+			if (c == '{') {
+				node = insertLiteral(node, template.substring(literal, i));
+				i = template.indexOf('}', i) + 1;
+				if (template.startsWith("**", i)) {
+					node.splat(route);
+					return;
+				}
+				if (node.variable == null) {
+					node.variable = new Node("");
+				}
+				node = node.variable;
+				literal = i;
+			}
+			else if (c == '*') {
+				insertLiteral(node, template.substring(literal, i)).splat(route);
+				return;
+			}
+			else {
+				i++;
+			}
+		}
+		insertLiteral(node, template.substring(literal)).route(route);
+	}
+
+	static Node insertLiteral(Node node, String literal) {
+		int i = 0;
+		while (i < literal.length()) {
+			int slot = node.slot(literal.charAt(i));
+			if (slot < 0) {
+				Node child = new Node(literal.substring(i));
+				node.add(-slot - 1, child);
+				return child;
+			}
+			Node child = node.children[slot];
+			String label = child.label;
+			int common = 1;
+			while (common < label.length() && i + common < literal.length() && label.charAt(
+					common) == literal.charAt(i + common)) {
+				common++;
+			}
+			if (common < label.length()) {
+				Node split = new Node(label.substring(0, common));
+				child.label = label.substring(common);
+				split.add(0, child);
+				node.children[slot] = split;
+				child = split;
+			}
+			i += common;
+			node = child;
+		}
+		return node;
+	}
+
+	/**
+	 * A trie node, reached by consuming its literal label or, for a variable node, a
+	 * run of characters other than <code>/</code> and <code>.</code>
+	 */
+	static final class Node {
+
+		static final char[] NO_FIRSTS   = new char[0];
+		static final Node[] NO_CHILDREN = new Node[0];
+
+		String label;
+		char[] firsts   = NO_FIRSTS;
+		Node[] children = NO_CHILDREN;
+		Node   variable;
+
+		/**
+		 * The route whose template ends at this node
+		 */
+		DefaultHttpServerRoutes.HttpRouteHandler route;
+		/**
+		 * The route whose template ends with a splat at this node
+		 */
+		DefaultHttpServerRoutes.HttpRouteHandler splat;
+		/**
+		 * The lowest registration index of the routes indexed below this node
+		 */
+		int min = Integer.MAX_VALUE;
+
+		Node(String label) {
+			this.label = label;
+		}
+
+		final Node child(char first) {
+			int slot = Arrays.binarySearch(firsts, first);
+			return slot < 0 ? null : children[slot];
+		}
+
+		final int slot(char first) {
+			return Arrays.binarySearch(firsts, first);
+		}
+
+		final void add(int slot, Node child) {
+			char[] firsts = new char[this.firsts.length + 1];
+			Node[] children = new Node[this.children.length + 1];
+			System.arraycopy(this.firsts, 0, firsts, 0, slot);
+			System.arraycopy(this.children, 0, children, 0, slot);
+			firsts[slot] = child.label.charAt(0);
+			children[slot] = child;
+			System.arraycopy(this.firsts, slot, firsts, slot + 1, this.firsts.length - slot);
+			System.arraycopy(this.children,
+					slot,
+					children,
+					slot + 1,
+					this.children.length - slot);
+			this.firsts = firsts;
+			this.children = children;
+		}
+
+		final void route(DefaultHttpServerRoutes.HttpRouteHandler route) {
+			if (this.route == null) {
+				this.route = route;
+			}
+		}
+
+		final void splat(DefaultHttpServerRoutes.HttpRouteHandler route) {
+			if (this.splat == null) {
+				this.splat = route;
+			}
+		}
+
+		final int seal() {
+			int min = Integer.MAX_VALUE;
+			if (route != null) {
+				min = route.index;
+			}
+			if (splat != null) {
+				min = Math.min(min, splat.index);
+			}
+			if (variable != null) {
+				min = Math.min(min, variable.seal());
+			}
+			for (Node child : children) {
+				min = Math.min(min, child.seal());
+			}
+			return this.min = min;
+		}
+	}
+}
@@ -146,7 +146,10 @@ public final class HttpServer
 			return ContextHandler.newServerContext(sink,
 					options,
 					loggingHandler,
-					(ch, c) -> HttpServerOperations.bindHttp(ch, handler, c));
+					(ch, c) -> HttpServerOperations.bindHttp(ch,
+							handler,
+							c,
+							HttpServer.this.options));
 		}
 
 		@Override
@@ -19,23 +19,27 @@ package reactor.ipc.netty.http.server;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.text.ParseException;
 import java.util.Date;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.DefaultHttpResponse;
-import io.netty.handler.codec.http.EmptyHttpHeaders;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpContentEncoder;
+import io.netty.handler.codec.http.HttpHeaderDateFormat;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaderValues;
 import io.netty.handler.codec.http.HttpHeaders;
@@ -54,6 +58,7 @@ import io.netty.handler.codec.http.cookie.Cookie;
 import io.netty.handler.codec.http.cookie.ServerCookieEncoder;
 import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
 import io.netty.util.AsciiString;
+import io.netty.util.CharsetUtil;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -80,16 +85,20 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 
 	static HttpServerOperations bindHttp(Channel channel,
 			BiFunction<? super HttpServerRequest, ? super HttpServerResponse, ? extends Publisher<Void>> handler,
-			ContextHandler<?> context) {
-		return new HttpServerOperations(channel, handler, context);
+			ContextHandler<?> context,
+			HttpServerOptions options) {
+		return new HttpServerOperations(channel, handler, context, options);
 	}
 
-	final HttpResponse nettyResponse;
-	final HttpHeaders  responseHeaders;
+	final HttpResponse      nettyResponse;
+	final HttpHeaders       responseHeaders;
+	final HttpServerOptions options;
 
 	Cookies                                       cookieHolder;
 	HttpRequest                                   nettyRequest;
 	Function<? super String, Map<String, Object>> paramsResolver;
+	Map<String, Object>                           params;
+	HttpPipeliningHandler                         pipelining;
 
 	HttpServerOperations(Channel ch, HttpServerOperations replaced) {
 		super(ch, replaced);
@@ -97,16 +106,20 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 		this.responseHeaders = replaced.responseHeaders;
 		this.nettyResponse = replaced.nettyResponse;
 		this.paramsResolver = replaced.paramsResolver;
+		this.params = replaced.params;
+		this.options = replaced.options;
 	}
 
 	HttpServerOperations(Channel ch,
 			BiFunction<? super HttpServerRequest, ? super HttpServerResponse, ? extends Publisher<Void>> handler,
-			ContextHandler<?> context) {
+			ContextHandler<?> context,
+			HttpServerOptions options) {
 		super(ch, handler, context);
+		this.options = options;
 		this.nettyResponse =
 				new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
 		this.responseHeaders = nettyResponse.headers();
-		responseHeaders.add(HttpHeaderNames.DATE, new Date());
+		responseHeaders.add(HttpHeaderNames.DATE, currentDate());
 	}
 
 	@Override
@@ -159,7 +172,10 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 
 	@Override
 	public Map<CharSequence, Set<Cookie>> cookies() {
-		if (cookieHolder != null) {
+		if (nettyRequest != null) {
+			if (cookieHolder == null) {
+				cookieHolder = Cookies.newServerRequestHolder(requestHeaders());
+			}
 			return cookieHolder.getCachedCookies();
 		}
 		throw new IllegalStateException("request not parsed");
@@ -171,12 +187,24 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 		return this;
 	}
 
+	@Override
+	public HttpServerResponse flushBoundary() {
+		super.flushBoundary();
+		return this;
+	}
+
 	@Override
 	public HttpServerResponse flushEach() {
 		super.flushEach();
 		return this;
 	}
 
+	@Override
+	public HttpServerResponse flushLoop() {
+		super.flushLoop();
+		return this;
+	}
+
 	@Override
 	public HttpServerResponse header(CharSequence name, CharSequence value) {
 		if (!hasSentHeaders()) {
@@ -232,21 +260,23 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 	@Override
 	public Object param(CharSequence key) {
 		Objects.requireNonNull(key, "key");
-		Map<String, Object> params = null;
-		if (paramsResolver != null) {
-			params = this.paramsResolver.apply(uri());
-		}
+		Map<String, Object> params = params();
 		return null != params ? params.get(key) : null;
 	}
 
 	@Override
 	public Map<String, Object> params() {
-		return null != paramsResolver ? paramsResolver.apply(uri()) : null;
+		// resolved once per request, the uri does not change
+		if (params == null && paramsResolver != null) {
+			params = paramsResolver.apply(uri());
+		}
+		return params;
 	}
 
 	@Override
 	public HttpServerRequest paramsResolver(Function<? super String, Map<String, Object>> headerResolver) {
 		this.paramsResolver = headerResolver;
+		this.params = null;
 		return this;
 	}
 
@@ -258,7 +288,7 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 		//       No need to notify the upstream handlers - just log.
 		//       If decoding a response, just throw an error.
 		if (HttpUtil.is100ContinueExpected(nettyRequest)) {
-			return FutureMono.deferFuture(() -> channel().writeAndFlush(CONTINUE))
+			return FutureMono.deferFuture(() -> sendAndFlush(CONTINUE))
 			                 .thenMany(super.receiveObject());
 		}
 		else {
@@ -287,12 +317,8 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 		if (markHeadersAsSent()) {
 			disableChunkedTransfer();
 			responseHeaders.setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
-			return FutureMono.deferFuture(() -> channel().writeAndFlush(new DefaultFullHttpResponse(
-					version(),
-					status(),
-					EMPTY_BUFFER,
-					responseHeaders,
-					EmptyHttpHeaders.INSTANCE)));
+			// release() ends the response with the last frame
+			return FutureMono.deferFuture(() -> sendAndFlush(nettyResponse));
 		}
 		else {
 			return Mono.empty();
@@ -301,8 +327,12 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 
 	@Override
 	public Mono<Void> sendFile(Path file) {
+		long length;
+		long lastModified;
 		try {
-			return sendFile(file, 0L, Files.size(file));
+			length = Files.size(file);
+			lastModified = Files.getLastModifiedTime(file)
+			                    .toMillis();
 		}
 		catch (IOException e) {
 			if(log.isDebugEnabled()){
@@ -310,6 +340,116 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 			}
 			return sendNotFound();
 		}
+
+		if (hasSentHeaders() || nettyResponse.status()
+		                                     .code() != HttpResponseStatus.OK.code()) {
+			return sendFile(file, 0L, length);
+		}
+
+		responseHeaders.set(HttpHeaderNames.ACCEPT_RANGES, HttpHeaderValues.BYTES);
+		if (!responseHeaders.contains(HttpHeaderNames.LAST_MODIFIED)) {
+			responseHeaders.set(HttpHeaderNames.LAST_MODIFIED, new Date(lastModified));
+		}
+
+		String range = requestHeaders().get(HttpHeaderNames.RANGE);
+		if (range == null || !isIfRangeFresh(lastModified)) {
+			return sendFile(file, 0L, length);
+		}
+
+		long[] ranges = ByteRanges.parse(range, length);
+		if (ranges == null) {
+			return sendFile(file, 0L, length);
+		}
+		if (ranges.length == 0) {
+			responseHeaders.set(HttpHeaderNames.CONTENT_RANGE, "bytes */" + length);
+			return status(HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE).send();
+		}
+		status(HttpResponseStatus.PARTIAL_CONTENT);
+		if (ranges.length == 2) {
+			responseHeaders.set(HttpHeaderNames.CONTENT_RANGE,
+					contentRange(ranges[0], ranges[1], length));
+			return sendFile(file, ranges[0], ranges[1] - ranges[0] + 1);
+		}
+		return sendFileRanges(file, ranges, length);
+	}
+
+	/**
+	 * Send each range as its own part of a {@code multipart/byteranges} body, each
+	 * part content being written with {@link #sendFile(Path, long, long)}.
+	 *
+	 * @param file the file to send ranges from
+	 * @param ranges the flattened inclusive ranges
+	 * @param length the file length
+	 *
+	 * @return a {@link Mono} successful on last part flush or failing
+	 */
+	final Mono<Void> sendFileRanges(Path file, long[] ranges, long length) {
+		String boundary = Long.toHexString(ThreadLocalRandom.current()
+		                                                    .nextLong());
+		String contentType = responseHeaders.get(HttpHeaderNames.CONTENT_TYPE,
+				"application/octet-stream");
+		String[] partHeaders = new String[ranges.length / 2];
+		String end = "\r\n--" + boundary + "--\r\n";
+
+		long contentLength = end.length();
+		for (int i = 0; i < ranges.length; i += 2) {
+			String partHeader = "\r\n--" + boundary + "\r\n" +
+					HttpHeaderNames.CONTENT_TYPE + ": " + contentType + "\r\n" +
+					HttpHeaderNames.CONTENT_RANGE + ": " +
+					contentRange(ranges[i], ranges[i + 1], length) + "\r\n\r\n";
+			partHeaders[i / 2] = partHeader;
+			contentLength += partHeader.length() + ranges[i + 1] - ranges[i] + 1;
+		}
+
+		responseHeaders.set(HttpHeaderNames.CONTENT_TYPE,
+				"multipart/byteranges; boundary=" + boundary);
+		responseHeaders.remove(HttpHeaderNames.TRANSFER_ENCODING);
+		HttpUtil.setContentLength(nettyResponse, contentLength);
+
+		Mono<Void> parts = sendHeaders();
+		for (int i = 0; i < ranges.length; i += 2) {
+			String partHeader = partHeaders[i / 2];
+			long position = ranges[i];
+			long count = ranges[i + 1] - ranges[i] + 1;
+			// the part header write completes with the flush of its file content
+			parts = parts.then(() -> Flux.merge(FutureMono.from(sendNext(Unpooled.copiedBuffer(
+					partHeader,
+					CharsetUtil.US_ASCII))), sendFile(file, position, count))
+			                             .then());
+		}
+		return parts.then(() -> FutureMono.from(sendAndFlush(Unpooled.copiedBuffer(
+				end,
+				CharsetUtil.US_ASCII))));
+	}
+
+	/**
+	 * Return true if the request has no {@code If-Range} or if it matches the given
+	 * last modification time, entity tags are never matched.
+	 *
+	 * @param lastModified the file last modification time in milliseconds
+	 *
+	 * @return true if a {@code Range} request can be honored
+	 */
+	final boolean isIfRangeFresh(long lastModified) {
+		String ifRange = requestHeaders().get(HttpHeaderNames.IF_RANGE);
+		if (ifRange == null) {
+			return true;
+		}
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+			return false;
+		}
+		try {
+			return HttpHeaderDateFormat.get()
+			                           .parse(ifRange)
+			                           .getTime() / 1000L == lastModified / 1000L;
+		}
+		catch (ParseException pe) {
+			return false;
+		}
+	}
+
+	static String contentRange(long first, long last, long length) {
+		return "bytes " + first + "-" + last + "/" + length;
 	}
 
 	@Override
@@ -377,23 +517,60 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 
 	@Override
 	protected void onChannelActive(ChannelHandlerContext ctx) {
-
-		addChannelHandler(NettyHandlerNames.HttpCodecHandler, new HttpServerCodec());
-		if (ctx.pipeline()
-		       .context(NettyHandlerNames.HttpKeepAlive) == null) {
+		// HTTP/2 stream pipelines are prepared with their stream codec by
+		// Http2ServerSupport, each stream is a single exchange
+		if (!isHttp2Stream()) {
+			// the codec outlives a single exchange and is reused by the next
+			// keep-alive request, release() always ends the response with a
+			// LastHttpContent so the encoder is back to its initial state
+			if (ctx.pipeline()
+			       .context(NettyHandlerNames.HttpCodecHandler) == null) {
+				ctx.pipeline()
+				   .addBefore(NettyHandlerNames.ReactiveBridge,
+						   NettyHandlerNames.HttpCodecHandler,
+						   new HttpServerCodec());
+				if (options.http2()) {
+					Http2ServerSupport.configure(ctx.pipeline(), parentContext());
+				}
+			}
+			if (ctx.pipeline()
+			       .context(NettyHandlerNames.HttpKeepAlive) == null) {
+				ctx.pipeline()
+				   .addBefore(NettyHandlerNames.ReactiveBridge,
+						   NettyHandlerNames.HttpKeepAlive,
+						   new HttpServerKeepAliveHandler());
+			}
+			pipelining = (HttpPipeliningHandler) ctx.pipeline()
+			                                        .get(NettyHandlerNames.HttpPipelining);
+			if (pipelining == null) {
+				pipelining = new HttpPipeliningHandler(options.pipelining());
+				ctx.pipeline()
+				   .addBefore(NettyHandlerNames.ReactiveBridge,
+						   NettyHandlerNames.HttpPipelining,
+						   pipelining);
+			}
+		}
+		int minCompressionResponseSize = options.minCompressionResponseSize();
+		if (minCompressionResponseSize >= 0 && ctx.pipeline()
+		                                         .context(NettyHandlerNames.HttpCompressor) == null) {
 			ctx.pipeline()
 			   .addBefore(NettyHandlerNames.ReactiveBridge,
-					   NettyHandlerNames.HttpKeepAlive,
-					   new HttpServerKeepAliveHandler());
+					   NettyHandlerNames.HttpCompressor,
+					   new HttpResponseCompressor(minCompressionResponseSize));
+		}
+		// requests decoded ahead of this exchange are received first
+		if (pipelining == null || pipelining.drain()) {
+			ctx.read();
 		}
-		ctx.read();
 	}
 
 	@Override
 	protected void onInboundNext(ChannelHandlerContext ctx, Object msg) {
 		if (msg instanceof HttpRequest) {
 			nettyRequest = (HttpRequest) msg;
-			cookieHolder = Cookies.newServerRequestHolder(requestHeaders());
+			if (pipelining != null) {
+				pipelining.onRequest(this);
+			}
 
 			if (nettyRequest.decoderResult()
 			                .isFailure()) {
@@ -428,6 +605,9 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 				else {
 					onInboundComplete();
 				}
+				if (pipelining != null && pipelining.onRequestReceived(this)) {
+					pipelineNext();
+				}
 				return;
 			}
 			if (isTerminated()) {
@@ -444,7 +624,8 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 		if (log.isDebugEnabled()) {
 			log.debug("User Handler requesting a last HTTP frame write", formatName());
 		}
-		if (markReceiving() || isWebsocket()) {
+		if (markReceiving() || isWebsocket() || (pipelining != null && pipelining.isReceived(
+				this))) {
 			release();
 		}
 		else {
@@ -467,19 +648,44 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 					HttpResponseStatus.INTERNAL_SERVER_ERROR);
 			response.headers()
 			        .setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
-			channel().writeAndFlush(response)
-			         .addListener(r -> onChannelTerminate());
+			sendAndFlush(response).addListener(r -> onChannelTerminate());
 			return;
 		}
 		log.error("Error processing response. Sending last HTTP frame", err);
 
-		if (HttpUtil.isContentLengthSet(nettyResponse)) {
-			channel().writeAndFlush(EMPTY_BUFFER)
-			         .addListener(r -> onChannelTerminate());
-			return;
+		sendAndFlush(LastHttpContent.EMPTY_LAST_CONTENT).addListener(r -> onChannelTerminate());
+	}
+
+	@Override
+	protected void onChannelTerminate() {
+		HttpServerOperations next =
+				pipelining != null ? pipelining.onTerminated(this) : null;
+		super.onChannelTerminate();
+		if (next != null) {
+			next.pipelineNext();
+		}
+	}
+
+	@Override
+	protected void onWritabilityChanged() {
+		// visible to HttpPipeliningHandler which resumes the pipelined exchanges
+		super.onWritabilityChanged();
+	}
+
+	@Override
+	protected ChannelFuture sendNext(Object data) {
+		if (pipelining != null) {
+			return pipelining.write(this, data, false);
 		}
-		channel().writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT)
-		         .addListener(r -> onChannelTerminate());
+		return super.sendNext(data);
+	}
+
+	@Override
+	protected ChannelFuture sendAndFlush(Object data) {
+		if (pipelining != null) {
+			return pipelining.write(this, data, true);
+		}
+		return super.sendAndFlush(data);
 	}
 
 	@Override
@@ -487,40 +693,59 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 		return nettyResponse;
 	}
 
+	@Override
+	protected boolean supportsFileRegion() {
+		return !isHttp2Stream() && super.supportsFileRegion();
+	}
+
+	/**
+	 * The compressor decides for each response once its headers are written, only the
+	 * responses it compresses are encoded.
+	 *
+	 * @return true if this response is encoded
+	 */
+	@Override
+	protected boolean isContentEncoded() {
+		HttpContentEncoder encoder = channel().pipeline()
+		                                      .get(HttpContentEncoder.class);
+		if (encoder instanceof HttpResponseCompressor && hasSentHeaders()) {
+			return ((HttpResponseCompressor) encoder).isCompressing();
+		}
+		return encoder != null;
+	}
+
+	/**
+	 * Return true if this exchange is carried by an HTTP/2 stream channel
+	 *
+	 * @return true if this exchange is carried by an HTTP/2 stream channel
+	 */
+	final boolean isHttp2Stream() {
+		return channel().pipeline()
+		                .context(NettyHandlerNames.Http2StreamCodec) != null;
+	}
+
 	final void release() {
 		if (log.isDebugEnabled()) {
 			log.debug("Last HTTP response frame");
 		}
-		ChannelFuture f = null;
+		ChannelFuture f;
 		if (!isWebsocket()) {
 			if (markHeadersAsSent()) {
 				if (!HttpUtil.isTransferEncodingChunked(nettyResponse) && !HttpUtil.isContentLengthSet(
 						nettyResponse)) {
 					HttpUtil.setContentLength(nettyResponse, 0);
 				}
-				if (HttpUtil.isContentLengthSet(nettyResponse)) {
-					channel().writeAndFlush(nettyResponse);
-				}
-				else {
-					channel().write(nettyResponse);
-					f = channel().writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
-				}
-			}
-			else if (!HttpUtil.isContentLengthSet(nettyResponse)) {
-				f = channel().writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+				sendNext(nettyResponse);
 			}
+			f = sendAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
 
 			if (isKeepAlive()) {
-				if (f != null) {
-					f.addListener(s -> {
-						if (!s.isSuccess() && log.isDebugEnabled()) {
-							log.error("Failed flushing last frame", s.cause());
-						}
-						super.onChannelTerminate();
-					});
-					return;
-				}
-				super.onChannelTerminate();
+				f.addListener(s -> {
+					if (!s.isSuccess() && log.isDebugEnabled()) {
+						log.error("Failed flushing last frame", s.cause());
+					}
+					onChannelTerminate();
+				});
 			}
 		}
 		else {
@@ -529,7 +754,7 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 				if (!s.isSuccess() && log.isDebugEnabled()) {
 					log.error("Failed flushing last frame", s.cause());
 				}
-				super.onChannelTerminate();
+				onChannelTerminate();
 			});
 		}
 	}
@@ -542,6 +767,9 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 		if (isDisposed()) {
 			return Mono.error(new IllegalStateException("This outbound is not active " + "anymore"));
 		}
+		if (pipelining != null && !pipelining.isHead(this)) {
+			return Mono.error(new IllegalStateException("Cannot upgrade a pipelined " + "request to websocket"));
+		}
 		if (markHeadersAsSent()) {
 			HttpServerWSOperations ops =
 					new HttpServerWSOperations(url, protocols, this, textPlain);
@@ -560,6 +788,37 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 		return Mono.error(new IllegalStateException("Failed to upgrade to websocket"));
 	}
 
+	/**
+	 * Return the current {@link HttpHeaderNames#DATE} value, formatted at most once per
+	 * second and shared by every response emitted within that second.
+	 *
+	 * @return the current date header value
+	 */
+	static AsciiString currentDate() {
+		long second = System.currentTimeMillis() / 1000L;
+		DateHeader date = dateHeader;
+		if (date == null || date.second != second) {
+			date = new DateHeader(second,
+					new AsciiString(HttpHeaderDateFormat.get()
+					                                    .format(new Date(second * 1000L))));
+			dateHeader = date;
+		}
+		return date.value;
+	}
+
+	static final class DateHeader {
+
+		final long        second;
+		final AsciiString value;
+
+		DateHeader(long second, AsciiString value) {
+			this.second = second;
+			this.value = value;
+		}
+	}
+
+	static volatile DateHeader dateHeader;
+
 	static final Logger log = Loggers.getLogger(HttpServerOperations.class);
 
 	final static AsciiString      EVENT_STREAM = new AsciiString("text/event-stream");
@@ -28,6 +28,7 @@ import io.netty.channel.group.ChannelGroup;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.util.AttributeKey;
+import reactor.ipc.netty.channel.FlushMode;
 import reactor.ipc.netty.resources.LoopResources;
 import reactor.ipc.netty.options.ServerOptions;
 
@@ -46,11 +47,49 @@ public final class HttpServerOptions extends ServerOptions {
 		return new HttpServerOptions();
 	}
 
+	int     minCompressionResponseSize = -1;
+	boolean http2;
+	int     pipelining                 = 1;
+
 	HttpServerOptions(){
 	}
 
 	HttpServerOptions(HttpServerOptions options){
 		super(options);
+		this.minCompressionResponseSize = options.minCompressionResponseSize;
+		this.http2 = options.http2;
+		this.pipelining = options.pipelining;
+	}
+
+	/**
+	 * Enable GZIP or DEFLATE response compression, negotiated with the request
+	 * {@code Accept-Encoding} header. Responses with a known {@code Content-Length}
+	 * below the given size and responses with an already compressed
+	 * {@code Content-Type} (images, audio, video, archives) are left untouched, streamed
+	 * responses without {@code Content-Length} are always compressed.
+	 *
+	 * @param minResponseSize the minimum response size in bytes to compress, 0 to
+	 * compress every response
+	 *
+	 * @return {@literal this}
+	 */
+	public HttpServerOptions compress(int minResponseSize) {
+		if (minResponseSize < 0) {
+			throw new IllegalArgumentException("minimum compression response size must " +
+					"be positive, was: " + minResponseSize);
+		}
+		this.minCompressionResponseSize = minResponseSize;
+		return this;
+	}
+
+	/**
+	 * Return the minimum response size in bytes to compress, or -1 if response
+	 * compression is disabled.
+	 *
+	 * @return the minimum response size to compress
+	 */
+	public int minCompressionResponseSize() {
+		return minCompressionResponseSize;
 	}
 
 	@Override
@@ -77,6 +116,12 @@ public final class HttpServerOptions extends ServerOptions {
 		return this;
 	}
 
+	@Override
+	public HttpServerOptions flushMode(FlushMode flushMode) {
+		super.flushMode(flushMode);
+		return this;
+	}
+
 	@Override
 	public HttpServerOptions duplicate() {
 		return new HttpServerOptions(this);
@@ -88,6 +133,65 @@ public final class HttpServerOptions extends ServerOptions {
 		return this;
 	}
 
+	/**
+	 * Enable HTTP/2 alongside HTTP/1.1. Cleartext connections switch to HTTP/2 when
+	 * they start with the HTTP/2 connection preface (prior knowledge) or send an
+	 * {@code Upgrade: h2c} request. Secured connections switch to HTTP/2 when
+	 * {@code h2} is negotiated with ALPN, which requires an {@link SslContext}
+	 * advertising {@code h2} and {@code http/1.1} application protocols.
+	 * <p>
+	 * Each HTTP/2 stream is served as a single request/response exchange by the same
+	 * handler as HTTP/1.1 requests, reading a stream is driven by the request body
+	 * demand and replenishes its flow control window.
+	 *
+	 * @param enabled true to enable HTTP/2
+	 *
+	 * @return {@literal this}
+	 */
+	public HttpServerOptions http2(boolean enabled) {
+		this.http2 = enabled;
+		return this;
+	}
+
+	/**
+	 * Return true if HTTP/2 is enabled.
+	 *
+	 * @return true if HTTP/2 is enabled
+	 */
+	public boolean http2() {
+		return http2;
+	}
+
+	/**
+	 * Set the maximum number of HTTP/1.1 requests pipelined on a connection which are
+	 * handled concurrently. The requests of a connection are always answered in order,
+	 * the responses of the requests handled behind the first one are buffered until
+	 * every previous response has been written. Defaults to 1, handling the pipelined
+	 * requests one after the other.
+	 *
+	 * @param depth the maximum number of requests of a connection handled concurrently
+	 *
+	 * @return {@literal this}
+	 */
+	public HttpServerOptions pipelining(int depth) {
+		if (depth < 1) {
+			throw new IllegalArgumentException("pipelining depth must be strictly " +
+					"positive, was: " + depth);
+		}
+		this.pipelining = depth;
+		return this;
+	}
+
+	/**
+	 * Return the maximum number of HTTP/1.1 requests pipelined on a connection which are
+	 * handled concurrently.
+	 *
+	 * @return the maximum number of pipelined requests handled concurrently
+	 */
+	public int pipelining() {
+		return pipelining;
+	}
+
 	@Override
 	public HttpServerOptions listen(String host, int port) {
 		super.listen(host, port);
@@ -112,6 +216,12 @@ public final class HttpServerOptions extends ServerOptions {
 		return this;
 	}
 
+	@Override
+	public HttpServerOptions inboundQueueCapacity(int inboundQueueCapacity) {
+		super.inboundQueueCapacity(inboundQueueCapacity);
+		return this;
+	}
+
 	@Override
 	public HttpServerOptions onChannelInit(Predicate<? super Channel> onChannelInit) {
 		super.onChannelInit(onChannelInit);
@@ -136,6 +246,12 @@ public final class HttpServerOptions extends ServerOptions {
 		return this;
 	}
 
+	@Override
+	public HttpServerOptions outboundPrefetch(int outboundPrefetch) {
+		super.outboundPrefetch(outboundPrefetch);
+		return this;
+	}
+
 	@Override
 	public HttpServerOptions preferNative(boolean preferNative) {
 		super.preferNative(preferNative);
@@ -171,4 +287,10 @@ public final class HttpServerOptions extends ServerOptions {
 		super.sslSelfSigned();
 		return this;
 	}
+
+	@Override
+	public HttpServerOptions writeCoalescing(int threshold, int bufferSize) {
+		super.writeCoalescing(threshold, bufferSize);
+		return this;
+	}
 }
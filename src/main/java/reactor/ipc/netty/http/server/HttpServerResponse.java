@@ -51,9 +51,15 @@ public interface HttpServerResponse extends HttpOutbound {
 	@Override
 	HttpServerResponse disableChunkedTransfer();
 
+	@Override
+	HttpServerResponse flushBoundary();
+
 	@Override
 	HttpServerResponse flushEach();
 
+	@Override
+	HttpServerResponse flushLoop();
+
 	@Override
 	HttpServerResponse header(CharSequence name, CharSequence value);
 
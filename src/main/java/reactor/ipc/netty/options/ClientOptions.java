@@ -17,6 +17,7 @@
 package reactor.ipc.netty.options;
 
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -25,6 +26,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.pool.ChannelPool;
@@ -235,12 +237,29 @@ public class ClientOptions extends NettyOptions<Bootstrap, ClientOptions> {
 	 * @return an eventual {@link ChannelPool}
 	 */
 	public final ChannelPool getPool(InetSocketAddress address) {
+		return getPool(address, null);
+	}
+
+	/**
+	 * Select a channel pool from the given address, initializing the connections
+	 * shared by the acquired channels with the given callback if the pool must be
+	 * created.
+	 *
+	 * @param address the optional address to use
+	 * @param onChannelCreate the optional shared connection pipeline callback
+	 *
+	 * @return an eventual {@link ChannelPool}
+	 *
+	 * @see PoolResources#selectOrCreate(SocketAddress, Supplier, Consumer)
+	 */
+	public final ChannelPool getPool(InetSocketAddress address,
+			Consumer<? super Channel> onChannelCreate) {
 		if (poolResources == null) {
 			return null;
 		}
 		address = address == null && connectAddress != null ? connectAddress.get() :
 				address;
-		return poolResources.selectOrCreate(address, this);
+		return poolResources.selectOrCreate(address, this, onChannelCreate);
 	}
 
 	/**
@@ -33,7 +33,9 @@ import io.netty.channel.group.ChannelGroup;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.util.AttributeKey;
+import reactor.ipc.netty.channel.FlushMode;
 import reactor.ipc.netty.resources.LoopResources;
+import reactor.util.concurrent.QueueSupplier;
 
 /**
  * A common connector builder with low-level connection options including sslContext, tcp
@@ -69,6 +71,11 @@ public abstract class NettyOptions<BOOSTRAP extends AbstractBootstrap<BOOSTRAP,
 	Consumer<? super Channel>  afterChannelInit          = null;
 	Consumer<? super Channel>  afterChannelInitUser      = null;
 	Predicate<? super Channel> onChannelInit             = null;
+	FlushMode                  flushMode                 = FlushMode.MANUAL_COMPLETE;
+	int                        outboundPrefetch          = Integer.MAX_VALUE;
+	int                        inboundQueueCapacity      = QueueSupplier.SMALL_BUFFER_SIZE;
+	int                        writeCoalescingThreshold  = 0;
+	int                        writeCoalescingBufferSize = 0;
 
 	NettyOptions(BOOSTRAP bootstrapTemplate) {
 		this.bootstrapTemplate = bootstrapTemplate;
@@ -86,6 +93,36 @@ public abstract class NettyOptions<BOOSTRAP extends AbstractBootstrap<BOOSTRAP,
 		this.channelGroup = options.channelGroup;
 		this.loopResources = options.loopResources;
 		this.preferNative = options.preferNative;
+		this.flushMode = options.flushMode;
+		this.outboundPrefetch = options.outboundPrefetch;
+		this.inboundQueueCapacity = options.inboundQueueCapacity;
+		this.writeCoalescingThreshold = options.writeCoalescingThreshold;
+		this.writeCoalescingBufferSize = options.writeCoalescingBufferSize;
+	}
+
+	/**
+	 * Return the default {@link FlushMode} applied to outbound writers of each new
+	 * connection.
+	 *
+	 * @return the default {@link FlushMode}
+	 */
+	public final FlushMode flushMode() {
+		return flushMode;
+	}
+
+	/**
+	 * Set the default {@link FlushMode} applied to outbound writers of each new
+	 * connection, {@link FlushMode#MANUAL_COMPLETE} if not set. The mode can still
+	 * be changed per connection, e.g. using
+	 * {@link reactor.ipc.netty.NettyOutbound#flushEach()}.
+	 *
+	 * @param flushMode the default {@link FlushMode}
+	 *
+	 * @return {@code this}
+	 */
+	public SO flushMode(FlushMode flushMode) {
+		this.flushMode = Objects.requireNonNull(flushMode, "flushMode");
+		return (SO) this;
 	}
 
 	/**
@@ -249,6 +286,34 @@ public abstract class NettyOptions<BOOSTRAP extends AbstractBootstrap<BOOSTRAP,
 		return (SO) this;
 	}
 
+	/**
+	 * Return the number of inbound messages buffered for a connection receiver before
+	 * reads are paused.
+	 *
+	 * @return the inbound queue capacity
+	 */
+	public final int inboundQueueCapacity() {
+		return inboundQueueCapacity;
+	}
+
+	/**
+	 * Set the number of inbound messages buffered for a connection receiver before
+	 * reads are paused. Reads will resume once the receiver has drained the queue
+	 * below half of this capacity. Default to {@link QueueSupplier#SMALL_BUFFER_SIZE}.
+	 *
+	 * @param inboundQueueCapacity the inbound queue capacity
+	 *
+	 * @return {@code this}
+	 */
+	public SO inboundQueueCapacity(int inboundQueueCapacity) {
+		if (inboundQueueCapacity < 1) {
+			throw new IllegalArgumentException("inbound queue capacity must be strictly" +
+					" positive, was: " + inboundQueueCapacity);
+		}
+		this.inboundQueueCapacity = inboundQueueCapacity;
+		return (SO) this;
+	}
+
 	/**
 	 * Set a {@link ChannelOption} value for low level connection settings like
 	 * SO_TIMEOUT or SO_KEEPALIVE. This will apply to each new channel from remote
@@ -265,6 +330,37 @@ public abstract class NettyOptions<BOOSTRAP extends AbstractBootstrap<BOOSTRAP,
 		return (SO) this;
 	}
 
+	/**
+	 * Return the number of elements outbound writers request at once, or
+	 * {@link Integer#MAX_VALUE} if unbounded.
+	 *
+	 * @return the outbound writers prefetch
+	 */
+	public final int outboundPrefetch() {
+		return outboundPrefetch;
+	}
+
+	/**
+	 * Set the number of elements outbound writers request at once. When bounded,
+	 * writers using {@link FlushMode#AUTO_EACH} or {@link FlushMode#MANUAL_COMPLETE}
+	 * flush each batch and only request the next one while the {@link Channel}
+	 * is writable, pausing above its
+	 * {@link ChannelOption#WRITE_BUFFER_HIGH_WATER_MARK}. Default to
+	 * {@link Integer#MAX_VALUE} (unbounded).
+	 *
+	 * @param outboundPrefetch the number of elements to request at once
+	 *
+	 * @return {@code this}
+	 */
+	public SO outboundPrefetch(int outboundPrefetch) {
+		if (outboundPrefetch < 1) {
+			throw new IllegalArgumentException("outbound prefetch must be strictly " +
+					"positive, was: " + outboundPrefetch);
+		}
+		this.outboundPrefetch = outboundPrefetch;
+		return (SO) this;
+	}
+
 	/**
 	 * Set the preferred native option. Determine if epoll should be used if available.
 	 *
@@ -318,9 +414,54 @@ public abstract class NettyOptions<BOOSTRAP extends AbstractBootstrap<BOOSTRAP,
 		return (SO) this;
 	}
 
+	/**
+	 * Return the size in bytes below which written {@link io.netty.buffer.ByteBuf} are
+	 * coalesced, or 0 if write coalescing is disabled.
+	 *
+	 * @return the write coalescing threshold
+	 */
+	public final int writeCoalescingThreshold() {
+		return writeCoalescingThreshold;
+	}
+
+	/**
+	 * Return the size in bytes of the pooled buffers small writes are coalesced into.
+	 *
+	 * @return the write coalescing buffer size
+	 */
+	public final int writeCoalescingBufferSize() {
+		return writeCoalescingBufferSize;
+	}
+
+	/**
+	 * Coalesce written {@link io.netty.buffer.ByteBuf} smaller than the given threshold
+	 * into pooled buffers of the given size, each coalesced buffer being written once
+	 * full, on flush or before any other outbound message. Larger buffers and other
+	 * messages are passed through untouched and in order. A threshold of 0 disables
+	 * coalescing, the default.
+	 *
+	 * @param threshold the size in bytes below which writes are coalesced
+	 * @param bufferSize the size in bytes of the coalescing buffers
+	 *
+	 * @return {@code this}
+	 */
+	public SO writeCoalescing(int threshold, int bufferSize) {
+		if (threshold < 0) {
+			throw new IllegalArgumentException("write coalescing threshold must be " +
+					"positive, was: " + threshold);
+		}
+		if (bufferSize < threshold) {
+			throw new IllegalArgumentException("write coalescing buffer size must be " +
+					"greater than or equal to threshold " + threshold + ", was: " + bufferSize);
+		}
+		this.writeCoalescingThreshold = threshold;
+		this.writeCoalescingBufferSize = bufferSize;
+		return (SO) this;
+	}
+
 	@Override
 	public String toString() {
-		return "NettyOptions{" + "bootstrapTemplate=" + bootstrapTemplate + ", sslHandshakeTimeoutMillis=" + sslHandshakeTimeoutMillis + ", sslContext=" + sslContext + ", preferNative=" + preferNative + ", afterChannelInit=" + afterChannelInit + ", onChannelInit=" + onChannelInit + ", loopResources=" + loopResources + '}';
+		return "NettyOptions{" + "bootstrapTemplate=" + bootstrapTemplate + ", sslHandshakeTimeoutMillis=" + sslHandshakeTimeoutMillis + ", sslContext=" + sslContext + ", preferNative=" + preferNative + ", afterChannelInit=" + afterChannelInit + ", onChannelInit=" + onChannelInit + ", loopResources=" + loopResources + ", flushMode=" + flushMode + ", outboundPrefetch=" + outboundPrefetch + ", inboundQueueCapacity=" + inboundQueueCapacity + ", writeCoalescingThreshold=" + writeCoalescingThreshold + ", writeCoalescingBufferSize=" + writeCoalescingBufferSize + '}';
 	}
 
 	static final boolean DEFAULT_NATIVE =
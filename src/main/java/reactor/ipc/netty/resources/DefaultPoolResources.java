@@ -53,18 +53,19 @@ final class DefaultPoolResources implements PoolResources {
 			Supplier<? extends Bootstrap> bootstrap) {
 		SocketAddress address = remote;
 		for (; ; ) {
-			Pool pool = channelPools.get(remote);
+			Bootstrap b = null;
+			if (address == null) {
+				b = bootstrap.get();
+				address = b.config()
+				          .remoteAddress();
+			}
+			Pool pool = channelPools.get(address);
 			if (pool != null) {
 				return pool;
 			}
-			//pool = new SimpleChannelPool(bootstrap);
-			Bootstrap b = bootstrap.get();
-			if (remote != null) {
-				b = b.remoteAddress(remote);
-			}
-			else {
-				address = b.config()
-				          .remoteAddress();
+			if (b == null) {
+				b = bootstrap.get()
+				             .remoteAddress(address);
 			}
 			if (log.isDebugEnabled()) {
 				log.debug("New {} client pool for {}", name, address);
@@ -0,0 +1,548 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty.resources;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoop;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.handler.codec.http2.Http2Codec;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.handler.codec.http2.Http2FrameLogger;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.logging.LogLevel;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.PlatformDependent;
+import reactor.ipc.netty.NettyHandlerNames;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * A {@link PoolResources} whose {@link ChannelPool} acquire HTTP/2 streams multiplexed
+ * over shared connections, only opening a new connection when the peer
+ * {@code SETTINGS_MAX_CONCURRENT_STREAMS} has been reached on every connection.
+ *
+ * @author Stephane Maldini
+ */
+final class Http2PoolResources implements PoolResources {
+
+	final ConcurrentMap<SocketAddress, Pool> channelPools;
+	final String                             name;
+	final int                                maxConnections;
+
+	Http2PoolResources(String name, int maxConnections) {
+		this.name = name;
+		this.maxConnections = maxConnections;
+		this.channelPools = PlatformDependent.newConcurrentHashMap();
+	}
+
+	@Override
+	public ChannelPool selectOrCreate(SocketAddress remote,
+			Supplier<? extends Bootstrap> bootstrap) {
+		return selectOrCreate(remote, bootstrap, null);
+	}
+
+	@Override
+	public ChannelPool selectOrCreate(SocketAddress remote,
+			Supplier<? extends Bootstrap> bootstrap,
+			Consumer<? super Channel> onChannelCreate) {
+		SocketAddress address = remote;
+		for (; ; ) {
+			Bootstrap b = null;
+			if (address == null) {
+				b = bootstrap.get();
+				address = b.config()
+				          .remoteAddress();
+			}
+			Pool pool = channelPools.get(address);
+			if (pool != null) {
+				return pool;
+			}
+			if (b == null) {
+				b = bootstrap.get()
+				             .remoteAddress(address);
+			}
+			if (log.isDebugEnabled()) {
+				log.debug("New {} http2 client pool for {}", name, address);
+			}
+			pool = new Pool(b, onChannelCreate, maxConnections);
+			if (channelPools.putIfAbsent(address, pool) == null) {
+				return pool;
+			}
+			pool.close();
+		}
+	}
+
+	@Override
+	public void dispose() {
+		Pool pool;
+		for (SocketAddress key : channelPools.keySet()) {
+			pool = channelPools.remove(key);
+			if (pool != null) {
+				pool.close();
+			}
+		}
+	}
+
+	/**
+	 * A {@link ChannelPool} of HTTP/2 streams. Acquisitions are served by the first
+	 * connection with an available stream, or pending until the connection being
+	 * opened has received the peer settings or a stream closes.
+	 */
+	static final class Pool implements ChannelPool {
+
+		final Bootstrap                 bootstrap;
+		final Consumer<? super Channel> onChannelCreate;
+		final int                       maxConnections;
+		final List<Connection>          connections;
+		final Queue<Promise<Channel>>   pending;
+
+		int     connecting;
+		boolean closed;
+
+		Pool(Bootstrap bootstrap,
+				Consumer<? super Channel> onChannelCreate,
+				int maxConnections) {
+			this.bootstrap = bootstrap;
+			this.onChannelCreate = onChannelCreate;
+			this.maxConnections = maxConnections;
+			this.connections = new ArrayList<>();
+			this.pending = new ArrayDeque<>();
+		}
+
+		@Override
+		public Future<Channel> acquire() {
+			return acquire(bootstrap.config()
+			                        .group()
+			                        .next()
+			                        .newPromise());
+		}
+
+		@Override
+		public Future<Channel> acquire(Promise<Channel> promise) {
+			Connection connection;
+			boolean connect = false;
+			synchronized (this) {
+				if (closed) {
+					return promise.setFailure(new IllegalStateException("Pool closed"));
+				}
+				connection = reserve();
+				if (connection == null) {
+					pending.offer(promise);
+					connect = reserveConnection();
+				}
+			}
+			if (connection != null) {
+				openStream(connection, promise);
+			}
+			else if (connect) {
+				connect();
+			}
+			return promise;
+		}
+
+		@Override
+		public Future<Void> release(Channel channel) {
+			return release(channel,
+					channel.eventLoop()
+					       .newPromise());
+		}
+
+		@Override
+		public Future<Void> release(Channel channel, Promise<Void> promise) {
+			if (log.isDebugEnabled()) {
+				log.debug("Closing released stream {}", channel);
+			}
+			channel.close();
+			return promise.setSuccess(null);
+		}
+
+		@Override
+		public void close() {
+			List<Connection> connections;
+			List<Promise<Channel>> pending;
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+				closed = true;
+				connections = new ArrayList<>(this.connections);
+				pending = new ArrayList<>(this.pending);
+				this.connections.clear();
+				this.pending.clear();
+			}
+			for (Connection connection : connections) {
+				if (connection.channel != null) {
+					connection.channel.close();
+				}
+			}
+			for (Promise<Channel> promise : pending) {
+				promise.tryFailure(new IllegalStateException("Pool closed"));
+			}
+		}
+
+		/**
+		 * Reserve a stream on the first connection with an available stream, must be
+		 * called while holding the pool lock
+		 *
+		 * @return the reserved connection or null if none has an available stream
+		 */
+		final Connection reserve() {
+			for (Connection connection : connections) {
+				if (connection.isAvailable()) {
+					connection.streams++;
+					return connection;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Reserve the opening of a new connection if none is already opening and the max
+		 * connection value allows it, must be called while holding the pool lock
+		 *
+		 * @return true if a new connection should be opened
+		 */
+		final boolean reserveConnection() {
+			if (connecting == 0 && (maxConnections < 0 || connections.size() < maxConnections)) {
+				connecting++;
+				return true;
+			}
+			return false;
+		}
+
+		final void connect() {
+			Connection connection = new Connection(this);
+			synchronized (this) {
+				connections.add(connection);
+			}
+			bootstrap.clone()
+			         .handler(new ChannelInitializer<Channel>() {
+				         @Override
+				         protected void initChannel(Channel ch) throws Exception {
+					         initConnection(connection, ch);
+				         }
+			         })
+			         .connect()
+			         .addListener((ChannelFutureListener) f -> {
+				         if (!f.isSuccess()) {
+					         onConnectionClosed(connection, f.cause());
+				         }
+			         });
+		}
+
+		final void initConnection(Connection connection, Channel ch) {
+			connection.channel = ch;
+			if (onChannelCreate != null) {
+				onChannelCreate.accept(ch);
+			}
+			ch.config()
+			  .setAutoRead(true);
+			ch.pipeline()
+			  .addLast(NettyHandlerNames.Http2PoolHandler, connection)
+			  .addLast(NettyHandlerNames.Http2Codec,
+					  new Http2Codec(false,
+							  new Http2StreamChannelBootstrap().handler(PUSH_REJECTOR),
+							  FRAME_LOGGER));
+			if (log.isDebugEnabled()) {
+				log.debug("Created http2 connection {}", ch.toString());
+			}
+		}
+
+		final void openStream(Connection connection, Promise<Channel> promise) {
+			EventLoop loop = connection.channel.eventLoop();
+			if (loop.inEventLoop()) {
+				openStream0(connection, promise);
+			}
+			else {
+				loop.execute(() -> openStream0(connection, promise));
+			}
+		}
+
+		final void openStream0(Connection connection, Promise<Channel> promise) {
+			if (promise.isDone()) {
+				release(connection);
+				return;
+			}
+			try {
+				new Http2StreamChannelBootstrap().parentChannel(connection.channel)
+				                                 .handler(STREAM_INITIALIZER)
+				                                 .option(ChannelOption.AUTO_READ, false)
+				                                 .connect()
+				                                 .addListener((ChannelFutureListener) f -> {
+					                                 if (!f.isSuccess()) {
+						                                 release(connection);
+						                                 promise.tryFailure(f.cause());
+						                                 return;
+					                                 }
+					                                 Channel stream = f.channel();
+					                                 stream.closeFuture()
+					                                       .addListener(c -> release(
+							                                       connection));
+					                                 if (!promise.trySuccess(stream)) {
+						                                 stream.close();
+					                                 }
+				                                 });
+			}
+			catch (Throwable e) {
+				release(connection);
+				promise.tryFailure(e);
+			}
+		}
+
+		/**
+		 * Release a stream of the given connection and serve the pending acquisitions
+		 *
+		 * @param connection the connection of the released stream
+		 */
+		final void release(Connection connection) {
+			synchronized (this) {
+				connection.streams--;
+			}
+			drain();
+		}
+
+		final void onConnectionReady(Connection connection) {
+			synchronized (this) {
+				connecting--;
+				connection.ready = true;
+			}
+			if (log.isDebugEnabled()) {
+				log.debug("Http2 connection {} ready, accepting {} concurrent streams",
+						connection.channel,
+						connection.maxStreams);
+			}
+			drain();
+		}
+
+		final void onConnectionClosed(Connection connection, Throwable cause) {
+			List<Promise<Channel>> failed = null;
+			synchronized (this) {
+				if (!connections.remove(connection)) {
+					return;
+				}
+				if (!connection.ready) {
+					connecting--;
+					failed = new ArrayList<>(pending);
+					pending.clear();
+				}
+			}
+			if (log.isDebugEnabled()) {
+				log.debug("Http2 connection {} closed", connection.channel);
+			}
+			if (failed != null) {
+				Throwable error = cause != null ? cause :
+						new IOException("Connection closed before receiving the http2 " + "settings");
+				for (Promise<Channel> promise : failed) {
+					promise.tryFailure(error);
+				}
+			}
+			else {
+				drain();
+			}
+		}
+
+		/**
+		 * Serve the pending acquisitions with the available streams and open a new
+		 * connection if every connection has exhausted its streams
+		 */
+		final void drain() {
+			for (; ; ) {
+				Promise<Channel> promise;
+				Connection connection;
+				boolean connect = false;
+				synchronized (this) {
+					promise = pending.peek();
+					if (promise == null) {
+						return;
+					}
+					if (promise.isDone()) {
+						pending.poll();
+						continue;
+					}
+					connection = reserve();
+					if (connection != null) {
+						pending.poll();
+					}
+					else {
+						connect = reserveConnection();
+					}
+				}
+				if (connection == null) {
+					if (connect) {
+						connect();
+					}
+					return;
+				}
+				openStream(connection, promise);
+			}
+		}
+
+		@Override
+		public String toString() {
+			synchronized (this) {
+				return "Http2Pool{" + "connections=" + connections.size() + ", pending=" + pending.size() + '}';
+			}
+		}
+	}
+
+	/**
+	 * The pooled connection state, tracking the peer settings and connection
+	 * lifecycle as the first handler of the HTTP/2 connection pipeline
+	 */
+	static final class Connection extends ChannelInboundHandlerAdapter {
+
+		final Pool pool;
+
+		Channel                channel;
+		Http2ConnectionHandler codec;
+		boolean                settingsReceived;
+		Throwable              error;
+
+		boolean ready;
+		int     streams;
+
+		volatile int     maxStreams;
+		volatile boolean goAway;
+
+		Connection(Pool pool) {
+			this.pool = pool;
+		}
+
+		/**
+		 * @return true if a new stream can be opened, must be called while holding the
+		 * pool lock
+		 */
+		final boolean isAvailable() {
+			return ready && !goAway && streams < maxStreams && channel.isActive();
+		}
+
+		@Override
+		public void channelActive(ChannelHandlerContext ctx) throws Exception {
+			ctx.fireChannelActive();
+			// the codec only writes its connection preface
+			ctx.flush();
+		}
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+			ctx.fireChannelRead(msg);
+			if (!settingsReceived) {
+				if (codec == null) {
+					codec = ctx.pipeline()
+					           .get(Http2ConnectionHandler.class);
+				}
+				if (codec != null && codec.decoder()
+				                          .prefaceReceived()) {
+					settingsReceived = true;
+					updateSettings();
+					pool.onConnectionReady(this);
+				}
+			}
+		}
+
+		@Override
+		public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+			ctx.fireChannelReadComplete();
+			if (settingsReceived) {
+				int previous = maxStreams;
+				updateSettings();
+				if (maxStreams > previous) {
+					pool.drain();
+				}
+			}
+		}
+
+		@Override
+		public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+			pool.onConnectionClosed(this, error);
+			ctx.fireChannelInactive();
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
+				throws Exception {
+			if (error == null) {
+				error = cause;
+			}
+			ctx.fireExceptionCaught(cause);
+		}
+
+		final void updateSettings() {
+			maxStreams = codec.connection()
+			                  .local()
+			                  .maxActiveStreams();
+			goAway = codec.connection()
+			              .goAwayReceived();
+		}
+	}
+
+	/**
+	 * Leave the stream pipeline to the acquiring context
+	 */
+	@ChannelHandler.Sharable
+	static final class StreamInitializer extends ChannelInitializer<Channel> {
+
+		@Override
+		protected void initChannel(Channel ch) throws Exception {
+			//ignore
+		}
+	}
+
+	/**
+	 * Reset the streams pushed by the peer
+	 */
+	@ChannelHandler.Sharable
+	static final class PushRejector extends ChannelInboundHandlerAdapter {
+
+		@Override
+		public void channelActive(ChannelHandlerContext ctx) throws Exception {
+			ctx.close();
+		}
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+			ReferenceCountUtil.release(msg);
+		}
+	}
+
+	static final ChannelHandler STREAM_INITIALIZER = new StreamInitializer();
+	static final ChannelHandler PUSH_REJECTOR      = new PushRejector();
+
+	static final Http2FrameLogger FRAME_LOGGER =
+			new Http2FrameLogger(LogLevel.DEBUG, Http2PoolResources.class);
+
+	static final Logger log = Loggers.getLogger(Http2PoolResources.class);
+}
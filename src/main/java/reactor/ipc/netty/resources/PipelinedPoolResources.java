@@ -0,0 +1,389 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty.resources;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.PlatformDependent;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * A {@link PoolResources} whose {@link ChannelPool} lend each connection to several
+ * concurrent acquisitions, only opening a new connection when every connection is lent
+ * to its maximum pipelining depth.
+ *
+ * @author Stephane Maldini
+ */
+final class PipelinedPoolResources implements PoolResources {
+
+	final ConcurrentMap<SocketAddress, Pool> channelPools;
+	final String                             name;
+	final int                                maxConnections;
+	final int                                depth;
+
+	PipelinedPoolResources(String name, int maxConnections, int depth) {
+		this.name = name;
+		this.maxConnections = maxConnections;
+		this.depth = depth;
+		this.channelPools = PlatformDependent.newConcurrentHashMap();
+	}
+
+	@Override
+	public ChannelPool selectOrCreate(SocketAddress remote,
+			Supplier<? extends Bootstrap> bootstrap) {
+		SocketAddress address = remote;
+		for (; ; ) {
+			Bootstrap b = null;
+			if (address == null) {
+				b = bootstrap.get();
+				address = b.config()
+				          .remoteAddress();
+			}
+			Pool pool = channelPools.get(address);
+			if (pool != null) {
+				return pool;
+			}
+			if (b == null) {
+				b = bootstrap.get()
+				             .remoteAddress(address);
+			}
+			if (log.isDebugEnabled()) {
+				log.debug("New {} pipelined client pool for {}", name, address);
+			}
+			pool = new Pool(b, maxConnections, depth);
+			if (channelPools.putIfAbsent(address, pool) == null) {
+				return pool;
+			}
+			pool.close();
+		}
+	}
+
+	@Override
+	public void dispose() {
+		Pool pool;
+		for (SocketAddress key : channelPools.keySet()) {
+			pool = channelPools.remove(key);
+			if (pool != null) {
+				pool.close();
+			}
+		}
+	}
+
+	/**
+	 * A {@link ChannelPool} of pipelined connections. Acquisitions are served by the
+	 * connected connection with the fewest exchanges in flight below the pipelining
+	 * depth, or pending until a connection being opened is connected or an exchange is
+	 * released.
+	 */
+	static final class Pool implements ChannelPool {
+
+		final Bootstrap               bootstrap;
+		final int                     maxConnections;
+		final int                     depth;
+		final List<Connection>        connections;
+		final Queue<Promise<Channel>> pending;
+
+		int     connecting;
+		boolean closed;
+
+		Pool(Bootstrap bootstrap, int maxConnections, int depth) {
+			this.bootstrap = bootstrap;
+			this.maxConnections = maxConnections;
+			this.depth = depth;
+			this.connections = new ArrayList<>();
+			this.pending = new ArrayDeque<>();
+		}
+
+		@Override
+		public Future<Channel> acquire() {
+			return acquire(bootstrap.config()
+			                        .group()
+			                        .next()
+			                        .newPromise());
+		}
+
+		@Override
+		public Future<Channel> acquire(Promise<Channel> promise) {
+			Connection connection;
+			boolean connect = false;
+			synchronized (this) {
+				if (closed) {
+					return promise.setFailure(new IllegalStateException("Pool closed"));
+				}
+				connection = reserve();
+				if (connection == null) {
+					pending.offer(promise);
+					connect = reserveConnection();
+				}
+			}
+			if (connection != null) {
+				lend(connection, promise);
+			}
+			else if (connect) {
+				connect();
+			}
+			return promise;
+		}
+
+		@Override
+		public Future<Void> release(Channel channel) {
+			return release(channel,
+					channel.eventLoop()
+					       .newPromise());
+		}
+
+		@Override
+		public Future<Void> release(Channel channel, Promise<Void> promise) {
+			Connection connection = channel.attr(CONNECTION)
+			                               .get();
+			if (connection == null) {
+				return promise.setFailure(new IllegalArgumentException("Channel " + channel + " was not acquired from this pool"));
+			}
+			release(connection);
+			return promise.setSuccess(null);
+		}
+
+		@Override
+		public void close() {
+			List<Connection> connections;
+			List<Promise<Channel>> pending;
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+				closed = true;
+				connections = new ArrayList<>(this.connections);
+				pending = new ArrayList<>(this.pending);
+				this.connections.clear();
+				this.pending.clear();
+			}
+			for (Connection connection : connections) {
+				if (connection.channel != null) {
+					connection.channel.close();
+				}
+			}
+			for (Promise<Channel> promise : pending) {
+				promise.tryFailure(new IllegalStateException("Pool closed"));
+			}
+		}
+
+		/**
+		 * Reserve an exchange on the connected connection with the fewest exchanges in
+		 * flight below the pipelining depth, must be called while holding the pool lock
+		 *
+		 * @return the reserved connection or null if every connection is lent to its
+		 * maximum depth
+		 */
+		final Connection reserve() {
+			Connection selected = null;
+			for (Connection connection : connections) {
+				if (connection.isAvailable(depth) && (selected == null || connection.acquired < selected.acquired)) {
+					selected = connection;
+				}
+			}
+			if (selected != null) {
+				selected.acquired++;
+			}
+			return selected;
+		}
+
+		/**
+		 * Reserve the opening of a new connection if the connections being opened
+		 * cannot serve every pending acquisition and the max connection value allows
+		 * it, must be called while holding the pool lock
+		 *
+		 * @return true if a new connection should be opened
+		 */
+		final boolean reserveConnection() {
+			if (connecting * depth < pending.size() && (maxConnections < 0 || connections.size() < maxConnections)) {
+				connecting++;
+				return true;
+			}
+			return false;
+		}
+
+		final void connect() {
+			Connection connection = new Connection();
+			synchronized (this) {
+				connections.add(connection);
+			}
+			bootstrap.clone()
+			         .handler(new ChannelInitializer<Channel>() {
+				         @Override
+				         protected void initChannel(Channel ch) throws Exception {
+					         connection.channel = ch;
+					         ch.attr(CONNECTION)
+					           .set(connection);
+					         ch.attr(PIPELINED)
+					           .set(true);
+				         }
+			         })
+			         .connect()
+			         .addListener((ChannelFutureListener) f -> {
+				         if (!f.isSuccess()) {
+					         onConnectionClosed(connection, f.cause());
+					         return;
+				         }
+				         f.channel()
+				          .closeFuture()
+				          .addListener(c -> onConnectionClosed(connection, null));
+				         onConnectionReady(connection);
+			         });
+		}
+
+		final void lend(Connection connection, Promise<Channel> promise) {
+			if (!promise.trySuccess(connection.channel)) {
+				release(connection);
+			}
+		}
+
+		/**
+		 * Release an exchange of the given connection and serve the pending
+		 * acquisitions
+		 *
+		 * @param connection the connection of the released exchange
+		 */
+		final void release(Connection connection) {
+			synchronized (this) {
+				connection.acquired--;
+			}
+			drain();
+		}
+
+		final void onConnectionReady(Connection connection) {
+			synchronized (this) {
+				connecting--;
+				connection.ready = true;
+			}
+			if (log.isDebugEnabled()) {
+				log.debug("Created pipelined connection {}", connection.channel);
+			}
+			drain();
+		}
+
+		final void onConnectionClosed(Connection connection, Throwable cause) {
+			List<Promise<Channel>> failed = null;
+			synchronized (this) {
+				if (!connections.remove(connection)) {
+					return;
+				}
+				if (!connection.ready) {
+					connecting--;
+					failed = new ArrayList<>(pending);
+					pending.clear();
+				}
+			}
+			if (log.isDebugEnabled()) {
+				log.debug("Pipelined connection {} closed", connection.channel);
+			}
+			if (failed != null) {
+				Throwable error = cause != null ? cause :
+						new IOException("Connection closed before being connected");
+				for (Promise<Channel> promise : failed) {
+					promise.tryFailure(error);
+				}
+			}
+			else {
+				drain();
+			}
+		}
+
+		/**
+		 * Serve the pending acquisitions with the available connections and open a new
+		 * connection if every connection is lent to its maximum depth
+		 */
+		final void drain() {
+			for (; ; ) {
+				Promise<Channel> promise;
+				Connection connection;
+				boolean connect = false;
+				synchronized (this) {
+					promise = pending.peek();
+					if (promise == null) {
+						return;
+					}
+					if (promise.isDone()) {
+						pending.poll();
+						continue;
+					}
+					connection = reserve();
+					if (connection != null) {
+						pending.poll();
+					}
+					else {
+						connect = reserveConnection();
+					}
+				}
+				if (connection == null) {
+					if (connect) {
+						connect();
+					}
+					return;
+				}
+				lend(connection, promise);
+			}
+		}
+
+		@Override
+		public String toString() {
+			synchronized (this) {
+				return "PipelinedPool{" + "connections=" + connections.size() + ", pending=" + pending.size() + '}';
+			}
+		}
+	}
+
+	/**
+	 * The pooled connection state, guarded by the pool lock
+	 */
+	static final class Connection {
+
+		Channel channel;
+		boolean ready;
+		int     acquired;
+
+		/**
+		 * @param depth the pipelining depth
+		 *
+		 * @return true if a new exchange can be pipelined, must be called while holding
+		 * the pool lock
+		 */
+		final boolean isAvailable(int depth) {
+			return ready && acquired < depth && channel.isActive();
+		}
+	}
+
+	static final AttributeKey<Connection> CONNECTION =
+			AttributeKey.newInstance("pipelinedPoolConnection");
+
+	static final Logger log = Loggers.getLogger(PipelinedPoolResources.class);
+}
@@ -17,12 +17,15 @@
 package reactor.ipc.netty.resources;
 
 import java.net.SocketAddress;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
 import io.netty.channel.pool.ChannelPool;
 import io.netty.channel.pool.FixedChannelPool;
 import io.netty.channel.pool.SimpleChannelPool;
+import io.netty.util.AttributeKey;
 import reactor.core.Cancellation;
 
 /**
@@ -44,6 +47,12 @@ public interface PoolResources extends Cancellation {
 			"" + Runtime.getRuntime()
 			            .availableProcessors()));
 
+	/**
+	 * The {@link Channel} attribute marking the connections lent to several concurrent
+	 * acquisitions by a {@link #pipelined(String, int, int)} pool
+	 */
+	AttributeKey<Boolean> PIPELINED = AttributeKey.newInstance("poolPipelined");
+
 	/**
 	 * Create an uncapped {@link PoolResources} to provide automatically for {@link
 	 * ChannelPool}.
@@ -100,6 +109,77 @@ public interface PoolResources extends Cancellation {
 
 	}
 
+	/**
+	 * Create an uncapped {@link PoolResources} multiplexing HTTP/2 streams over shared
+	 * connections.
+	 * <p>The acquired channels are HTTP/2 streams of a connection to the remote
+	 * address, released channels are closed streams. A connection is shared until the
+	 * peer {@code SETTINGS_MAX_CONCURRENT_STREAMS} is reached and a new connection is
+	 * only opened when every connection has exhausted its streams. Connections speak
+	 * HTTP/2 with prior knowledge, secured connections must negotiate {@code h2} with
+	 * ALPN.
+	 *
+	 * @param name the channel pool map name
+	 *
+	 * @return a new {@link PoolResources} to provide automatically for HTTP/2 stream
+	 * {@link ChannelPool}
+	 */
+	static PoolResources http2(String name) {
+		return new Http2PoolResources(name, -1);
+	}
+
+	/**
+	 * Create a capped {@link PoolResources} multiplexing HTTP/2 streams over shared
+	 * connections.
+	 * <p>The acquired channels are HTTP/2 streams of a connection to the remote
+	 * address, released channels are closed streams. A connection is shared until the
+	 * peer {@code SETTINGS_MAX_CONCURRENT_STREAMS} is reached and a new connection is
+	 * only opened when every connection has exhausted its streams, up to the given max
+	 * connection value. Further streams will be pending acquisition until a stream
+	 * closes.
+	 *
+	 * @param name the channel pool map name
+	 * @param maxConnections the maximum number of connections before starting pending
+	 * acquisition of streams
+	 *
+	 * @return a new {@link PoolResources} to provide automatically for HTTP/2 stream
+	 * {@link ChannelPool}
+	 */
+	static PoolResources http2(String name, int maxConnections) {
+		if (maxConnections < 1) {
+			throw new IllegalArgumentException("Max Connections value must be strictly " + "positive");
+		}
+		return new Http2PoolResources(name, maxConnections);
+	}
+
+	/**
+	 * Create a capped {@link PoolResources} pipelining exchanges, such as HTTP/1.1
+	 * requests, over shared connections.
+	 * <p>A connection is lent to up to the given depth of concurrent acquisitions, whose
+	 * requests are written in acquisition order and whose responses are read in the
+	 * same order. A new connection is only opened when every connection is lent to its
+	 * maximum depth, up to the given max connection value. Further acquisitions will be
+	 * pending until an exchange completes. A failed connection only fails the exchanges
+	 * pipelined on it.
+	 *
+	 * @param name the channel pool map name
+	 * @param maxConnections the maximum number of connections before starting pending
+	 * acquisition on existing ones
+	 * @param depth the maximum number of exchanges in flight on a connection
+	 *
+	 * @return a new {@link PoolResources} to provide automatically for pipelined
+	 * {@link ChannelPool}
+	 */
+	static PoolResources pipelined(String name, int maxConnections, int depth) {
+		if (maxConnections < 1) {
+			throw new IllegalArgumentException("Max Connections value must be strictly " + "positive");
+		}
+		if (depth < 1) {
+			throw new IllegalArgumentException("Pipelining depth must be strictly " + "positive");
+		}
+		return new PipelinedPoolResources(name, maxConnections, depth);
+	}
+
 	/**
 	 * Return an existing or new {@link ChannelPool}. The implementation will take care
 	 * of
@@ -115,6 +195,27 @@ public interface PoolResources extends Cancellation {
 	ChannelPool selectOrCreate(SocketAddress address,
 			Supplier<? extends Bootstrap> bootstrap);
 
+	/**
+	 * Return an existing or new {@link ChannelPool}. The implementation will take care
+	 * of pulling {@link Bootstrap} lazily when a {@link ChannelPool} creation is actually
+	 * needed. Pools sharing their connections between several acquired channels, such
+	 * as {@link #http2(String)}, initialize the pipeline of each new connection with
+	 * the given callback, others ignore it.
+	 *
+	 * @param address the remote address to resolve for existing or
+	 * new {@link ChannelPool}
+	 * @param bootstrap the {@link Bootstrap} supplier if a {@link ChannelPool} must be
+	 * created
+	 * @param onChannelCreate the shared connection pipeline callback, e.g. installing
+	 * ssl and proxy handlers, if a {@link ChannelPool} must be created
+	 * @return an existing or new {@link ChannelPool}
+	 */
+	default ChannelPool selectOrCreate(SocketAddress address,
+			Supplier<? extends Bootstrap> bootstrap,
+			Consumer<? super Channel> onChannelCreate) {
+		return selectOrCreate(address, bootstrap);
+	}
+
 	@Override
 	default void dispose() {
 		//noop default
@@ -156,7 +156,10 @@ public class TcpClient implements NettyConnector<NettyInbound, NettyOutbound> {
 
 		return Mono.create(sink -> {
 
-			ChannelPool pool = options.getPool(address);
+			ChannelPool pool = options.getPool(address,
+					ContextHandler.newClientConnectionConfigurer(options,
+							loggingHandler,
+							secure));
 
 			ContextHandler<SocketChannel> contextHandler =
 					doHandler(targetHandler, sink, secure, pool, onSetup);
@@ -19,6 +19,7 @@ package reactor.ipc.netty.tcp;
 import java.net.SocketAddress;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import io.netty.bootstrap.Bootstrap;
@@ -105,6 +106,13 @@ public class TcpResources implements PoolResources, LoopResources {
 		return defaultPools.selectOrCreate(address, bootstrap);
 	}
 
+	@Override
+	public ChannelPool selectOrCreate(SocketAddress address,
+			Supplier<? extends Bootstrap> bootstrap,
+			Consumer<? super Channel> onChannelCreate) {
+		return defaultPools.selectOrCreate(address, bootstrap, onChannelCreate);
+	}
+
 	@Override
 	public Class<? extends Channel> onChannel(EventLoopGroup group) {
 		return defaultLoops.onChannel(group);
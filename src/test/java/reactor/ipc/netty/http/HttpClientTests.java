@@ -17,11 +17,64 @@
 package reactor.ipc.netty.http;
 
 import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.handler.codec.http2.Http2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.Http2FrameAdapter;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
 import org.junit.Test;
+import org.testng.Assert;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.ipc.netty.NettyContext;
 import reactor.ipc.netty.http.client.HttpClient;
 import reactor.ipc.netty.http.client.HttpClientException;
+import reactor.ipc.netty.http.client.HttpClientResponse;
+import reactor.ipc.netty.http.server.HttpServer;
+import reactor.ipc.netty.resources.PoolResources;
 
 /**
  * @author Stephane Maldini
@@ -102,4 +155,460 @@ public class HttpClientTests {
 		}
 	}
 
+	@Test
+	public void compressedResponsesAreDecoded() {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			content.append("compressed content ")
+			       .append(i)
+			       .append('\n');
+		}
+		List<String> acceptEncodings = new CopyOnWriteArrayList<>();
+		NettyContext server = HttpServer.create(opts -> opts.listen(0)
+		                                                    .compress(0))
+		                                .newHandler((req, resp) -> {
+			                                acceptEncodings.add(String.valueOf(req.requestHeaders()
+			                                                                      .get(HttpHeaderNames.ACCEPT_ENCODING)));
+			                                return resp.sendString(Mono.just(content.toString()));
+		                                })
+		                                .block();
+
+		HttpResources.set(PoolResources.fixed("http", 1));
+
+		HttpClientResponse compressed =
+				HttpClient.create(opts -> opts.connect("localhost",
+						server.address()
+						      .getPort())
+				                              .compression(true))
+				          .get("/")
+				          .block();
+		Assert.assertEquals(compressed.receive()
+		                              .aggregate()
+		                              .asString()
+		                              .block(), content.toString());
+
+		String identity = HttpClient.create(server.address()
+		                                          .getPort())
+		                            .get("/")
+		                            .then(r -> r.receive()
+		                                        .aggregate()
+		                                        .asString())
+		                            .block();
+		Assert.assertEquals(identity, content.toString());
+
+		Assert.assertEquals(acceptEncodings, Arrays.asList("gzip, deflate", "null"));
+
+		HttpResources.reset();
+		server.dispose();
+	}
+
+	@Test
+	public void http2RequestsAreMultiplexedOverASharedConnection() {
+		Set<Integer> connections = ConcurrentHashMap.newKeySet();
+		NettyContext server = HttpServer.create(opts -> opts.listen(0)
+		                                                    .http2(true))
+		                                .newRouter(routes -> routes.get("/hello/{id}",
+				                                (req, resp) -> {
+					                                connections.add(req.remoteAddress()
+					                                                   .getPort());
+					                                return resp.sendString(Mono.just(
+							                                "hello " + req.param("id")));
+				                                })
+		                                                           .post("/echo",
+				                                                           (req, resp) -> resp.send(
+						                                                           req.receive()
+						                                                              .retain())))
+		                                .block();
+
+		PoolResources pool = PoolResources.http2("http2");
+		HttpClient client =
+				HttpClient.create(opts -> opts.connect("localhost",
+						server.address()
+						      .getPort())
+				                              .poolResources(pool));
+
+		List<String> responses = Flux.range(0, 6)
+		                             .flatMap(i -> client.get("/hello/" + i)
+		                                                 .then(r -> r.receive()
+		                                                             .aggregate()
+		                                                             .asString()))
+		                             .collectList()
+		                             .block();
+		Assert.assertEquals(responses.size(), 6);
+		for (int i = 0; i < 6; i++) {
+			Assert.assertTrue(responses.contains("hello " + i), responses.toString());
+		}
+		Assert.assertEquals(connections.size(), 1);
+
+		String echo = client.post("/echo", req -> req.sendString(Flux.just("multi", "plexed")))
+		                    .then(r -> r.receive()
+		                                .aggregate()
+		                                .asString())
+		                    .block();
+		Assert.assertEquals(echo, "multiplexed");
+
+		pool.dispose();
+		server.dispose();
+	}
+
+	@Test
+	public void http2PoolOpensConnectionsBeyondMaxConcurrentStreams() throws Exception {
+		AtomicInteger connections = new AtomicInteger();
+		NioEventLoopGroup group = new NioEventLoopGroup(1);
+		Channel server = new ServerBootstrap().group(group)
+		                                      .channel(NioServerSocketChannel.class)
+		                                      .childHandler(new ChannelInitializer<Channel>() {
+			                                      @Override
+			                                      protected void initChannel(Channel ch) {
+				                                      connections.incrementAndGet();
+				                                      DelayedResponder responder =
+						                                      new DelayedResponder();
+				                                      responder.handler =
+						                                      new Http2ConnectionHandlerBuilder().server(
+								                                      true)
+						                                                                         .initialSettings(
+								                                                                         new Http2Settings().maxConcurrentStreams(
+										                                                                         2))
+						                                                                         .frameListener(
+								                                                                         responder)
+						                                                                         .build();
+				                                      ch.pipeline()
+				                                        .addLast(responder.handler);
+			                                      }
+		                                      })
+		                                      .bind(0)
+		                                      .sync()
+		                                      .channel();
+
+		PoolResources pool = PoolResources.http2("http2-limited");
+		try {
+			HttpClient client = HttpClient.create(opts -> opts.connect("localhost",
+					((InetSocketAddress) server.localAddress()).getPort())
+			                                                  .poolResources(pool));
+
+			List<Integer> statuses = Flux.range(0, 6)
+			                             .flatMap(i -> client.get("/delayed/" + i)
+			                                                 .map(r -> r.status()
+			                                                            .code()))
+			                             .collectList()
+			                             .block();
+			Assert.assertEquals(statuses, Arrays.asList(200, 200, 200, 200, 200, 200));
+			Assert.assertEquals(connections.get(), 3);
+		}
+		finally {
+			pool.dispose();
+			server.close()
+			      .sync();
+			group.shutdownGracefully();
+		}
+	}
+
+	@Test
+	public void http2PoolSecuresSharedConnectionsThroughHttpResources() throws Exception {
+		boolean alpn = OpenSsl.isAlpnSupported();
+		ApplicationProtocolConfig protocols = new ApplicationProtocolConfig(
+				ApplicationProtocolConfig.Protocol.ALPN,
+				ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+				ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+				ApplicationProtocolNames.HTTP_2);
+		SelfSignedCertificate cert = new SelfSignedCertificate();
+		SslContextBuilder serverContext =
+				SslContextBuilder.forServer(cert.certificate(), cert.privateKey());
+		if (alpn) {
+			serverContext.sslProvider(SslProvider.OPENSSL)
+			             .ciphers(Http2SecurityUtil.CIPHERS,
+					             SupportedCipherSuiteFilter.INSTANCE)
+			             .applicationProtocolConfig(protocols);
+		}
+		SslContext sslContext = serverContext.build();
+
+		Set<String> handshakes = ConcurrentHashMap.newKeySet();
+		NioEventLoopGroup group = new NioEventLoopGroup(1);
+		Channel server = new ServerBootstrap().group(group)
+		                                      .channel(NioServerSocketChannel.class)
+		                                      .childHandler(new ChannelInitializer<Channel>() {
+			                                      @Override
+			                                      protected void initChannel(Channel ch) {
+				                                      SslHandler ssl =
+						                                      sslContext.newHandler(ch.alloc());
+				                                      ssl.handshakeFuture()
+				                                         .addListener(f -> {
+					                                         if (f.isSuccess()) {
+						                                         handshakes.add(ch.id() + " " + ssl.applicationProtocol());
+					                                         }
+				                                         });
+				                                      DelayedResponder responder =
+						                                      new DelayedResponder();
+				                                      responder.handler =
+						                                      new Http2ConnectionHandlerBuilder().server(
+								                                      true)
+						                                                                         .frameListener(
+								                                                                         responder)
+						                                                                         .build();
+				                                      ch.pipeline()
+				                                        .addLast(ssl, responder.handler);
+			                                      }
+		                                      })
+		                                      .bind(0)
+		                                      .sync()
+		                                      .channel();
+		int port = ((InetSocketAddress) server.localAddress()).getPort();
+
+		HttpResources.set(PoolResources.http2("http2-tls"));
+		try {
+			HttpClient client = HttpClient.create(opts -> opts.connect("localhost", port)
+			                                                  .sslSupport(ssl -> {
+				                                                  ssl.trustManager(
+						                                                  InsecureTrustManagerFactory.INSTANCE);
+				                                                  if (alpn) {
+					                                                  ssl.sslProvider(SslProvider.OPENSSL)
+					                                                     .ciphers(Http2SecurityUtil.CIPHERS,
+							                                                     SupportedCipherSuiteFilter.INSTANCE)
+					                                                     .applicationProtocolConfig(
+							                                                     protocols);
+				                                                  }
+			                                                  }));
+
+			List<Integer> statuses = Flux.range(0, 4)
+			                             .flatMap(i -> client.get("https://localhost:" + port + "/delayed/" + i)
+			                                                 .map(r -> r.status()
+			                                                            .code()))
+			                             .collectList()
+			                             .block();
+			Assert.assertEquals(statuses, Arrays.asList(200, 200, 200, 200));
+			Assert.assertEquals(handshakes.size(), 1, handshakes.toString());
+			if (alpn) {
+				Assert.assertTrue(handshakes.iterator()
+				                            .next()
+				                            .endsWith(" " + ApplicationProtocolNames.HTTP_2),
+						handshakes.toString());
+			}
+		}
+		finally {
+			HttpResources.reset();
+			server.close()
+			      .sync();
+			group.shutdownGracefully();
+			cert.delete();
+		}
+	}
+
+	static final class DelayedResponder extends Http2FrameAdapter {
+
+		Http2ConnectionHandler handler;
+
+		@Override
+		public void onHeadersRead(ChannelHandlerContext ctx,
+				int streamId,
+				Http2Headers headers,
+				int streamDependency,
+				short weight,
+				boolean exclusive,
+				int padding,
+				boolean endOfStream) {
+			onHeadersRead(ctx, streamId, headers, padding, endOfStream);
+		}
+
+		@Override
+		public void onHeadersRead(ChannelHandlerContext ctx,
+				int streamId,
+				Http2Headers headers,
+				int padding,
+				boolean endOfStream) {
+			ctx.executor()
+			   .schedule(() -> {
+				   handler.encoder()
+				          .writeHeaders(ctx,
+						          streamId,
+						          new DefaultHttp2Headers().status("200"),
+						          0,
+						          true,
+						          ctx.newPromise());
+				   ctx.flush();
+			   }, 200, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Test
+	public void pipelinedRequestsShareAConnectionInOrder() throws Exception {
+		PipeliningServer server = new PipeliningServer(-1);
+		PoolResources pool = PoolResources.pipelined("pipelined", 1, 4);
+		try {
+			HttpClient client = HttpClient.create(opts -> opts.connect("localhost",
+					server.port())
+			                                                  .poolResources(pool));
+
+			List<String> responses = Flux.range(0, 8)
+			                             .flatMap(i -> client.get("/pipelined/" + i)
+			                                                 .then(r -> r.receive()
+			                                                             .aggregate()
+			                                                             .asString()
+			                                                             .map(body -> i + "=" + body)))
+			                             .collectList()
+			                             .block();
+
+			Assert.assertEquals(responses.size(), 8);
+			for (int i = 0; i < 8; i++) {
+				Assert.assertTrue(responses.contains(i + "=/pipelined/" + i),
+						responses.toString());
+			}
+			Assert.assertEquals(server.connections.get(), 1);
+			Assert.assertTrue(server.maxInflight.get() > 1,
+					"requests were not pipelined: " + server.maxInflight.get());
+		}
+		finally {
+			pool.dispose();
+			server.close();
+		}
+	}
+
+	@Test
+	public void pipelinedConnectionFailureOnlyFailsItsRequests() throws Exception {
+		PipeliningServer server = new PipeliningServer(2);
+		PoolResources pool = PoolResources.pipelined("pipelined-failure", 1, 2);
+		try {
+			HttpClient client = HttpClient.create(opts -> opts.connect("localhost",
+					server.port())
+			                                                  .poolResources(pool));
+
+			List<String> results = Flux.range(0, 2)
+			                           .flatMap(i -> client.get("/failing/" + i)
+			                                               .then(r -> r.receive()
+			                                                           .aggregate()
+			                                                           .asString())
+			                                               .otherwiseReturn("failed"))
+			                           .collectList()
+			                           .block();
+			Assert.assertEquals(results.size(), 2);
+			Assert.assertTrue(results.contains("failed"), results.toString());
+			Assert.assertTrue(results.contains("/failing/0") || results.contains(
+					"/failing/1"), results.toString());
+
+			String next = client.get("/next")
+			                    .then(r -> r.receive()
+			                                .aggregate()
+			                                .asString())
+			                    .block();
+			Assert.assertEquals(next, "/next");
+			Assert.assertEquals(server.connections.get(), 2);
+		}
+		finally {
+			pool.dispose();
+			server.close();
+		}
+	}
+
+	@Test
+	public void poolsAreSelectedByTheBootstrapAddressWithoutRemote() {
+		NioEventLoopGroup group = new NioEventLoopGroup(1);
+		Bootstrap bootstrap = new Bootstrap().group(group)
+		                                     .channel(NioSocketChannel.class)
+		                                     .remoteAddress(InetSocketAddress.createUnresolved(
+				                                     "localhost",
+				                                     8080));
+		try {
+			for (PoolResources pool : Arrays.asList(PoolResources.fixed("fixed-address", 1),
+					PoolResources.pipelined("pipelined-address", 1, 2),
+					PoolResources.http2("http2-address"))) {
+				try {
+					ChannelPool first = pool.selectOrCreate(null, bootstrap::clone);
+					Assert.assertSame(pool.selectOrCreate(null, bootstrap::clone), first);
+					Assert.assertSame(pool.selectOrCreate(bootstrap.config()
+					                                               .remoteAddress(),
+							bootstrap::clone), first);
+				}
+				finally {
+					pool.dispose();
+				}
+			}
+		}
+		finally {
+			group.shutdownGracefully();
+		}
+	}
+
+	/**
+	 * A HTTP/1.1 server answering each pipelined request of a connection after a delay
+	 * and in order, with its uri as body. If a close threshold is given, the connection
+	 * is closed after answering the first request once the threshold of requests has
+	 * been received.
+	 */
+	static final class PipeliningServer {
+
+		final AtomicInteger     connections = new AtomicInteger();
+		final AtomicInteger     maxInflight = new AtomicInteger();
+		final NioEventLoopGroup group       = new NioEventLoopGroup(1);
+		final Channel           channel;
+
+		PipeliningServer(int closeThreshold) throws InterruptedException {
+			this.channel = new ServerBootstrap().group(group)
+			                                    .channel(NioServerSocketChannel.class)
+			                                    .childHandler(new ChannelInitializer<Channel>() {
+				                                    @Override
+				                                    protected void initChannel(Channel ch) {
+					                                    connections.incrementAndGet();
+					                                    ch.pipeline()
+					                                      .addLast(new HttpServerCodec(),
+							                                      new HttpObjectAggregator(8192),
+							                                      new Responder(closeThreshold));
+				                                    }
+			                                    })
+			                                    .bind(0)
+			                                    .sync()
+			                                    .channel();
+		}
+
+		int port() {
+			return ((java.net.InetSocketAddress) channel.localAddress()).getPort();
+		}
+
+		void close() throws InterruptedException {
+			channel.close()
+			       .sync();
+			group.shutdownGracefully();
+		}
+
+		final class Responder extends ChannelInboundHandlerAdapter {
+
+			final int closeThreshold;
+
+			int received;
+			int inflight;
+
+			Responder(int closeThreshold) {
+				this.closeThreshold = closeThreshold;
+			}
+
+			@Override
+			public void channelRead(ChannelHandlerContext ctx, Object msg) {
+				if (!(msg instanceof FullHttpRequest)) {
+					ReferenceCountUtil.release(msg);
+					return;
+				}
+				String uri = ((FullHttpRequest) msg).uri();
+				ReferenceCountUtil.release(msg);
+				received++;
+				maxInflight.accumulateAndGet(++inflight, Math::max);
+				if (closeThreshold > 0 && received > 1) {
+					return;
+				}
+				ctx.executor()
+				   .schedule(() -> {
+					   inflight--;
+					   FullHttpResponse response =
+							   new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+									   HttpResponseStatus.OK,
+									   Unpooled.copiedBuffer(uri, CharsetUtil.UTF_8));
+					   HttpUtil.setContentLength(response,
+							   response.content()
+							           .readableBytes());
+					   ctx.writeAndFlush(response);
+					   if (closeThreshold > 0 && received >= closeThreshold) {
+						   ctx.close();
+					   }
+				   }, 100, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
 }
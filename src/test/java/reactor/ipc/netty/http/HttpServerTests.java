@@ -16,15 +16,105 @@
 
 package reactor.ipc.netty.http;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpClientUpgradeHandler;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.DefaultHttp2Connection;
+import io.netty.handler.codec.http2.DefaultHttp2DataFrame;
+
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersFrame;
+import io.netty.handler.codec.http2.Http2ClientUpgradeCodec;
+import io.netty.handler.codec.http2.Http2Codec;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.Http2DataFrame;
+import io.netty.handler.codec.http2.Http2HeadersFrame;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.handler.codec.http2.HttpToHttp2ConnectionHandler;
+import io.netty.handler.codec.http2.HttpToHttp2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.InboundHttp2ToHttpAdapterBuilder;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
 import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Assume;
 import org.junit.Test;
 import org.testng.Assert;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.ipc.netty.ByteBufFlux;
+import reactor.ipc.netty.ByteBufOverflowException;
 import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.NettyHandlerNames;
 import reactor.ipc.netty.http.client.HttpClient;
+import reactor.ipc.netty.http.client.HttpClientException;
 import reactor.ipc.netty.http.client.HttpClientResponse;
 import reactor.ipc.netty.http.server.HttpServer;
+import reactor.ipc.netty.http.server.HttpServerRequest;
+import reactor.ipc.netty.http.server.HttpServerResponse;
 import reactor.ipc.netty.resources.PoolResources;
 
 /**
@@ -83,4 +173,1110 @@ public class HttpServerTests {
 		HttpResources.reset();
 	}
 
+	@Test
+	public void aggregateFailsPastMaxBytes() {
+		NettyContext c = HttpServer.create(0)
+		                           .newHandler((req, resp) -> req.receive()
+		                                                         .aggregate(16)
+		                                                         .asString()
+		                                                         .then(body -> resp.sendString(
+				                                                         Mono.just(body)))
+		                                                         .otherwise(ByteBufOverflowException.class,
+				                                                         e -> resp.status(
+						                                                         HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE)
+				                                                                  .sendHeaders()))
+		                           .block();
+
+		String small = HttpClient.create(c.address()
+		                                  .getPort())
+		                         .post("/", req -> req.sendString(Mono.just("hello")))
+		                         .then(r -> r.receive()
+		                                     .aggregate()
+		                                     .asString())
+		                         .block();
+		Assert.assertEquals(small, "hello");
+
+		int status = HttpClient.create(c.address()
+		                                .getPort())
+		                       .post("/",
+				                       req -> req.sendString(Mono.just(
+						                       "hello world, this body is too large")))
+		                       .then(r -> Mono.just(r.status()
+		                                             .code()))
+		                       .otherwise(HttpClientException.class,
+				                       e -> Mono.just(e.getResponseStatus()
+				                                       .code()))
+		                       .block();
+		Assert.assertEquals(status, 413);
+
+		c.dispose();
+	}
+
+	@Test
+	public void aggregateSpillsPastMemoryThreshold() throws Exception {
+		StringBuilder payload = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			payload.append("chunk-")
+			       .append(i)
+			       .append('\n');
+		}
+		String content = payload.toString();
+		Path tmp = Paths.get(System.getProperty("java.io.tmpdir"));
+		Set<Path> before = aggregateFiles(tmp);
+		AtomicReference<String> spilledOn = new AtomicReference<>();
+		AtomicReference<ByteBuf> spilled = new AtomicReference<>();
+
+		NettyContext c = HttpServer.create(0)
+		                           .newHandler((req, resp) -> req.receive()
+		                                                         .aggregate(1024, 1024 * 1024)
+		                                                         .then(b -> {
+			                                                         if (b.nioBuffer() instanceof MappedByteBuffer) {
+				                                                         spilledOn.set(Thread.currentThread()
+				                                                                             .getName());
+				                                                         spilled.set(b.retain());
+			                                                         }
+			                                                         return resp.sendString(Mono.just(
+					                                                         b.toString(CharsetUtil.UTF_8)));
+		                                                         }))
+		                           .block();
+
+		String body = HttpClient.create(c.address()
+		                                 .getPort())
+		                        .post("/", req -> req.sendString(Flux.fromArray(content.split("(?<=\n)"))))
+		                        .then(r -> r.receive()
+		                                    .aggregate()
+		                                    .asString())
+		                        .block();
+
+		Assert.assertEquals(body, content);
+		Assert.assertNotNull(spilledOn.get(), "Aggregated body was not spilled");
+		Assert.assertTrue(spilledOn.get()
+		                           .startsWith("elastic"),
+				"Spilled body emitted from " + spilledOn.get());
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while ((!aggregateFiles(tmp).equals(before) || spilled.get()
+		                                                      .refCnt() > 1) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		Assert.assertEquals(aggregateFiles(tmp), before);
+		Assert.assertEquals(spilled.get()
+		                           .refCnt(), 1);
+		// the retained body cannot be garbage collected and unmapped before its release
+		boolean mapped = aggregateMappings() > 0;
+		spilled.get()
+		       .release();
+		if (mapped) {
+			Assert.assertEquals(aggregateMappings(), 0L, "Released body is still mapped");
+		}
+
+		c.dispose();
+	}
+
+	static Set<Path> aggregateFiles(Path dir) throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.filter(f -> f.getFileName()
+			                          .toString()
+			                          .endsWith(".aggregate"))
+			            .collect(Collectors.toSet());
+		}
+	}
+
+	/**
+	 * Count the memory mappings of aggregate files, 0 if the process mappings are not
+	 * readable
+	 */
+	static long aggregateMappings() throws IOException {
+		Path maps = Paths.get("/proc/self/maps");
+		if (!Files.isReadable(maps)) {
+			return 0L;
+		}
+		try (Stream<String> lines = Files.lines(maps)) {
+			return lines.filter(line -> line.contains(".aggregate"))
+			            .count();
+		}
+	}
+
+	@Test
+	public void jsonElementsAreDecodedAsStreamed() throws Exception {
+		final int elements = 1000;
+		ObjectMapper mapper = new ObjectMapper();
+		NettyContext c = HttpServer.create(0)
+		                           .newHandler((req, resp) -> resp.sendString(Flux.range(0,
+				                           elements)
+		                                                                          .map(i -> (i == 0 ? "[" : ",") + "{\"id\":" + i + ",\"name\":\"item, " + i + "\"}")
+		                                                                          .concatWith(
+				                                                                          Mono.just(
+						                                                                          "]"))))
+		                           .block();
+
+		List<Map> items = HttpClient.create(c.address()
+		                                     .getPort())
+		                            .get("/")
+		                            .flatMap(r -> r.receive()
+		                                           .jsonElements(1024)
+		                                           .map(element -> {
+			                                           try {
+				                                           return mapper.readValue(new ByteBufInputStream(
+						                                           element), Map.class);
+			                                           }
+			                                           catch (IOException e) {
+				                                           throw Exceptions.propagate(e);
+			                                           }
+			                                           finally {
+				                                           element.release();
+			                                           }
+		                                           }))
+		                            .collectList()
+		                            .block();
+
+		Assert.assertEquals(items.size(), elements);
+		Assert.assertEquals(items.get(elements - 1)
+		                         .get("name"), "item, " + (elements - 1));
+
+		c.dispose();
+	}
+
+	@Test
+	public void jsonElementsRejectMalformedInput() {
+		for (String input : Arrays.asList("{\"a\":1},{\"b\":2}", "]", "[1]]", "}", "42", "\"a\"")) {
+			try {
+				ByteBufFlux.fromInbound(Mono.just(Unpooled.copiedBuffer(input, CharsetUtil.UTF_8)))
+				           .jsonElements(1024)
+				           .doOnNext(ByteBuf::release)
+				           .subscribeOn(Schedulers.parallel())
+				           .blockLast(Duration.ofSeconds(5));
+				Assert.fail("Expected a corrupted frame for " + input);
+			}
+			catch (CorruptedFrameException e) {
+				// expected
+			}
+		}
+
+		List<String> elements =
+				ByteBufFlux.fromInbound(Mono.just(Unpooled.copiedBuffer("[1, \"a,]\", {\"b\":[2]}] {\"c\":3}",
+						CharsetUtil.UTF_8)))
+				           .jsonElements(1024)
+				           .map(element -> {
+					           String s = element.toString(CharsetUtil.UTF_8);
+					           element.release();
+					           return s;
+				           })
+				           .collectList()
+				           .block();
+
+		Assert.assertEquals(elements, Arrays.asList("1", "\"a,]\"", "{\"b\":[2]}", "{\"c\":3}"));
+	}
+
+	@Test
+	public void keepAliveReusesCodec() throws Exception {
+		Path index = Paths.get(getClass().getResource("/public/index.html")
+		                                 .toURI());
+		String content = new String(Files.readAllBytes(index), CharsetUtil.UTF_8);
+		Set<ChannelHandler> codecs = ConcurrentHashMap.newKeySet();
+		NettyContext c = HttpServer.create(0)
+		                           .newHandler((req, resp) -> {
+			                           codecs.add(req.channel()
+			                                         .pipeline()
+			                                         .get(NettyHandlerNames.HttpCodecHandler));
+			                           if (req.uri().equals("/missing")) {
+				                           return resp.sendNotFound();
+			                           }
+			                           if (req.uri().equals("/file")) {
+				                           return resp.sendFile(index);
+			                           }
+			                           return resp.header(HttpHeaderNames.CONTENT_LENGTH, "5")
+			                                      .sendString(Mono.just("hello"));
+		                           })
+		                           .block();
+
+		HttpResources.set(PoolResources.fixed("http", 1));
+
+		for (int i = 0; i < 3; i++) {
+			String body = HttpClient.create(c.address().getPort())
+			                        .get("/")
+			                        .then(r -> r.receive()
+			                                    .aggregate()
+			                                    .asString())
+			                        .block();
+			Assert.assertEquals(body, "hello");
+
+			String status = HttpClient.create(c.address().getPort())
+			                          .get("/missing")
+			                          .map(r -> "" + r.status().code())
+			                          .otherwise(HttpClientException.class,
+					                          e -> Mono.just("" + e.getResponseStatus()
+					                                               .code()))
+			                          .block();
+			Assert.assertEquals(status, "404");
+
+			String file = HttpClient.create(c.address().getPort())
+			                        .get("/file")
+			                        .then(r -> r.receive()
+			                                    .aggregate()
+			                                    .asString())
+			                        .block();
+			Assert.assertEquals(file, content);
+		}
+
+		Assert.assertEquals(codecs.size(), 1);
+
+		HttpResources.reset();
+		c.dispose();
+	}
+
+	@Test
+	public void pipelinedRequestsAreHandledConcurrentlyAndAnsweredInOrder()
+			throws Exception {
+		AtomicInteger inflight = new AtomicInteger();
+		AtomicInteger maxInflight = new AtomicInteger();
+		NettyContext c = HttpServer.create(opts -> opts.listen(0)
+		                                               .pipelining(4))
+		                           .newHandler((req, resp) -> delayedUri(req,
+				                           resp,
+				                           inflight,
+				                           maxInflight))
+		                           .block();
+
+		String responses = pipeline(c.address()
+		                             .getPort(), 4);
+
+		assertPipelinedResponses(responses, 4);
+		Assert.assertTrue(maxInflight.get() > 1,
+				"requests were not handled concurrently: " + maxInflight.get());
+		c.dispose();
+	}
+
+	@Test
+	public void pipelinedRequestsAreAnsweredInOrderByDefault() throws Exception {
+		AtomicInteger inflight = new AtomicInteger();
+		AtomicInteger maxInflight = new AtomicInteger();
+		NettyContext c = HttpServer.create(0)
+		                           .newHandler((req, resp) -> delayedUri(req,
+				                           resp,
+				                           inflight,
+				                           maxInflight))
+		                           .block();
+
+		String responses = pipeline(c.address()
+		                             .getPort(), 3);
+
+		assertPipelinedResponses(responses, 3);
+		Assert.assertEquals(maxInflight.get(), 1);
+		c.dispose();
+	}
+
+	@Test
+	public void pipelinedFileResponsesAreAnsweredInOrder() throws Exception {
+		StringBuilder a = new StringBuilder();
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			a.append("first ")
+			 .append(i)
+			 .append('\n');
+			b.append("second ")
+			 .append(i)
+			 .append('\n');
+		}
+		Path first = Files.createTempFile("pipelined", ".txt");
+		Path second = Files.createTempFile("pipelined", ".txt");
+		Files.write(first, a.toString()
+		                    .getBytes(CharsetUtil.US_ASCII));
+		Files.write(second, b.toString()
+		                     .getBytes(CharsetUtil.US_ASCII));
+		AtomicInteger inflight = new AtomicInteger();
+		AtomicInteger maxInflight = new AtomicInteger();
+
+		NettyContext c = HttpServer.create(opts -> opts.listen(0)
+		                                               .pipelining(2))
+		                           .newHandler((req, resp) -> {
+			                           maxInflight.accumulateAndGet(inflight.incrementAndGet(),
+					                           Math::max);
+			                           if (req.uri()
+			                                  .endsWith("/0")) {
+				                           return Mono.delayMillis(100)
+				                                      .then(d -> resp.sendFile(first))
+				                                      .doOnTerminate((v, e) -> inflight.decrementAndGet());
+			                           }
+			                           if (req.uri()
+			                                  .endsWith("/1")) {
+				                           return resp.sendFile(second)
+				                                      .doOnTerminate((v, e) -> inflight.decrementAndGet());
+			                           }
+			                           inflight.decrementAndGet();
+			                           return resp.header(HttpHeaderNames.CONTENT_LENGTH, "5")
+			                                      .sendString(Mono.just("third"));
+		                           })
+		                           .block();
+
+		try (Socket socket = new Socket("localhost", c.address()
+		                                              .getPort())) {
+			socket.setSoTimeout(10000);
+			OutputStream out = socket.getOutputStream();
+			for (int i = 0; i < 3; i++) {
+				out.write(("GET /pipelined/" + i + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(
+						CharsetUtil.US_ASCII));
+			}
+			out.flush();
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			Assert.assertEquals(readBody(in), a.toString());
+			Assert.assertEquals(readBody(in), b.toString());
+			Assert.assertEquals(readBody(in), "third");
+		}
+		finally {
+			c.dispose();
+			Files.delete(first);
+			Files.delete(second);
+		}
+		Assert.assertEquals(maxInflight.get(), 2);
+	}
+
+	@Test
+	public void pipelinedResponsesAreBufferedUpToTheWaterMark() throws Exception {
+		final int elements = 2000;
+		final int prefetch = 16;
+		final String line = String.format("%01023d\n", 0);
+		AtomicLong emitted = new AtomicLong();
+		AtomicLong emittedBeforeHead = new AtomicLong(-1);
+
+		NettyContext c = HttpServer.create(opts -> opts.listen(0)
+		                                               .pipelining(2)
+		                                               .outboundPrefetch(prefetch)
+		                                               .option(ChannelOption.WRITE_BUFFER_WATER_MARK,
+				                                               new WriteBufferWaterMark(1024,
+						                                               4096)))
+		                           .newHandler((req, resp) -> {
+			                           if (req.uri()
+			                                  .endsWith("/0")) {
+				                           return Mono.delayMillis(500)
+				                                      .then(d -> {
+					                                      emittedBeforeHead.set(emitted.get());
+					                                      return resp.header(HttpHeaderNames.CONTENT_LENGTH,
+							                                      "4")
+					                                                 .sendString(Mono.just("head"));
+				                                      });
+			                           }
+			                           // the content is not written behind the headers write
+			                           // completion and is buffered as it is emitted
+			                           resp.header(HttpHeaderNames.CONTENT_LENGTH,
+					                           String.valueOf(elements * line.length()));
+			                           return Flux.merge(resp.sendHeaders(),
+					                           resp.sendString(Flux.range(0, elements)
+					                                               .map(i -> line)
+					                                               .doOnNext(s -> emitted.incrementAndGet())))
+			                                  .then();
+		                           })
+		                           .block();
+
+		try (Socket socket = new Socket("localhost", c.address()
+		                                              .getPort())) {
+			socket.setSoTimeout(10000);
+			OutputStream out = socket.getOutputStream();
+			for (int i = 0; i < 2; i++) {
+				out.write(("GET /pipelined/" + i + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(
+						CharsetUtil.US_ASCII));
+			}
+			out.flush();
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			Assert.assertEquals(readBody(in), "head");
+			Assert.assertEquals(readBody(in)
+					.length(), elements * line.length());
+		}
+		finally {
+			c.dispose();
+		}
+		Assert.assertTrue(emittedBeforeHead.get() >= 0);
+		Assert.assertTrue(emittedBeforeHead.get() <= prefetch,
+				"buffered " + emittedBeforeHead.get() + " chunks behind the head");
+		Assert.assertEquals(emitted.get(), (long) elements);
+	}
+
+	/**
+	 * Read a response with a content length and return its body
+	 */
+	static String readBody(DataInputStream in) throws IOException {
+		StringBuilder headers = new StringBuilder();
+		while (headers.indexOf("\r\n\r\n") == -1) {
+			headers.append((char) in.readUnsignedByte());
+		}
+		int length = -1;
+		for (String header : headers.toString()
+		                            .split("\r\n")) {
+			if (header.toLowerCase()
+			          .startsWith("content-length:")) {
+				length = Integer.parseInt(header.substring(15)
+				                                .trim());
+			}
+		}
+		Assert.assertTrue(length >= 0, headers.toString());
+		byte[] body = new byte[length];
+		in.readFully(body);
+		return new String(body, CharsetUtil.US_ASCII);
+	}
+
+	/**
+	 * Answer the request uri, the first requests being answered last
+	 */
+	static Mono<Void> delayedUri(HttpServerRequest req,
+			HttpServerResponse resp,
+			AtomicInteger inflight,
+			AtomicInteger maxInflight) {
+		maxInflight.accumulateAndGet(inflight.incrementAndGet(), Math::max);
+		int index = Integer.parseInt(req.uri()
+		                                .substring(req.uri()
+		                                              .lastIndexOf('/') + 1));
+		return Mono.delayMillis(50 * (5 - index))
+		           .then(d -> {
+			           inflight.decrementAndGet();
+			           return resp.header(HttpHeaderNames.CONTENT_LENGTH,
+					           "" + req.uri()
+					                   .length())
+			                      .sendString(Mono.just(req.uri()));
+		           });
+	}
+
+	/**
+	 * Write the given number of requests at once and read until every response body
+	 * has been received
+	 */
+	static String pipeline(int port, int requests) throws IOException {
+		StringBuilder pipelined = new StringBuilder();
+		for (int i = 0; i < requests; i++) {
+			pipelined.append("GET /pipelined/")
+			         .append(i)
+			         .append(" HTTP/1.1\r\nHost: localhost\r\n\r\n");
+		}
+		try (Socket socket = new Socket("localhost", port)) {
+			socket.setSoTimeout(10000);
+			OutputStream out = socket.getOutputStream();
+			out.write(pipelined.toString()
+			                   .getBytes(CharsetUtil.US_ASCII));
+			out.flush();
+			InputStream in = socket.getInputStream();
+			StringBuilder responses = new StringBuilder();
+			byte[] buffer = new byte[1024];
+			int read;
+			int received = 0;
+			while (received < requests && (read = in.read(buffer)) != -1) {
+				responses.append(new String(buffer, 0, read, CharsetUtil.US_ASCII));
+				received = 0;
+				for (int i = 0; i < requests; i++) {
+					if (responses.indexOf("/pipelined/" + i) != -1) {
+						received++;
+					}
+				}
+			}
+			return responses.toString();
+		}
+	}
+
+	static void assertPipelinedResponses(String responses, int requests) {
+		int from = 0;
+		for (int i = 0; i < requests; i++) {
+			int status = responses.indexOf("HTTP/1.1 200 OK", from);
+			Assert.assertTrue(status >= from, responses);
+			int body = responses.indexOf("/pipelined/" + i, status);
+			Assert.assertTrue(body > status, responses);
+			Assert.assertTrue(responses.indexOf("HTTP/1.1", status + 1) == -1 || responses.indexOf(
+					"HTTP/1.1",
+					status + 1) > body, responses);
+			from = body;
+		}
+	}
+
+	@Test
+	public void routesSelectTheFirstRegisteredMatch() {
+		NettyContext c =
+				HttpServer.create(0)
+				          .newRouter(routes -> routes.route(req -> req.uri()
+				                                                      .equals("/users/custom"),
+						          (req, resp) -> resp.sendString(Mono.just("custom")))
+				                                     .get("/users/{id}",
+						                                     (req, resp) -> resp.sendString(
+								                                     Mono.just("user " + req.param(
+										                                     "id"))))
+				                                     .get("/users/me",
+						                                     (req, resp) -> resp.sendString(
+								                                     Mono.just("me")))
+				                                     .post("/users/{id}/avatar",
+						                                     (req, resp) -> resp.sendString(
+								                                     Mono.just("avatar")))
+				                                     .get("/users/{id}/avatar",
+						                                     (req, resp) -> resp.sendString(
+								                                     Mono.just("avatar " + req.param(
+										                                     "id"))))
+				                                     .get("/files/{name}.json",
+						                                     (req, resp) -> resp.sendString(
+								                                     Mono.just("json " + req.param(
+										                                     "name"))))
+				                                     .get("/static/{path}**",
+						                                     (req, resp) -> resp.sendString(
+								                                     Mono.just("static " + req.param(
+										                                     "path"))))
+				                                     .get("/a+b",
+						                                     (req, resp) -> resp.sendString(
+								                                     Mono.just("a+b"))))
+				          .block();
+
+		Assert.assertEquals(route(c, "/users/custom"), "custom");
+		Assert.assertEquals(route(c, "/users/42"), "user 42");
+		Assert.assertEquals(route(c, "/users/me"), "user me");
+		Assert.assertEquals(route(c, "/users/42/avatar"), "avatar 42");
+		Assert.assertEquals(route(c, "/files/report.json"), "json report");
+		Assert.assertEquals(route(c, "/static/css/site.css"), "static css/site.css");
+		Assert.assertEquals(route(c, "/aab"), "a+b");
+		Assert.assertEquals(route(c, "/files/report.xml"), "404");
+		Assert.assertEquals(route(c, "/users/42/avatar/small"), "404");
+
+		c.dispose();
+	}
+
+	@Test
+	public void templateParametersAreCaptured() {
+		NettyContext c =
+				HttpServer.create(0)
+				          .newRouter(routes -> routes.get("/range/{from}-{to}",
+						          (req, resp) -> resp.sendString(Mono.just(req.param("from") + ".." + req.param(
+								          "to"))))
+				                                     .get("/v(1|2)/{id}",
+						                                     (req, resp) -> resp.sendString(
+								                                     Mono.just("v " + req.params()
+								                                                         .get("id"))))
+				                                     .get("/{bucket}/**/{name}.txt",
+						                                     (req, resp) -> resp.sendString(
+								                                     Mono.just(req.param("bucket") + " " + req.param(
+										                                     "name")))))
+				          .block();
+
+		Assert.assertEquals(route(c, "/range/a-b-c"), "a-b..c");
+		Assert.assertEquals(route(c, "/v2/7"), "v 7");
+		Assert.assertEquals(route(c, "/docs/2016/12/notes.txt"), "docs notes");
+		Assert.assertEquals(route(c, "/docs/notesXtxt"), "404");
+
+		c.dispose();
+	}
+
+	static String route(NettyContext c, String uri) {
+		return HttpClient.create(c.address()
+		                          .getPort())
+		                 .get(uri)
+		                 .then(r -> r.receive()
+		                             .aggregate()
+		                             .asString())
+		                 .otherwise(HttpClientException.class,
+				                 e -> Mono.just("" + e.getResponseStatus()
+				                                      .code()))
+		                 .block();
+	}
+
+	@Test
+	public void sendFileOverTls() throws Exception {
+		byte[] content = new byte[300000];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) i;
+		}
+		Path file = Files.createTempFile("sendFile", ".bin");
+		Files.write(file, content);
+
+		NettyContext c = HttpServer.create(opts -> opts.listen("localhost", 0)
+		                                               .sslSelfSigned())
+		                           .newHandler((req, resp) -> resp.sendFile(file))
+		                           .block();
+
+		byte[] body = HttpClient.create(opts -> opts.connect("localhost",
+				c.address()
+				 .getPort())
+		                                            .sslSupport(ssl -> ssl.trustManager(
+				                                            InsecureTrustManagerFactory.INSTANCE)))
+		                        .get("https://localhost:" + c.address()
+		                                                     .getPort() + "/")
+		                        .then(r -> r.receive()
+		                                    .aggregate()
+		                                    .asByteArray())
+		                        .block();
+
+		Assert.assertEquals(body, content);
+
+		c.dispose();
+		Files.delete(file);
+	}
+
+	@Test
+	public void sendFileRanges() throws Exception {
+		Path index = Paths.get(getClass().getResource("/public/index.html")
+		                                 .toURI());
+		String content = new String(Files.readAllBytes(index), CharsetUtil.UTF_8);
+
+		NettyContext c = HttpServer.create(0)
+		                           .newRouter(routes -> routes.directory("/test",
+				                           index.getParent()))
+		                           .block();
+
+		HttpClientResponse single = HttpClient.create(c.address().getPort())
+		                                      .get("/test/index.html",
+				                                      req -> req.header(HttpHeaderNames.RANGE,
+						                                      "bytes=10-19")
+				                                                .send())
+		                                      .block();
+
+		Assert.assertEquals(single.status(), HttpResponseStatus.PARTIAL_CONTENT);
+		Assert.assertEquals(single.responseHeaders()
+		                          .get(HttpHeaderNames.CONTENT_RANGE),
+				"bytes 10-19/" + content.length());
+		Assert.assertEquals(single.receive()
+		                          .aggregate()
+		                          .asString()
+		                          .block(), content.substring(10, 20));
+
+		HttpClientResponse multi = HttpClient.create(c.address().getPort())
+		                                     .get("/test/index.html",
+				                                     req -> req.header(HttpHeaderNames.RANGE,
+						                                     "bytes=0-4,-5")
+				                                               .send())
+		                                     .block();
+
+		Assert.assertEquals(multi.status(), HttpResponseStatus.PARTIAL_CONTENT);
+		Assert.assertTrue(multi.responseHeaders()
+		                       .get(HttpHeaderNames.CONTENT_TYPE)
+		                       .startsWith("multipart/byteranges"));
+		String body = multi.receive()
+		                   .aggregate()
+		                   .asString()
+		                   .block();
+		Assert.assertTrue(body.contains("content-range: bytes 0-4/" + content.length() +
+				"\r\n\r\n" + content.substring(0, 5)));
+		Assert.assertTrue(body.contains("content-range: bytes " + (content.length() - 5) +
+				"-" + (content.length() - 1) + "/" + content.length() + "\r\n\r\n" +
+				content.substring(content.length() - 5)));
+
+		c.dispose();
+	}
+
+	@Test
+	public void responsesAreCompressedWhenAccepted() throws Exception {
+		StringBuilder chunk = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			chunk.append("line ")
+			     .append(i)
+			     .append('\n');
+		}
+		StringBuilder large = new StringBuilder();
+		for (int i = 0; i < 4; i++) {
+			large.append(chunk);
+		}
+		Path file = Files.createTempFile("compressed", ".txt");
+		Files.write(file, large.toString()
+		                       .getBytes(CharsetUtil.UTF_8));
+		NettyContext c = HttpServer.create(opts -> opts.listen(0)
+		                                               .compress(1024))
+		                           .newHandler((req, resp) -> {
+			                           if (req.uri()
+			                                  .equals("/file")) {
+				                           return resp.sendFile(file);
+			                           }
+			                           if (req.uri()
+			                                  .equals("/small")) {
+				                           return resp.header(HttpHeaderNames.CONTENT_LENGTH,
+						                           "5")
+				                                      .sendString(Mono.just("hello"));
+			                           }
+			                           return resp.sendString(Flux.range(0, 4)
+			                                                      .map(i -> chunk.toString()));
+		                           })
+		                           .block();
+
+		HttpResources.set(PoolResources.fixed("http", 1));
+
+		for (int i = 0; i < 4; i++) {
+			String encoding = i % 2 == 0 ? "gzip" : "deflate";
+			HttpClientResponse compressed = HttpClient.create(c.address()
+			                                                   .getPort())
+			                                          .get("/",
+					                                          req -> req.header(HttpHeaderNames.ACCEPT_ENCODING,
+							                                          encoding)
+					                                                    .send())
+			                                          .block();
+			Assert.assertEquals(compressed.responseHeaders()
+			                              .get(HttpHeaderNames.CONTENT_ENCODING), encoding);
+			byte[] body = compressed.receive()
+			                        .aggregate()
+			                        .asByteArray()
+			                        .block();
+			Assert.assertTrue(body.length < large.length() / 2);
+			Assert.assertEquals(decode(encoding, body), large.toString());
+		}
+
+		HttpClientResponse compressedFile = HttpClient.create(c.address()
+		                                                       .getPort())
+		                                              .get("/file",
+				                                              req -> req.header(HttpHeaderNames.ACCEPT_ENCODING,
+						                                              "gzip")
+				                                                        .send())
+		                                              .block();
+		Assert.assertEquals(compressedFile.responseHeaders()
+		                                  .get(HttpHeaderNames.CONTENT_ENCODING), "gzip");
+		Assert.assertEquals(decode("gzip",
+				compressedFile.receive()
+				              .aggregate()
+				              .asByteArray()
+				              .block()), large.toString());
+
+		HttpClientResponse identityFile = HttpClient.create(c.address()
+		                                                     .getPort())
+		                                            .get("/file")
+		                                            .block();
+		Assert.assertNull(identityFile.responseHeaders()
+		                              .get(HttpHeaderNames.CONTENT_ENCODING));
+		Assert.assertEquals(identityFile.receive()
+		                                .aggregate()
+		                                .asString()
+		                                .block(), large.toString());
+
+		HttpClientResponse range = HttpClient.create(c.address()
+		                                              .getPort())
+		                                     .get("/file",
+				                                     req -> req.header(HttpHeaderNames.ACCEPT_ENCODING,
+						                                     "gzip")
+				                                               .header(HttpHeaderNames.RANGE,
+						                                               "bytes=0-2999")
+				                                               .send())
+		                                     .block();
+		Assert.assertEquals(range.status(), HttpResponseStatus.PARTIAL_CONTENT);
+		Assert.assertNull(range.responseHeaders()
+		                       .get(HttpHeaderNames.CONTENT_ENCODING));
+		Assert.assertEquals(range.receive()
+		                         .aggregate()
+		                         .asString()
+		                         .block(), large.substring(0, 3000));
+
+		HttpClientResponse ranges = HttpClient.create(c.address()
+		                                               .getPort())
+		                                      .get("/file",
+				                                      req -> req.header(HttpHeaderNames.ACCEPT_ENCODING,
+						                                      "gzip")
+				                                                .header(HttpHeaderNames.RANGE,
+						                                                "bytes=0-1499,2000-3499")
+				                                                .send())
+		                                      .block();
+		Assert.assertEquals(ranges.status(), HttpResponseStatus.PARTIAL_CONTENT);
+		Assert.assertNull(ranges.responseHeaders()
+		                        .get(HttpHeaderNames.CONTENT_ENCODING));
+		String parts = ranges.receive()
+		                     .aggregate()
+		                     .asString()
+		                     .block();
+		Assert.assertTrue(parts.contains(large.substring(0, 1500)));
+		Assert.assertTrue(parts.contains(large.substring(2000, 3500)));
+
+		HttpClientResponse small = HttpClient.create(c.address()
+		                                              .getPort())
+		                                     .get("/small",
+				                                     req -> req.header(HttpHeaderNames.ACCEPT_ENCODING,
+						                                     "gzip")
+				                                               .send())
+		                                     .block();
+		Assert.assertNull(small.responseHeaders()
+		                       .get(HttpHeaderNames.CONTENT_ENCODING));
+		Assert.assertEquals(small.receive()
+		                         .aggregate()
+		                         .asString()
+		                         .block(), "hello");
+
+		HttpClientResponse identity = HttpClient.create(c.address()
+		                                                 .getPort())
+		                                        .get("/")
+		                                        .block();
+		Assert.assertNull(identity.responseHeaders()
+		                          .get(HttpHeaderNames.CONTENT_ENCODING));
+		Assert.assertEquals(identity.receive()
+		                            .aggregate()
+		                            .asString()
+		                            .block(), large.toString());
+
+		HttpResources.reset();
+		c.dispose();
+		Files.delete(file);
+	}
+
+	static String decode(String encoding, byte[] body) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (InputStream in = encoding.equals("gzip") ?
+				new GZIPInputStream(new ByteArrayInputStream(body)) :
+				new InflaterInputStream(new ByteArrayInputStream(body))) {
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+			}
+		}
+		return new String(out.toByteArray(), CharsetUtil.UTF_8);
+	}
+
+	@Test
+	public void http2PriorKnowledgeStreamsAreServedByHandler() throws Exception {
+		NettyContext c = HttpServer.create(opts -> opts.listen(0)
+		                                               .http2(true))
+		                           .newRouter(routes -> routes.post("/echo/{id}",
+				                           (req, resp) -> resp.sendString(req.receive()
+				                                                             .aggregate()
+				                                                             .asString()
+				                                                             .map(body -> req.param(
+						                                                             "id") + ":" + body))))
+		                           .block();
+
+		String http1 = HttpClient.create(c.address()
+		                                  .getPort())
+		                         .post("/echo/1", req -> req.sendString(Mono.just("http1")))
+		                         .then(r -> r.receive()
+		                                     .aggregate()
+		                                     .asString())
+		                         .block();
+		Assert.assertEquals(http1, "1:http1");
+
+		NioEventLoopGroup group = new NioEventLoopGroup(1);
+		try {
+			Channel connection = new Bootstrap().group(group)
+			                                    .channel(NioSocketChannel.class)
+			                                    .handler(new Http2Codec(false,
+					                                    new Http2ResponseCollector()))
+			                                    .connect(c.address())
+			                                    .sync()
+			                                    .channel();
+
+			List<Http2ResponseCollector> responses = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				Http2ResponseCollector response = new Http2ResponseCollector();
+				Channel stream = new Http2StreamChannelBootstrap().parentChannel(connection)
+				                                                  .handler(response)
+				                                                  .connect()
+				                                                  .sync()
+				                                                  .channel();
+				stream.write(new DefaultHttp2HeadersFrame(new DefaultHttp2Headers().method(
+						"POST")
+				                                                                   .path("/echo/" + i)
+				                                                                   .scheme("http")
+				                                                                   .authority("localhost")));
+				stream.writeAndFlush(new DefaultHttp2DataFrame(Unpooled.copiedBuffer(
+						"stream " + i,
+						CharsetUtil.UTF_8), true));
+				responses.add(response);
+			}
+			for (int i = 0; i < 3; i++) {
+				Assert.assertEquals(responses.get(i).body.get(5, TimeUnit.SECONDS),
+						"200 " + i + ":stream " + i);
+			}
+			connection.close()
+			          .sync();
+		}
+		finally {
+			group.shutdownGracefully();
+			c.dispose();
+		}
+	}
+
+	@Test
+	public void http2UpgradeStreamsAreServedByHandler() throws Exception {
+		NettyContext c = HttpServer.create(opts -> opts.listen(0)
+		                                               .http2(true))
+		                           .newRouter(routes -> routes.get("/hello/{id}",
+				                           (req, resp) -> resp.sendString(Mono.just("hello " + req.param(
+						                           "id")))))
+		                           .block();
+
+		NioEventLoopGroup group = new NioEventLoopGroup(1);
+		try {
+			Http2Connection http2 = new DefaultHttp2Connection(false);
+			HttpToHttp2ConnectionHandler connectionHandler =
+					new HttpToHttp2ConnectionHandlerBuilder().connection(http2)
+					                                         .frameListener(new InboundHttp2ToHttpAdapterBuilder(
+							                                         http2).maxContentLength(65536)
+					                                                       .build())
+					                                         .build();
+			HttpClientCodec sourceCodec = new HttpClientCodec();
+			Http2FullResponseCollector responses = new Http2FullResponseCollector();
+			Channel connection = new Bootstrap().group(group)
+			                                    .channel(NioSocketChannel.class)
+			                                    .handler(new ChannelInitializer<Channel>() {
+				                                    @Override
+				                                    protected void initChannel(Channel ch) {
+					                                    ch.pipeline()
+					                                      .addLast(sourceCodec,
+							                                      new HttpClientUpgradeHandler(
+									                                      sourceCodec,
+									                                      new Http2ClientUpgradeCodec(
+											                                      connectionHandler),
+									                                      65536),
+							                                      responses);
+				                                    }
+			                                    })
+			                                    .connect(c.address())
+			                                    .sync()
+			                                    .channel();
+
+			FullHttpRequest upgrade = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1,
+					HttpMethod.GET,
+					"/hello/1");
+			upgrade.headers()
+			       .set(HttpHeaderNames.HOST, "localhost");
+			connection.writeAndFlush(upgrade);
+			Assert.assertEquals(responses.upgraded.get(5, TimeUnit.SECONDS),
+					HttpClientUpgradeHandler.UpgradeEvent.UPGRADE_SUCCESSFUL);
+			Assert.assertEquals(responses.next(), "1 200 hello 1");
+
+			FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1,
+					HttpMethod.GET,
+					"/hello/2");
+			request.headers()
+			       .set(HttpHeaderNames.HOST, "localhost")
+			       .set(HttpConversionUtil.ExtensionHeaderNames.SCHEME.text(), "http");
+			connection.writeAndFlush(request);
+			Assert.assertEquals(responses.next(), "3 200 hello 2");
+
+			connection.close()
+			          .sync();
+		}
+		finally {
+			group.shutdownGracefully();
+			c.dispose();
+		}
+	}
+
+	@Test
+	public void http2AlpnStreamsAreServedByHandler() throws Exception {
+		Assume.assumeTrue(OpenSsl.isAlpnSupported());
+		ApplicationProtocolConfig alpn = new ApplicationProtocolConfig(
+				ApplicationProtocolConfig.Protocol.ALPN,
+				ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+				ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+				ApplicationProtocolNames.HTTP_2,
+				ApplicationProtocolNames.HTTP_1_1);
+		NettyContext c = HttpServer.create(opts -> opts.http2(true)
+		                                               .listen(0)
+		                                               .sslSelfSigned(ssl -> ssl.sslProvider(SslProvider.OPENSSL)
+		                                                                        .ciphers(Http2SecurityUtil.CIPHERS,
+				                                                                        SupportedCipherSuiteFilter.INSTANCE)
+		                                                                        .applicationProtocolConfig(alpn)))
+		                           .newRouter(routes -> routes.get("/hello/{id}",
+				                           (req, resp) -> resp.sendString(Mono.just("hello " + req.param(
+						                           "id")))))
+		                           .block();
+
+		SslContext clientContext = SslContextBuilder.forClient()
+		                                            .sslProvider(SslProvider.OPENSSL)
+		                                            .trustManager(InsecureTrustManagerFactory.INSTANCE)
+		                                            .ciphers(Http2SecurityUtil.CIPHERS,
+				                                            SupportedCipherSuiteFilter.INSTANCE)
+		                                            .applicationProtocolConfig(alpn)
+		                                            .build();
+
+		NioEventLoopGroup group = new NioEventLoopGroup(1);
+		try {
+			Channel connection = new Bootstrap().group(group)
+			                                    .channel(NioSocketChannel.class)
+			                                    .handler(new ChannelInitializer<Channel>() {
+				                                    @Override
+				                                    protected void initChannel(Channel ch) {
+					                                    ch.pipeline()
+					                                      .addLast(clientContext.newHandler(ch.alloc()),
+							                                      new Http2Codec(false,
+									                                      new Http2ResponseCollector()));
+				                                    }
+			                                    })
+			                                    .connect(c.address())
+			                                    .sync()
+			                                    .channel();
+			SslHandler ssl = connection.pipeline()
+			                           .get(SslHandler.class);
+			ssl.handshakeFuture()
+			   .sync();
+			Assert.assertEquals(ssl.applicationProtocol(), ApplicationProtocolNames.HTTP_2);
+
+			List<Http2ResponseCollector> responses = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				Http2ResponseCollector response = new Http2ResponseCollector();
+				Channel stream = new Http2StreamChannelBootstrap().parentChannel(connection)
+				                                                  .handler(response)
+				                                                  .connect()
+				                                                  .sync()
+				                                                  .channel();
+				stream.writeAndFlush(new DefaultHttp2HeadersFrame(new DefaultHttp2Headers().method(
+						"GET")
+				                                                                           .path("/hello/" + i)
+				                                                                           .scheme("https")
+				                                                                           .authority("localhost"),
+						true));
+				responses.add(response);
+			}
+			for (int i = 0; i < 3; i++) {
+				Assert.assertEquals(responses.get(i).body.get(5, TimeUnit.SECONDS),
+						"200 hello " + i);
+			}
+			connection.close()
+			          .sync();
+		}
+		finally {
+			group.shutdownGracefully();
+			c.dispose();
+		}
+	}
+
+	@ChannelHandler.Sharable
+	static final class Http2FullResponseCollector extends ChannelInboundHandlerAdapter {
+
+		final CompletableFuture<Object> upgraded  = new CompletableFuture<>();
+		final BlockingQueue<String>     responses = new LinkedBlockingQueue<>();
+
+		String next() throws InterruptedException {
+			return responses.poll(5, TimeUnit.SECONDS);
+		}
+
+		@Override
+		public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+			if (evt != HttpClientUpgradeHandler.UpgradeEvent.UPGRADE_ISSUED &&
+					evt instanceof HttpClientUpgradeHandler.UpgradeEvent) {
+				upgraded.complete(evt);
+			}
+			ctx.fireUserEventTriggered(evt);
+		}
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) {
+			if (msg instanceof FullHttpResponse) {
+				FullHttpResponse response = (FullHttpResponse) msg;
+				responses.add(response.headers()
+				                      .get(HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text()) + " " +
+						response.status()
+						        .code() + " " +
+						response.content()
+						        .toString(CharsetUtil.UTF_8));
+			}
+			ReferenceCountUtil.release(msg);
+		}
+	}
+
+	@ChannelHandler.Sharable
+	static final class Http2ResponseCollector extends ChannelInboundHandlerAdapter {
+
+		final CompletableFuture<String> body    = new CompletableFuture<>();
+		final StringBuilder             content = new StringBuilder();
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) {
+			if (msg instanceof Http2HeadersFrame) {
+				content.append(((Http2HeadersFrame) msg).headers()
+				                                        .status())
+				       .append(' ');
+			}
+			else if (msg instanceof Http2DataFrame) {
+				Http2DataFrame data = (Http2DataFrame) msg;
+				content.append(data.content()
+				                   .toString(CharsetUtil.UTF_8));
+				data.release();
+				if (data.isEndStream()) {
+					body.complete(content.toString());
+				}
+			}
+		}
+	}
+
 }
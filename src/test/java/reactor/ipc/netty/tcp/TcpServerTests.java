@@ -19,43 +19,71 @@ package reactor.ipc.netty.tcp;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.handler.codec.LineBasedFrameDecoder;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.util.CharsetUtil;
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.reactivestreams.Processor;
 import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
 import reactor.core.Exceptions;
 import reactor.core.publisher.EmitterProcessor;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.WorkQueueProcessor;
 import reactor.core.scheduler.Schedulers;
+import reactor.ipc.netty.ByteBufFlux;
 import reactor.ipc.netty.NettyHandlerNames;
 import reactor.ipc.netty.NettyInbound;
 import reactor.ipc.netty.NettyOutbound;
 import reactor.ipc.netty.NettyContext;
 import reactor.ipc.netty.SocketUtils;
+import reactor.ipc.netty.channel.ChannelOperations;
+import reactor.ipc.netty.channel.RemoteCloseMetrics;
 import reactor.ipc.netty.http.client.HttpClient;
 import reactor.ipc.netty.http.server.HttpServer;
 import reactor.util.Logger;
 import reactor.util.Loggers;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -193,6 +221,68 @@ public class TcpServerTests {
 		server.dispose();
 	}
 
+	@Test
+	public void closeCallbacksRunOnceConnectionIsInactive() throws InterruptedException {
+		final int port = SocketUtils.findAvailableTcpPort();
+		final CountDownLatch latch = new CountDownLatch(2);
+
+		NettyContext server = TcpServer.create(port)
+		                               .newHandler((in, out) -> {
+			                               in.onClose(() -> {
+				                               latch.countDown();
+				                               // registered after termination, run now
+				                               in.onClose(latch::countDown);
+			                               });
+			                               return Flux.never();
+		                               })
+		                               .block();
+
+		NettyContext client = TcpClient.create(port)
+		                               .newHandler((in, out) -> out.sendString(Flux.just(
+				                               "Hello World!")))
+		                               .block();
+
+		client.dispose();
+
+		assertTrue("latch was counted down", latch.await(5, TimeUnit.SECONDS));
+
+		server.dispose();
+	}
+
+	@Test
+	public void connectionResetIsCounted() throws Exception {
+		final long resets = RemoteCloseMetrics.connectionResets();
+		final CountDownLatch latch = new CountDownLatch(1);
+
+		NettyContext server = TcpServer.create(0)
+		                               .newHandler((in, out) -> {
+			                               in.receive()
+			                                 .subscribe(b -> latch.countDown());
+			                               return Flux.never();
+		                               })
+		                               .block();
+
+		Socket socket = new Socket(server.address()
+		                                 .getAddress(),
+				server.address()
+				      .getPort());
+		socket.getOutputStream()
+		      .write("Hello World!".getBytes());
+		assertTrue("Latch was counted down", latch.await(5, TimeUnit.SECONDS));
+
+		// close with a RST instead of a FIN
+		socket.setSoLinger(true, 0);
+		socket.close();
+
+		int checks = 50;
+		while (RemoteCloseMetrics.connectionResets() == resets) {
+			assertTrue("Connection reset was counted", --checks > 0);
+			Thread.sleep(100);
+		}
+
+		server.dispose();
+	}
+
 	@Test
 	public void exposesNettyPipelineConfiguration() throws InterruptedException {
 		final int port = SocketUtils.findAvailableTcpPort();
@@ -280,6 +370,481 @@ public class TcpServerTests {
 
 	}
 
+	@Test
+	public void flushLoopFlushesOncePerLoopRun() throws InterruptedException {
+		final int elements = 1000;
+		final CountDownLatch latch = new CountDownLatch(elements);
+		final FlushCounter counter = new FlushCounter();
+
+		NettyContext server = TcpServer.create(0)
+		                               .newHandler((in, out) -> {
+			                               counter.install(out.channel());
+			                               return out.flushLoop()
+			                                         .sendString(Flux.range(0, elements)
+			                                                         .map(i -> i + "\n"))
+			                                         .concatWith(Flux.never());
+		                               })
+		                               .block();
+
+		NettyContext client = connectLines(server,
+				in -> in.receive()
+				        .subscribe(line -> latch.countDown()));
+
+		assertTrue("Latch was counted down", latch.await(10, TimeUnit.SECONDS));
+		assertTrue("Every element was written: " + counter.writes, counter.writes.get() == elements);
+		assertTrue("Elements shared their flushes: " + counter.flushes,
+				counter.flushes.size() < elements / 10);
+
+		client.dispose();
+		server.dispose();
+	}
+
+	@Test
+	public void flushBoundaryFlushesEveryGroup() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(100);
+		final FlushCounter counter = new FlushCounter();
+
+		NettyContext server = TcpServer.create(0)
+		                               .newHandler((in, out) -> {
+			                               counter.install(out.channel());
+			                               return out.flushBoundary()
+			                                         .sendGroups(Flux.range(0, 10)
+			                                                         .map(g -> Flux.range(0, 10)
+			                                                                       .map(i -> out.channel()
+			                                                                                    .alloc()
+			                                                                                    .buffer()
+			                                                                                    .writeBytes(
+					                                                                                    (g + ":" + i + "\n").getBytes()))))
+			                                         .concatWith(Flux.never());
+		                               })
+		                               .block();
+
+		NettyContext client = connectLines(server,
+				in -> in.receive()
+				        .subscribe(line -> latch.countDown()));
+
+		assertTrue("Latch was counted down", latch.await(10, TimeUnit.SECONDS));
+		assertTrue("Each group was flushed after its last element: " + counter.flushes,
+				counter.flushes.stream()
+				               .distinct()
+				               .collect(Collectors.toList())
+				               .equals(Arrays.asList(10L, 20L, 30L, 40L, 50L, 60L, 70L, 80L, 90L, 100L)));
+
+		client.dispose();
+		server.dispose();
+	}
+
+	@Test
+	public void boundedPrefetchPausesWithSlowReader() throws InterruptedException {
+		final int elements = 20000;
+		final int prefetch = 16;
+		final String line = String.format("%01023d\n", 0);
+		final CountDownLatch latch = new CountDownLatch(elements);
+		final AtomicLong requested = new AtomicLong();
+		final AtomicLong emitted = new AtomicLong();
+		final AtomicLong maxOutstanding = new AtomicLong();
+		final AtomicReference<NettyInbound> reader = new AtomicReference<>();
+
+		NettyContext server = TcpServer.create(opts -> opts.listen(0)
+		                                                   .outboundPrefetch(prefetch)
+		                                                   .option(ChannelOption.WRITE_BUFFER_WATER_MARK,
+				                                                   new WriteBufferWaterMark(
+						                                                   1024,
+						                                                   4096)))
+		                               .newHandler((in, out) -> out.sendString(Flux.range(0,
+				                               elements)
+		                                                                           .doOnRequest(n -> {
+			                                                                           long r =
+					                                                                           requested.addAndGet(n);
+			                                                                           maxOutstanding.accumulateAndGet(
+					                                                                           r - emitted.get(),
+					                                                                           Math::max);
+		                                                                           })
+		                                                                           .doOnNext(i -> emitted.incrementAndGet())
+		                                                                           .map(i -> line))
+		                                                           .concatWith(Flux.never()))
+		                               .block();
+
+		NettyContext client = connectLines(server, in -> {
+			in.channel()
+			  .config()
+			  .setAutoRead(false);
+			reader.set(in);
+		});
+
+		// wait for the socket buffers to fill up and the writer to stop requesting
+		long paused;
+		int checks = 20;
+		do {
+			paused = emitted.get();
+			Thread.sleep(500);
+		}
+		while (emitted.get() != paused && --checks > 0);
+		assertTrue("Writer paused on an unread connection: " + paused,
+				paused < elements && emitted.get() == paused);
+
+		reader.get()
+		      .receive()
+		      .subscribe(l -> latch.countDown());
+
+		assertTrue("Latch was counted down", latch.await(10, TimeUnit.SECONDS));
+		assertTrue("Demand was bounded by the prefetch: " + maxOutstanding,
+				maxOutstanding.get() <= prefetch);
+
+		client.dispose();
+		server.dispose();
+	}
+
+	@Test
+	public void fullInboundQueuePausesReads() throws InterruptedException {
+		final int elements = 100000;
+		final int capacity = 8;
+		// each read cycle decodes at most 1024 bytes, 128 lines
+		final int linesPerRead = 128;
+		final CountDownLatch latch = new CountDownLatch(elements);
+		final AtomicReference<ChannelOperations<?, ?>> inbound = new AtomicReference<>();
+		final AtomicReference<Subscription> subscription = new AtomicReference<>();
+
+		NettyContext server = TcpServer.create(opts -> opts.listen(0)
+		                                                   .inboundQueueCapacity(capacity)
+		                                                   .option(ChannelOption.RCVBUF_ALLOCATOR,
+				                                                   new FixedRecvByteBufAllocator(1024).maxMessagesPerRead(1))
+		                                                   .afterChannelInit(c -> c.pipeline()
+		                                                                           .addBefore(NettyHandlerNames.ReactiveBridge,
+				                                                                           "codec",
+				                                                                           new LineBasedFrameDecoder(
+						                                                                           8 * 1024))))
+		                               .newHandler((in, out) -> {
+			                               inbound.set((ChannelOperations<?, ?>) in);
+			                               in.receive()
+			                                 .subscribe(line -> latch.countDown(),
+					                                 null,
+					                                 null,
+					                                 s -> {
+						                                 subscription.set(s);
+						                                 s.request(1);
+					                                 });
+			                               return Flux.never();
+		                               })
+		                               .block();
+
+		NettyContext client = TcpClient.create(server.address()
+		                                             .getPort())
+		                               .newHandler((in, out) -> out.sendString(Flux.range(0,
+				                               elements)
+		                                                                           .map(i -> String.format("%07d\n", i)))
+		                                                           .concatWith(Flux.never()))
+		                               .block();
+
+		// every request would otherwise trigger another read cycle
+		for (int i = 0; i < 50; i++) {
+			Thread.sleep(20);
+			subscription.get()
+			            .request(1);
+		}
+		Thread.sleep(200);
+
+		long pending = inbound.get()
+		                      .getPending();
+		// reads already requested when the queue filled up are still accepted
+		assertTrue("Queue stopped growing past its capacity: " + pending,
+				pending <= capacity + 2 * linesPerRead);
+
+		subscription.get()
+		            .request(Long.MAX_VALUE);
+
+		assertTrue("Latch was counted down", latch.await(10, TimeUnit.SECONDS));
+
+		client.dispose();
+		server.dispose();
+	}
+
+	@Test
+	public void writeCoalescingPreservesOrder() throws InterruptedException {
+		final int elements = 10000;
+		final CountDownLatch latch = new CountDownLatch(elements);
+		final AtomicLong next = new AtomicLong();
+
+		NettyContext server = TcpServer.create(opts -> opts.listen(0)
+		                                                   .writeCoalescing(64, 1024))
+		                               .newHandler((in, out) -> out.sendString(Flux.range(0,
+				                               elements)
+		                                                                           .map(i -> i % 100 == 0 ?
+				                                                                           String.format("%0200d\n", i) :
+				                                                                           i + "\n"))
+		                                                           .concatWith(Flux.never()))
+		                               .block();
+
+		NettyContext client = connectLines(server,
+				in -> in.receive()
+				        .asString()
+				        .subscribe(line -> {
+					        if (Long.parseLong(line) == next.get()) {
+						        next.incrementAndGet();
+						        latch.countDown();
+					        }
+				        }));
+
+		assertTrue("Latch was counted down", latch.await(10, TimeUnit.SECONDS));
+
+		client.dispose();
+		server.dispose();
+	}
+
+	@Test
+	public void receiveBatchesEmitsEveryElement() throws InterruptedException {
+		final int elements = 10000;
+		final CountDownLatch latch = new CountDownLatch(elements);
+		final AtomicLong batches = new AtomicLong();
+
+		NettyContext server = TcpServer.create(0)
+		                               .newHandler((in, out) -> out.sendString(Flux.range(0,
+				                               elements)
+		                                                                           .map(i -> i + "\n"))
+		                                                           .concatWith(Flux.never()))
+		                               .block();
+
+		NettyContext client = connectLines(server,
+				in -> in.receiveBatches()
+				        .subscribe(batch -> {
+					        batches.incrementAndGet();
+					        batch.forEach(line -> latch.countDown());
+				        }));
+
+		assertTrue("Latch was counted down", latch.await(10, TimeUnit.SECONDS));
+		assertTrue("Lines were batched", batches.get() < elements);
+
+		client.dispose();
+		server.dispose();
+	}
+
+	/**
+	 * Connect a client splitting the inbound bytes on line endings before they reach
+	 * {@code receiver}.
+	 */
+	static NettyContext connectLines(NettyContext server,
+			Consumer<? super NettyInbound> receiver) {
+		return TcpClient.create(opts -> opts.connect(server.address()
+		                                                   .getPort())
+		                                    .afterChannelInit(c -> c.pipeline()
+		                                                            .addBefore(NettyHandlerNames.ReactiveBridge,
+				                                                            "codec",
+				                                                            new LineBasedFrameDecoder(
+						                                                            8 * 1024))))
+		                .newHandler((in, out) -> {
+			                receiver.accept(in);
+			                return Flux.never();
+		                })
+		                .block();
+	}
+
+	/**
+	 * Count the messages written to a channel and record, for each flush, how many
+	 * had been written so far.
+	 */
+	static final class FlushCounter extends ChannelOutboundHandlerAdapter {
+
+		final AtomicLong writes  = new AtomicLong();
+		final List<Long> flushes = new CopyOnWriteArrayList<>();
+
+		void install(Channel channel) {
+			channel.pipeline()
+			       .addFirst("flushCounter", this);
+		}
+
+		@Override
+		public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+			writes.incrementAndGet();
+			ctx.write(msg, promise);
+		}
+
+		@Override
+		public void flush(ChannelHandlerContext ctx) {
+			flushes.add(writes.get());
+			ctx.flush();
+		}
+	}
+
+	@Test
+	public void mappedFileIsSentInFull() throws Exception {
+		assertFileIsSentInFull(file -> ByteBufFlux.fromMappedPath(file, 64 * 1024));
+	}
+
+	@Test
+	public void mappedRegionIsUnmappedOnRelease() throws Exception {
+		Path maps = Paths.get("/proc/self/maps");
+		Assume.assumeTrue(Files.isReadable(maps));
+		Path file = Files.createTempFile("mapped", ".bin");
+		Files.write(file, new byte[8192]);
+		String name = file.toRealPath()
+		                  .toString();
+
+		ByteBuf region = ByteBufFlux.fromMappedPath(file, 8192)
+		                            .blockFirst();
+		ByteBuf slice = region.retainedSlice(0, 16);
+		region.release();
+		assertTrue("Region is mapped while a slice is retained",
+				new String(Files.readAllBytes(maps), CharsetUtil.UTF_8).contains(name));
+
+		slice.release();
+		assertFalse("Region is unmapped once released",
+				new String(Files.readAllBytes(maps), CharsetUtil.UTF_8).contains(name));
+
+		Files.delete(file);
+	}
+
+	@Test
+	public void asyncFileIsSentInFull() throws Exception {
+		assertFileIsSentInFull(file -> ByteBufFlux.fromPathAsync(file,
+				64 * 1024,
+				2,
+				ByteBufAllocator.DEFAULT));
+	}
+
+	void assertFileIsSentInFull(Function<Path, ByteBufFlux> source) throws Exception {
+		byte[] content = new byte[300000];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) i;
+		}
+		Path file = Files.createTempFile("mapped", ".bin");
+		Files.write(file, content);
+		final CountDownLatch latch = new CountDownLatch(1);
+		final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+		NettyContext server = TcpServer.create(0)
+		                               .newHandler((in, out) -> out.send(source.apply(file))
+		                                                           .concatWith(Flux.never()))
+		                               .block();
+
+		NettyContext client = TcpClient.create(server.address()
+		                                             .getPort())
+		                               .newHandler((in, out) -> {
+			                               in.receive()
+			                                 .asByteArray()
+			                                 .subscribe(bytes -> {
+				                                 received.write(bytes, 0, bytes.length);
+				                                 if (received.size() == content.length) {
+					                                 latch.countDown();
+				                                 }
+			                                 });
+			                               return Flux.never();
+		                               })
+		                               .block();
+
+		assertTrue("Latch was counted down", latch.await(10, TimeUnit.SECONDS));
+		assertTrue("File was received", Arrays.equals(content, received.toByteArray()));
+
+		client.dispose();
+		server.dispose();
+		Files.delete(file);
+	}
+
+	@Test
+	public void multicastSharesInboundBuffers() throws InterruptedException {
+		final int elements = 1000;
+		final CountDownLatch latch = new CountDownLatch(2);
+		final StringBuilder text = new StringBuilder();
+		final AtomicLong bytes = new AtomicLong();
+
+		NettyContext server = TcpServer.create(0)
+		                               .newHandler((in, out) -> {
+			                               ByteBufFlux shared = in.receive()
+			                                                      .multicast(2);
+			                               shared.subscribe(buf -> {
+				                               text.append(buf.toString(CharsetUtil.UTF_8));
+				                               buf.release();
+				                               if (text.length() == elements * 6) {
+					                               latch.countDown();
+				                               }
+			                               });
+			                               shared.subscribe(buf -> {
+				                               if (bytes.addAndGet(buf.readableBytes()) == elements * 6) {
+					                               latch.countDown();
+				                               }
+				                               buf.release();
+			                               });
+			                               return Flux.never();
+		                               })
+		                               .block();
+
+		NettyContext client = TcpClient.create(server.address()
+		                                             .getPort())
+		                               .newHandler((in, out) -> out.sendString(Flux.range(0,
+				                               elements)
+		                                                                           .map(i -> "hello\n"))
+		                                                           .concatWith(Flux.never()))
+		                               .block();
+
+		assertTrue("Latch was counted down", latch.await(10, TimeUnit.SECONDS));
+		assertTrue("Text was received", text.toString()
+		                                    .startsWith("hello\nhello\n"));
+
+		client.dispose();
+		server.dispose();
+	}
+
+	@Test
+	public void framingOperatorsSplitAcrossBuffers() throws InterruptedException {
+		final int elements = 10000;
+		final CountDownLatch latch = new CountDownLatch(elements);
+		final AtomicLong invalid = new AtomicLong();
+
+		NettyContext server = TcpServer.create(0)
+		                               .newHandler((in, out) -> {
+			                               in.receive()
+			                                 .lines(16)
+			                                 .subscribe(line -> {
+				                                 if (!line.toString(CharsetUtil.UTF_8)
+				                                          .startsWith("line-")) {
+					                                 invalid.incrementAndGet();
+				                                 }
+				                                 line.release();
+				                                 latch.countDown();
+			                                 });
+			                               return Flux.never();
+		                               })
+		                               .block();
+
+		NettyContext client = TcpClient.create(server.address()
+		                                             .getPort())
+		                               .newHandler((in, out) -> out.sendString(Flux.range(0,
+				                               elements)
+		                                                                           .map(i -> "line-" + i + "\r\n"))
+		                                                           .concatWith(Flux.never()))
+		                               .block();
+
+		assertTrue("Latch was counted down", latch.await(10, TimeUnit.SECONDS));
+		assertTrue("Lines were split", invalid.get() == 0);
+
+		client.dispose();
+		server.dispose();
+	}
+
+	@Test
+	public void delimitedFrameSpansManyBuffers() {
+		StringBuilder payload = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			payload.append(i % 10);
+		}
+		String first = payload.toString();
+		String input = first + "\r\nsecond\n";
+
+		List<String> lines =
+				ByteBufFlux.fromInbound(Flux.range(0, input.length())
+				                            .map(i -> Unpooled.copiedBuffer(input.substring(i, i + 1),
+						                            CharsetUtil.UTF_8)))
+				           .lines(first.length())
+				           .map(line -> {
+					           String s = line.toString(CharsetUtil.UTF_8);
+					           line.release();
+					           return s;
+				           })
+				           .collectList()
+				           .block();
+
+		assertEquals(Arrays.asList(first, "second"), lines);
+	}
+
 	@Test
 	public void testIssue462() throws InterruptedException {
 